@@ -0,0 +1,83 @@
+package com.db.awmd.challenge.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Chooses account indexes for a benchmark according to a skew.
+ *
+ * <ul>
+ *   <li>{@code uniform}: every account is equally likely.</li>
+ *   <li>{@code zipf}: account {@code k} is chosen with probability proportional to
+ *       {@code 1 / (k + 1)^s}, so a handful of accounts take most of the traffic.</li>
+ *   <li>{@code symmetric}: threads are paired up and the two threads of a pair transfer between
+ *       the same two accounts in opposite directions, the classic lock-ordering worst case.</li>
+ * </ul>
+ */
+final class AccountPicker {
+
+  private static final double ZIPF_EXPONENT = 0.99;
+
+  private final String skew;
+
+  private final int population;
+
+  // cumulative zipf probabilities, only for the zipf skew
+  private final double[] cumulative;
+
+  AccountPicker(String skew, int population) {
+    if (!Arrays.asList("uniform", "zipf", "symmetric").contains(skew)) {
+      throw new IllegalArgumentException("Unknown skew " + skew);
+    }
+    this.skew = skew;
+    this.population = population;
+    this.cumulative = "zipf".equals(skew) ? zipfDistribution(population) : null;
+  }
+
+  /**
+   * Picks a distinct {@code (from, to)} pair of account indexes for the calling thread.
+   *
+   * @param threadIndex index of the benchmark thread, used for the symmetric skew
+   */
+  void pick(int threadIndex, int[] pair) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+
+    if ("symmetric".equals(skew)) {
+      int first = ((threadIndex / 2) * 2) % population;
+      int second = (first + 1) % population;
+      boolean reverse = (threadIndex & 1) == 1;
+      pair[0] = reverse ? second : first;
+      pair[1] = reverse ? first : second;
+      return;
+    }
+
+    int from = pick(random);
+    int to;
+    do {
+      to = pick(random);
+    } while (to == from);
+    pair[0] = from;
+    pair[1] = to;
+  }
+
+  int pick(ThreadLocalRandom random) {
+    if (cumulative == null) {
+      return random.nextInt(population);
+    }
+    int index = Arrays.binarySearch(cumulative, random.nextDouble());
+    return Math.min(index >= 0 ? index : -index - 1, population - 1);
+  }
+
+  private static double[] zipfDistribution(int population) {
+    double[] cumulative = new double[population];
+    double total = 0;
+    for (int k = 0; k < population; k++) {
+      total += 1.0 / Math.pow(k + 1, ZIPF_EXPONENT);
+      cumulative[k] = total;
+    }
+    for (int k = 0; k < population; k++) {
+      cumulative[k] /= total;
+    }
+    return cumulative;
+  }
+}
@@ -0,0 +1,98 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountRuntime;
+import com.db.awmd.challenge.domain.AccountState;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Balance reads on the same accounts that transfers are changing. Readers take one snapshot of
+ * the published {@link AccountState} without locking, so their throughput should grow with the
+ * number of reader threads ({@code -Pjmh.threads} scales both groups) however busy the writers are.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Group)
+public class AccountReadBenchmark {
+
+  private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1000000);
+
+  private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+  @Param({"16", "10000"})
+  public int population;
+
+  @Param({"false", "true"})
+  public boolean fixedPoint;
+
+  private ConfigurableApplicationContext context;
+
+  private AccountRuntime[] accounts;
+
+  @Setup(Level.Trial)
+  public void startApplication() {
+    context = BenchmarkContext.start(true, "accounts.balance.fixed-point=" + fixedPoint);
+    AccountsRepository accountsRepository = context.getBean(AccountsRepository.class);
+
+    accounts = new AccountRuntime[population];
+    for (int i = 0; i < population; i++) {
+      accountsRepository.createAccount(new Account(BenchmarkContext.accountId(i), INITIAL_BALANCE));
+      accounts[i] = (AccountRuntime) accountsRepository.getAccount(BenchmarkContext.accountId(i));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void stopApplication() {
+    context.close();
+  }
+
+  @Benchmark
+  @Group("readWhileTransferring")
+  @GroupThreads(3)
+  public AccountState read() {
+    return accounts[ThreadLocalRandom.current().nextInt(population)].getState();
+  }
+
+  @Benchmark
+  @Group("readWhileTransferring")
+  @GroupThreads(1)
+  public boolean transfer() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    AccountRuntime fromAccount = accounts[random.nextInt(population)];
+    AccountRuntime toAccount = accounts[random.nextInt(population)];
+    if (fromAccount == toAccount) {
+      return false;
+    }
+
+    // same lock order as the transfer service, so concurrent writers cannot deadlock
+    AccountRuntime first = fromAccount.getAccountId().compareTo(toAccount.getAccountId()) < 0 ? fromAccount : toAccount;
+    AccountRuntime second = first == fromAccount ? toAccount : fromAccount;
+    first.getLock().lock();
+    try {
+      second.getLock().lock();
+      try {
+        return fromAccount.transferTo(toAccount, AMOUNT);
+      } finally {
+        second.getLock().unlock();
+      }
+    } finally {
+      first.getLock().unlock();
+    }
+  }
+}
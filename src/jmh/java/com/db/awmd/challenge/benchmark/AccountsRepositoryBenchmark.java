@@ -0,0 +1,85 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Throughput of {@link AccountsRepository#getAccount(String)} and
+ * {@link AccountsRepository#createAccount(Account)} for both repository types.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class AccountsRepositoryBenchmark {
+
+  private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1000);
+
+  @Param({"10000", "1000000"})
+  public int population;
+
+  @Param({"uniform", "zipf"})
+  public String skew;
+
+  @Param({"in-memory", "compact"})
+  public String repository;
+
+  private ConfigurableApplicationContext context;
+
+  private AccountsRepository accountsRepository;
+
+  private AccountPicker accountPicker;
+
+  private String[] accountIds;
+
+  private final AtomicLong createdAccounts = new AtomicLong();
+
+  @Setup(Level.Trial)
+  public void startApplication() {
+    context = BenchmarkContext.start(true, "accounts.repository.type=" + repository);
+    accountsRepository = context.getBean(AccountsRepository.class);
+
+    accountPicker = new AccountPicker(skew, population);
+    accountIds = new String[population];
+    for (int i = 0; i < population; i++) {
+      accountIds[i] = BenchmarkContext.accountId(i);
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void createPopulation() {
+    accountsRepository.clearAccounts();
+    for (String accountId : accountIds) {
+      accountsRepository.createAccount(new Account(accountId, INITIAL_BALANCE));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void stopApplication() {
+    context.close();
+  }
+
+  @Benchmark
+  public Account getAccount() {
+    return accountsRepository.getAccount(accountIds[accountPicker.pick(ThreadLocalRandom.current())]);
+  }
+
+  @Benchmark
+  public void createAccount() {
+    accountsRepository.createAccount(new Account("New-" + createdAccounts.incrementAndGet(), INITIAL_BALANCE));
+  }
+}
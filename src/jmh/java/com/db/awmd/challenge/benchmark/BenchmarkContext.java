@@ -0,0 +1,57 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.DevChallengeApplication;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the application without the web layer for a benchmark trial.
+ */
+final class BenchmarkContext {
+
+  static final String STUBBED_NOTIFICATIONS_PROFILE = "benchmark";
+
+  private BenchmarkContext() {
+  }
+
+  /**
+   * @param stubNotifications run with {@link NoopNotificationService} instead of email notifications
+   * @param properties        {@code key=value} application properties, e.g. {@code accounts.transfer.mode=sharded}
+   */
+  static ConfigurableApplicationContext start(boolean stubNotifications, String... properties) {
+    List<String> arguments = new ArrayList<>();
+    arguments.add("logging.level.root=WARN");
+    for (String property : properties) {
+      if (!property.isEmpty()) {
+        arguments.add(property);
+      }
+    }
+
+    SpringApplicationBuilder builder = new SpringApplicationBuilder(DevChallengeApplication.class)
+      .web(false)
+      .logStartupInfo(false)
+      .properties(arguments.toArray(new String[0]));
+    if (stubNotifications) {
+      builder.profiles(STUBBED_NOTIFICATIONS_PROFILE);
+    }
+    return builder.run();
+  }
+
+  /**
+   * Creates accounts {@code Id-0} to {@code Id-<count - 1>} with the given balance.
+   */
+  static void createAccounts(AccountsService accountsService, int count, BigDecimal balance) {
+    for (int i = 0; i < count; i++) {
+      accountsService.createAccount(new Account(accountId(i), balance));
+    }
+  }
+
+  static String accountId(int index) {
+    return "Id-" + index;
+  }
+}
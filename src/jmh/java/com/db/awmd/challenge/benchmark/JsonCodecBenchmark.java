@@ -0,0 +1,95 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.web.AccountsJsonConverter;
+import com.db.awmd.challenge.web.AccountsValidator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import javax.validation.Validation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+import org.springframework.validation.SmartValidator;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+
+/**
+ * Request body handling of the account endpoints: the streaming codec with inline checks against
+ * Jackson data binding followed by bean validation, which is what the endpoints do with
+ * {@code accounts.json-codec.enabled=false}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class JsonCodecBenchmark {
+
+  private static final byte[] TRANSFER_REQUEST =
+    "{\"fromAccountId\":\"Id-1234567\",\"toAccountId\":\"Id-7654321\",\"amountToTransfer\":125.50}".getBytes(StandardCharsets.UTF_8);
+
+  private static final byte[] ACCOUNT = "{\"accountId\":\"Id-1234567\",\"balance\":1000000}".getBytes(StandardCharsets.UTF_8);
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final AccountsJsonConverter converter = new AccountsJsonConverter(objectMapper);
+
+  private final SmartValidator beanValidator = new SpringValidatorAdapter(Validation.buildDefaultValidatorFactory().getValidator());
+
+  private final SmartValidator codecValidator = new AccountsValidator(beanValidator);
+
+  private final Account account = new Account("Id-1234567", new BigDecimal("1000000.25"));
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+
+  @Benchmark
+  public Errors readTransferRequestWithCodec() throws IOException {
+    AmountTransferRequest request = converter.readAmountTransferRequest(new ByteArrayInputStream(TRANSFER_REQUEST));
+    return validate(codecValidator, request, "amountTransferRequest");
+  }
+
+  @Benchmark
+  public Errors readTransferRequestWithDataBinding() throws IOException {
+    AmountTransferRequest request = objectMapper.readValue(new ByteArrayInputStream(TRANSFER_REQUEST), AmountTransferRequest.class);
+    return validate(beanValidator, request, "amountTransferRequest");
+  }
+
+  @Benchmark
+  public Errors readAccountWithCodec() throws IOException {
+    return validate(codecValidator, converter.readAccount(new ByteArrayInputStream(ACCOUNT)), "account");
+  }
+
+  @Benchmark
+  public Errors readAccountWithDataBinding() throws IOException {
+    return validate(beanValidator, objectMapper.readValue(new ByteArrayInputStream(ACCOUNT), Account.class), "account");
+  }
+
+  @Benchmark
+  public int writeAccountWithCodec() throws IOException {
+    out.reset();
+    converter.writeAccount(account, out);
+    return out.size();
+  }
+
+  @Benchmark
+  public int writeAccountWithDataBinding() throws IOException {
+    out.reset();
+    objectMapper.writeValue(out, account);
+    return out.size();
+  }
+
+  // as the MVC argument resolver does for an @Valid body
+  private static Errors validate(SmartValidator validator, Object target, String objectName) {
+    BeanPropertyBindingResult errors = new BeanPropertyBindingResult(target, objectName);
+    validator.validate(target, errors);
+    return errors;
+  }
+}
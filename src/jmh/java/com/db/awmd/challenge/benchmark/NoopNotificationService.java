@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.NotificationService;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+/**
+ * Replaces the email notifications in the {@code benchmark} profile so that benchmarks measure
+ * the transfer path rather than logging.
+ */
+@Service
+@Primary
+@Profile(BenchmarkContext.STUBBED_NOTIFICATIONS_PROFILE)
+public class NoopNotificationService implements NotificationService {
+
+  @Override
+  public void notifyAboutTransfer(Account account, String transferDescription) {
+  }
+}
@@ -0,0 +1,124 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.journal.AccountsSnapshotter;
+import com.db.awmd.challenge.journal.Durability;
+import com.db.awmd.challenge.journal.JournalRecord;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryCompact;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.TransferGate;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Startup time of a journal-backed store: loading the latest snapshot and replaying the journal
+ * tail written after it, or replaying the whole journal when {@code snapshot=false}.
+ *
+ * <p>The 50M account population needs most of the 30 GB heap the fork is given; leave it out
+ * with {@code -p population=1000000,10000000} on smaller machines.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx30g")
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+
+  private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1000);
+
+  @Param({"1000000", "10000000", "50000000"})
+  public int population;
+
+  @Param({"100000"})
+  public int tailTransfers;
+
+  @Param({"true", "false"})
+  public boolean snapshot;
+
+  @Param({"in-memory", "compact"})
+  public String repository;
+
+  private Path journalDirectory;
+
+  private TransferJournal recoveredJournal;
+
+  @Setup(Level.Trial)
+  public void writeJournal() throws IOException, InterruptedException {
+    journalDirectory = Files.createTempDirectory("recovery-benchmark");
+
+    AccountsRepository accountsRepository = newRepository();
+    TransferJournal transferJournal = new TransferJournal(accountsRepository, journalDirectory.toString(), Durability.ASYNC, 2);
+    transferJournal.open();
+
+    for (int i = 0; i < population; i++) {
+      String accountId = BenchmarkContext.accountId(i);
+      accountsRepository.restoreAccount(accountId, INITIAL_BALANCE, 0L);
+      transferJournal.append(JournalRecord.created(accountId, INITIAL_BALANCE, 0L));
+    }
+    if (snapshot) {
+      new AccountsSnapshotter(accountsRepository, transferJournal, new TransferGate(), 0, 0).takeSnapshot();
+    }
+
+    // the tail walks round a ring of accounts; only the number of records matters for replay
+    long[] versions = new long[population];
+    for (int i = 0; i < tailTransfers; i++) {
+      int from = i % population;
+      int to = (i + 1) % population;
+      versions[from]++;
+      versions[to]++;
+      transferJournal.append(JournalRecord.transferred(BigDecimal.ONE,
+        BenchmarkContext.accountId(from), INITIAL_BALANCE, versions[from],
+        BenchmarkContext.accountId(to), INITIAL_BALANCE, versions[to]));
+    }
+    transferJournal.close();
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteJournal() {
+    FileSystemUtils.deleteRecursively(journalDirectory.toFile());
+  }
+
+  @TearDown(Level.Iteration)
+  public void closeJournal() throws IOException, InterruptedException {
+    recoveredJournal.close();
+    // let the recovered store go before the next iteration builds another one
+    recoveredJournal = null;
+  }
+
+  @Benchmark
+  public TransferJournal recover() throws IOException {
+    recoveredJournal = new TransferJournal(newRepository(), journalDirectory.toString(), Durability.ASYNC, 2);
+    recoveredJournal.open();
+    return recoveredJournal;
+  }
+
+  private AccountsRepository newRepository() {
+    switch (repository) {
+      case "in-memory":
+        return new AccountsRepositoryInMemory();
+      case "compact":
+        return new AccountsRepositoryCompact(2, false, 0, true, 5000);
+      default:
+        throw new IllegalArgumentException("Unknown repository " + repository);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.AmountTransferResult;
+import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
+import com.db.awmd.challenge.service.AccountsService;
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Transfers that are all rejected, as in a bad batch from an upstream: reported as results by
+ * {@link AccountsService#tryAmountTransfer} against thrown by
+ * {@link AccountsService#amountTransfer(AmountTransferRequest)}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class RejectedTransferBenchmark {
+
+  private static final int POPULATION = 10_000;
+
+  @Param({"unknown-account", "insufficient-balance"})
+  public String rejection;
+
+  @Param({"default", "compact"})
+  public String configuration;
+
+  private ConfigurableApplicationContext context;
+
+  private AccountsService accountsService;
+
+  private AmountTransferRequest[] requests;
+
+  @Setup(Level.Trial)
+  public void startApplication() {
+    context = BenchmarkContext.start(true, "compact".equals(configuration) ? "accounts.repository.type=compact" : "");
+    accountsService = context.getBean(AccountsService.class);
+    // empty accounts, so every transfer between them is refused
+    BenchmarkContext.createAccounts(accountsService, POPULATION, BigDecimal.ZERO);
+
+    requests = new AmountTransferRequest[POPULATION];
+    for (int i = 0; i < POPULATION; i++) {
+      String fromAccountId = "unknown-account".equals(rejection) ? "Missing-" + i : BenchmarkContext.accountId(i);
+      requests[i] = new AmountTransferRequest(fromAccountId, BenchmarkContext.accountId((i + 1) % POPULATION), BigDecimal.ONE);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void stopApplication() {
+    context.close();
+  }
+
+  @Benchmark
+  public AmountTransferResult result() {
+    return accountsService.tryAmountTransfer(nextRequest());
+  }
+
+  @Benchmark
+  public Exception exception() {
+    try {
+      accountsService.amountTransfer(nextRequest());
+      return null;
+    } catch (InsufficientAccountBalanceException | RuntimeException e) {
+      return e;
+    }
+  }
+
+  private AmountTransferRequest nextRequest() {
+    return requests[ThreadLocalRandom.current().nextInt(POPULATION)];
+  }
+}
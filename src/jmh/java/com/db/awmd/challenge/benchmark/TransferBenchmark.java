@@ -0,0 +1,135 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
+import com.db.awmd.challenge.service.AccountsService;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Throughput of {@link AccountsService#amountTransfer(AmountTransferRequest)}.
+ *
+ * <p>Thread count comes from {@code -t} (or {@code -Pjmh.threads}); population, skew,
+ * notifications and configuration can be narrowed with {@code -p}, e.g.
+ * {@code java -jar build/libs/*-jmh.jar TransferBenchmark -t 8 -p skew=zipf -p configuration=sharded}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class TransferBenchmark {
+
+  private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000_000L);
+
+  private static final BigDecimal AMOUNT = BigDecimal.ONE;
+
+  @Param({"10000", "1000000"})
+  public int population;
+
+  @Param({"uniform", "zipf", "symmetric"})
+  public String skew;
+
+  @Param({"stubbed", "email"})
+  public String notifications;
+
+  @Param({"default", "metrics-off", "hot-accounts-off", "striped", "sharded", "fixed-point", "compact",
+    "journal-sync", "journal-group", "journal-async"})
+  public String configuration;
+
+  private ConfigurableApplicationContext context;
+
+  private AccountsService accountsService;
+
+  private AccountPicker accountPicker;
+
+  private String[] accountIds;
+
+  private Path journalDirectory;
+
+  @Setup(Level.Trial)
+  public void startApplication() throws IOException {
+    context = BenchmarkContext.start("stubbed".equals(notifications), properties());
+    accountsService = context.getBean(AccountsService.class);
+    BenchmarkContext.createAccounts(accountsService, population, INITIAL_BALANCE);
+
+    accountPicker = new AccountPicker(skew, population);
+    accountIds = new String[population];
+    for (int i = 0; i < population; i++) {
+      accountIds[i] = BenchmarkContext.accountId(i);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void stopApplication() {
+    context.close();
+    if (journalDirectory != null) {
+      FileSystemUtils.deleteRecursively(journalDirectory.toFile());
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+
+    int threadIndex;
+
+    final int[] pair = new int[2];
+
+    @Setup(Level.Trial)
+    public void setUp(ThreadParams threadParams) {
+      threadIndex = threadParams.getThreadIndex();
+    }
+  }
+
+  @Benchmark
+  public void amountTransfer(ThreadState threadState) throws InsufficientAccountBalanceException {
+    accountPicker.pick(threadState.threadIndex, threadState.pair);
+    accountsService.amountTransfer(new AmountTransferRequest(
+      accountIds[threadState.pair[0]], accountIds[threadState.pair[1]], AMOUNT));
+  }
+
+  private String[] properties() throws IOException {
+    switch (configuration) {
+      case "default":
+        return new String[0];
+      case "metrics-off":
+        return new String[] {"accounts.metrics.enabled=false"};
+      case "hot-accounts-off":
+        return new String[] {"accounts.hot-accounts.enabled=false"};
+      case "striped":
+        return new String[] {"accounts.lock.stripes=1024"};
+      case "sharded":
+        return new String[] {"accounts.transfer.mode=sharded"};
+      case "fixed-point":
+        return new String[] {"accounts.balance.fixed-point=true"};
+      case "compact":
+        return new String[] {"accounts.repository.type=compact"};
+      case "journal-sync":
+      case "journal-group":
+      case "journal-async":
+        journalDirectory = Files.createTempDirectory("transfer-benchmark");
+        return new String[] {
+          "accounts.journal.enabled=true",
+          "accounts.journal.directory=" + journalDirectory,
+          "accounts.journal.durability=" + configuration.substring("journal-".length()).toUpperCase(),
+          "accounts.snapshot.interval=0"
+        };
+      default:
+        throw new IllegalArgumentException("Unknown configuration " + configuration);
+    }
+  }
+}
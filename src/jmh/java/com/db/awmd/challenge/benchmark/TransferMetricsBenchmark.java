@@ -0,0 +1,38 @@
+package com.db.awmd.challenge.benchmark;
+
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of timing and recording one latency sample, as paid by every transfer. Run with several
+ * threads to see the recorders under contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+public class TransferMetricsBenchmark {
+
+  @Param({"true", "false"})
+  public boolean enabled;
+
+  private TransferMetrics transferMetrics;
+
+  @Setup
+  public void setUp() {
+    transferMetrics = new TransferMetrics(enabled);
+  }
+
+  @Benchmark
+  public void recordTransfer() {
+    long start = System.nanoTime();
+    transferMetrics.recordTransfer(System.nanoTime() - start);
+  }
+}
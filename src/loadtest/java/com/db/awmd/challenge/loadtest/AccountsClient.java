@@ -0,0 +1,111 @@
+package com.db.awmd.challenge.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Minimal blocking client of the accounts API. Responses are read to the end so that the JDK can
+ * keep the connection alive for the next request.
+ *
+ * <p>Given several comma-separated base URLs, as for the nodes of a cluster, each request goes to
+ * one of them at random.
+ */
+final class AccountsClient {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private final String[] baseUrls;
+
+  AccountsClient(String baseUrls) {
+    this.baseUrls = baseUrls.split(",");
+    for (int i = 0; i < this.baseUrls.length; i++) {
+      String baseUrl = this.baseUrls[i].trim();
+      this.baseUrls[i] = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    }
+  }
+
+  int createAccount(String accountId, long balance) throws IOException {
+    return send("POST", "/v1/accounts",
+      "{\"accountId\":\"" + accountId + "\",\"balance\":" + balance + "}").status;
+  }
+
+  int getAccount(String accountId) throws IOException {
+    return send("GET", "/v1/accounts/" + accountId, null).status;
+  }
+
+  /**
+   * @return the balance of the account, or null if it could not be read
+   */
+  BigDecimal getBalance(String accountId) throws IOException {
+    Response response = send("GET", "/v1/accounts/" + accountId, null);
+    if (response.status != 200) {
+      return null;
+    }
+    JsonNode account = OBJECT_MAPPER.readTree(response.body);
+    return account.get("balance").decimalValue();
+  }
+
+  int transfer(String fromAccountId, String toAccountId, long amount, boolean async) throws IOException {
+    return send("PUT", async ? "/v1/accounts/amounttransfer/async" : "/v1/accounts/amounttransfer",
+      "{\"fromAccountId\":\"" + fromAccountId + "\",\"toAccountId\":\"" + toAccountId
+        + "\",\"amountToTransfer\":" + amount + "}").status;
+  }
+
+  private Response send(String method, String path, String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(baseUrls[ThreadLocalRandom.current().nextInt(baseUrls.length)] + path).openConnection();
+    connection.setRequestMethod(method);
+    connection.setConnectTimeout(10_000);
+    connection.setReadTimeout(60_000);
+
+    if (body != null) {
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/json");
+      connection.setFixedLengthStreamingMode(bytes.length);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(bytes);
+      }
+    }
+
+    int status = connection.getResponseCode();
+    InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    byte[] responseBody = new byte[0];
+    if (in != null) {
+      try (InputStream stream = in) {
+        responseBody = readFully(stream);
+      }
+    }
+    return new Response(status, responseBody);
+  }
+
+  private static byte[] readFully(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  private static final class Response {
+
+    private final int status;
+
+    private final byte[] body;
+
+    private Response(int status, byte[] body) {
+      this.status = status;
+      this.body = body;
+    }
+  }
+}
@@ -0,0 +1,240 @@
+package com.db.awmd.challenge.loadtest;
+
+import com.db.awmd.challenge.DevChallengeApplication;
+import com.db.awmd.challenge.binary.BinaryProtocol;
+import com.db.awmd.challenge.binary.BinaryTransferClient;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Closed-loop comparison of transfer throughput over the binary protocol and over the REST
+ * endpoint, with the same number of connections each. Binary connections keep {@code --pipeline}
+ * requests in flight; REST connections send one request at a time, as HTTP/1.1 clients do.
+ *
+ * <p>Without {@code --host} the application is started in-process, and the process CPU time
+ * spent per transfer is reported too; it includes the client's share, which is the same kind of
+ * work for both protocols.
+ *
+ * <pre>
+ * ./gradlew binaryBenchmark -PbinaryBenchmarkArgs="--connections=8 --pipeline=64 --duration=10"
+ * </pre>
+ */
+public final class BinaryBenchmark {
+
+  private static final String USAGE = String.join(System.lineSeparator(),
+    "Options:",
+    "  --host=<host>             run against a running instance with the binary protocol enabled",
+    "                            (default: start the application in-process)",
+    "  --port=<port>             HTTP port (default 18080)",
+    "  --binary-port=<port>      binary protocol port (default 19090)",
+    "  --connections=<count>     connections per protocol (default 8)",
+    "  --pipeline=<count>        binary requests in flight per connection (default 64)",
+    "  --accounts=<count>        accounts transferred between (default 1000)",
+    "  --warmup=<seconds>        unmeasured run before each measurement (default 3)",
+    "  --duration=<seconds>      measured duration per protocol (default 10)");
+
+  private final Map<String, String> options;
+
+  private final String host;
+
+  private final int port;
+
+  private final int binaryPort;
+
+  private final int connections;
+
+  private final int pipeline;
+
+  private final int accounts;
+
+  private final String accountPrefix = "BB" + Long.toString(System.currentTimeMillis(), 36) + "-";
+
+  private BinaryBenchmark(Map<String, String> options) {
+    this.options = options;
+    this.host = options.getOrDefault("host", "localhost");
+    this.port = intOption("port", 18080);
+    this.binaryPort = intOption("binary-port", 19090);
+    this.connections = intOption("connections", 8);
+    this.pipeline = intOption("pipeline", 64);
+    this.accounts = intOption("accounts", 1000);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        System.err.println("Expected --name=value but got " + arg);
+        System.err.println(USAGE);
+        System.exit(2);
+      }
+      options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+    }
+    BinaryBenchmark benchmark = new BinaryBenchmark(options);
+
+    ConfigurableApplicationContext application = null;
+    if (!options.containsKey("host")) {
+      application = SpringApplication.run(DevChallengeApplication.class,
+        "--server.port=" + benchmark.port, "--accounts.binary.enabled=true",
+        "--accounts.binary.port=" + benchmark.binaryPort, "--logging.level.com.db.awmd.challenge=WARN");
+    }
+    try {
+      benchmark.run(application != null);
+    } finally {
+      if (application != null) {
+        application.close();
+      }
+    }
+    System.exit(0);
+  }
+
+  private void run(boolean inProcess) throws Exception {
+    AccountsClient http = new AccountsClient("http://" + host + ":" + port);
+    for (int i = 0; i < accounts; i++) {
+      http.createAccount(accountPrefix + i, 1_000_000_000L);
+    }
+
+    ExecutorService threads = Executors.newFixedThreadPool(connections);
+    try {
+      long warmupSeconds = intOption("warmup", 3);
+      long durationSeconds = intOption("duration", 10);
+
+      measure(threads, this::binaryConnection, warmupSeconds);
+      Result binary = measure(threads, this::binaryConnection, durationSeconds);
+      measure(threads, this::restConnection, warmupSeconds);
+      Result rest = measure(threads, this::restConnection, durationSeconds);
+
+      System.out.printf("binary: %,12.0f transfers/s%s%n", binary.perSecond(), inProcess ? binary.cpuPerTransfer() : "");
+      System.out.printf("rest:   %,12.0f transfers/s%s%n", rest.perSecond(), inProcess ? rest.cpuPerTransfer() : "");
+      System.out.printf("binary/rest: %.1fx throughput with %d connections%n", binary.perSecond() / rest.perSecond(), connections);
+
+      BigDecimal total = BigDecimal.ZERO;
+      for (int i = 0; i < accounts; i++) {
+        total = total.add(http.getBalance(accountPrefix + i));
+      }
+      if (total.compareTo(BigDecimal.valueOf(1_000_000_000L).multiply(BigDecimal.valueOf(accounts))) != 0) {
+        throw new IllegalStateException("Money was not conserved, total balance is " + total);
+      }
+    } finally {
+      threads.shutdownNow();
+    }
+  }
+
+  private Result measure(ExecutorService threads, Connection connection, long seconds) throws Exception {
+    LongAdder transfers = new LongAdder();
+    long cpuStart = processCpuNanos();
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+
+    List<Future<?>> running = new ArrayList<>(connections);
+    for (int i = 0; i < connections; i++) {
+      running.add(threads.submit(() -> {
+        connection.run(deadline, transfers);
+        return null;
+      }));
+    }
+    for (Future<?> future : running) {
+      future.get();
+    }
+    return new Result(transfers.sum(), System.nanoTime() - start, processCpuNanos() - cpuStart);
+  }
+
+  private void binaryConnection(long deadline, LongAdder transfers) throws Exception {
+    try (BinaryTransferClient client = new BinaryTransferClient(host, binaryPort)) {
+      int inFlight = 0;
+      int requestId = 0;
+      while (System.nanoTime() < deadline) {
+        while (inFlight < pipeline) {
+          int from = ThreadLocalRandom.current().nextInt(accounts);
+          client.send(requestId++, accountPrefix + from, otherAccount(from), BigDecimal.ONE);
+          inFlight++;
+        }
+        client.flush();
+        // keep the pipe full: read half the window before topping it up again
+        for (int i = Math.max(1, pipeline / 2); i > 0; i--) {
+          check(client.receive());
+          inFlight--;
+          transfers.increment();
+        }
+      }
+      while (inFlight-- > 0) {
+        check(client.receive());
+        transfers.increment();
+      }
+    }
+  }
+
+  private void restConnection(long deadline, LongAdder transfers) throws Exception {
+    AccountsClient client = new AccountsClient("http://" + host + ":" + port);
+    while (System.nanoTime() < deadline) {
+      int from = ThreadLocalRandom.current().nextInt(accounts);
+      int status = client.transfer(accountPrefix + from, otherAccount(from), 1, false);
+      if (status != 202) {
+        throw new IllegalStateException("Transfer failed with status " + status);
+      }
+      transfers.increment();
+    }
+  }
+
+  private static void check(byte status) {
+    if (status != BinaryProtocol.STATUS_ACCEPTED) {
+      throw new IllegalStateException("Transfer failed with status " + status);
+    }
+  }
+
+  private String otherAccount(int from) {
+    return accountPrefix + (from + 1 + ThreadLocalRandom.current().nextInt(accounts - 1)) % accounts;
+  }
+
+  private int intOption(String name, int defaultValue) {
+    return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+  }
+
+  private static long processCpuNanos() {
+    java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean) {
+      return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+    }
+    return 0L;
+  }
+
+  @FunctionalInterface
+  private interface Connection {
+
+    void run(long deadline, LongAdder transfers) throws Exception;
+  }
+
+  private static final class Result {
+
+    private final long transfers;
+
+    private final long elapsedNanos;
+
+    private final long cpuNanos;
+
+    private Result(long transfers, long elapsedNanos, long cpuNanos) {
+      this.transfers = transfers;
+      this.elapsedNanos = elapsedNanos;
+      this.cpuNanos = cpuNanos;
+    }
+
+    private double perSecond() {
+      return transfers * 1e9 / elapsedNanos;
+    }
+
+    private String cpuPerTransfer() {
+      return transfers == 0 ? "" : String.format(", %.1f us CPU per transfer", cpuNanos / 1e3 / transfers);
+    }
+  }
+}
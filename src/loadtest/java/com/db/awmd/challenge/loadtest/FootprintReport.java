@@ -0,0 +1,86 @@
+package com.db.awmd.challenge.loadtest;
+
+import com.db.awmd.challenge.DevChallengeApplication;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Measures the memory each account store needs per account: the heap (and direct memory) in use
+ * after a full collection, before and after filling the configured repository with
+ * {@code --accounts} accounts with ids like {@code Id-123456}. Every account gets a balance of its
+ * own, as it has after its first transfer, so stores holding {@link BigDecimal}s pay for them.
+ *
+ * <pre>
+ * ./gradlew footprintReport -PfootprintReportArgs="--accounts=1000000"
+ * </pre>
+ */
+public final class FootprintReport {
+
+  private static final String[][] CONFIGURATIONS = {
+    {"in-memory", "--accounts.repository.type=in-memory"},
+    {"in-memory fixed-point", "--accounts.repository.type=in-memory", "--accounts.balance.fixed-point=true"},
+    {"compact", "--accounts.repository.type=compact"},
+    {"compact off-heap", "--accounts.repository.type=compact", "--accounts.repository.off-heap=true"}
+  };
+
+  private FootprintReport() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    int accounts = 1_000_000;
+    for (String arg : args) {
+      if (!arg.startsWith("--accounts=")) {
+        System.err.println("Expected --accounts=<count> but got " + arg);
+        System.exit(2);
+      }
+      accounts = Integer.parseInt(arg.substring("--accounts=".length()));
+    }
+
+    System.out.printf("%-22s %16s %16s%n", "repository", "heap bytes/acct", "direct bytes/acct");
+    for (String[] configuration : CONFIGURATIONS) {
+      String[] properties = new String[configuration.length + 2];
+      System.arraycopy(configuration, 1, properties, 0, configuration.length - 1);
+      properties[properties.length - 3] = "--spring.main.web-environment=false";
+      properties[properties.length - 2] = "--spring.main.banner-mode=off";
+      properties[properties.length - 1] = "--logging.level.root=WARN";
+
+      ConfigurableApplicationContext context = new SpringApplicationBuilder(DevChallengeApplication.class).run(properties);
+      try {
+        AccountsRepository accountsRepository = context.getBean(AccountsRepository.class);
+        long heapBefore = usedHeap();
+        long directBefore = usedDirectMemory();
+        for (int i = 0; i < accounts; i++) {
+          accountsRepository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(123_456L + i, 2)));
+        }
+        long heap = usedHeap() - heapBefore;
+        long direct = usedDirectMemory() - directBefore;
+        System.out.printf("%-22s %16.1f %16.1f%n", configuration[0], (double) heap / accounts, (double) direct / accounts);
+      } finally {
+        context.close();
+      }
+    }
+    System.exit(0);
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  private static long usedDirectMemory() {
+    for (BufferPoolMXBean bufferPool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+      if ("direct".equals(bufferPool.getName())) {
+        return bufferPool.getMemoryUsed();
+      }
+    }
+    return 0L;
+  }
+}
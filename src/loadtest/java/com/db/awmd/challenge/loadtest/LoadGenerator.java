@@ -0,0 +1,343 @@
+package com.db.awmd.challenge.loadtest;
+
+import com.db.awmd.challenge.DevChallengeApplication;
+import com.db.awmd.challenge.loadtest.LoadTestOptions.Operation;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Open-loop HTTP load generator for the accounts API.
+ *
+ * <p>Requests are scheduled at a fixed arrival rate regardless of how quickly earlier ones
+ * complete, and response time is measured from the moment a request was scheduled to be sent.
+ * A server that stalls therefore shows up in the percentiles as every request that should have
+ * been sent during the stall, rather than as the single request that happened to be in flight
+ * (coordinated omission). Service time, measured from the actual send, is reported alongside.
+ *
+ * <p>After the run the balances of every account the generator created are summed and compared
+ * with the money put into them; transfers only move money between those accounts, so any
+ * difference means money was lost or created.
+ *
+ * <p>Without {@code --url} the application is started in-process, with application logging
+ * turned down to WARN so that the console shows the report.
+ */
+public final class LoadGenerator {
+
+  private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+  private final LoadTestOptions options;
+
+  private final AccountsClient client;
+
+  private final String accountPrefix = "LT" + Long.toString(System.currentTimeMillis(), 36) + "-";
+
+  private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+
+  private final AtomicLong createdAccounts = new AtomicLong();
+
+  // accounts created during the run, and creations whose outcome is unknown because of an I/O error
+  private final Queue<String> runAccounts = new ConcurrentLinkedQueue<>();
+
+  private final Queue<String> uncertainAccounts = new ConcurrentLinkedQueue<>();
+
+  private final LongAdder lateSchedules = new LongAdder();
+
+  private final LongAdder pendingRequests = new LongAdder();
+
+  private LoadGenerator(LoadTestOptions options, AccountsClient client) {
+    this.options = options;
+    this.client = client;
+    for (Operation operation : Operation.values()) {
+      stats.put(operation, new OperationStats());
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    LoadTestOptions options;
+    try {
+      options = LoadTestOptions.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(LoadTestOptions.USAGE);
+      System.exit(2);
+      return;
+    }
+
+    // the JDK keeps only 5 idle connections per host by default
+    System.setProperty("http.maxConnections", Integer.toString(options.connections));
+
+    ConfigurableApplicationContext application = null;
+    String url = options.url;
+    if (url == null) {
+      application = SpringApplication.run(DevChallengeApplication.class,
+        "--server.port=" + options.port, "--logging.level.com.db.awmd.challenge=WARN");
+      url = "http://localhost:" + options.port;
+    }
+
+    boolean conserved;
+    try {
+      conserved = new LoadGenerator(options, new AccountsClient(url)).run();
+    } finally {
+      if (application != null) {
+        application.close();
+      }
+    }
+    System.exit(conserved ? 0 : 1);
+  }
+
+  private boolean run() throws Exception {
+    ExecutorService connections = Executors.newFixedThreadPool(options.connections);
+    try {
+      createAccounts(connections);
+
+      System.out.printf("Running %d s warmup and %d s measurement at %d requests/s against %d accounts%n",
+        options.warmupSeconds, options.durationSeconds, options.rate, options.accounts);
+      long measuredNanos = generateLoad(connections);
+
+      report(measuredNanos);
+      return checkConservation(connections);
+    } finally {
+      connections.shutdownNow();
+    }
+  }
+
+  private void createAccounts(ExecutorService connections) throws Exception {
+    List<Future<Integer>> creations = new ArrayList<>(options.accounts);
+    for (int i = 0; i < options.accounts; i++) {
+      String accountId = accountId(i);
+      creations.add(connections.submit(() -> client.createAccount(accountId, options.initialBalance)));
+    }
+    for (Future<Integer> creation : creations) {
+      int status = creation.get();
+      if (status != 201) {
+        throw new IllegalStateException("Could not create the test accounts, got status " + status);
+      }
+    }
+  }
+
+  /**
+   * Sends requests at the configured rate for the warmup and measured duration and returns the
+   * length of the measured part.
+   */
+  private long generateLoad(ExecutorService connections) {
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate;
+    long warmupRequests = (long) options.rate * options.warmupSeconds;
+    long totalRequests = warmupRequests + (long) options.rate * options.durationSeconds;
+    int totalWeight = options.mix.values().stream().mapToInt(Integer::intValue).sum();
+
+    long start = System.nanoTime();
+    long measureStart = start + warmupRequests * intervalNanos;
+
+    for (long i = 0; i < totalRequests; i++) {
+      long intendedStart = start + i * intervalNanos;
+      long now;
+      while ((now = System.nanoTime()) < intendedStart) {
+        LockSupport.parkNanos(intendedStart - now);
+      }
+      if (now - intendedStart > TimeUnit.MILLISECONDS.toNanos(1)) {
+        lateSchedules.increment();
+      }
+
+      Operation operation = pick(totalWeight);
+      boolean measured = i >= warmupRequests;
+      pendingRequests.increment();
+      connections.execute(() -> {
+        try {
+          execute(operation, intendedStart, measured);
+        } finally {
+          pendingRequests.decrement();
+        }
+      });
+    }
+
+    long measuredNanos = System.nanoTime() - measureStart;
+
+    // wait for the backlog so that every scheduled request is accounted for
+    drain();
+    return measuredNanos;
+  }
+
+  private void drain() {
+    while (pendingRequests.sum() > 0) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+  }
+
+  private Operation pick(int totalWeight) {
+    int ticket = ThreadLocalRandom.current().nextInt(totalWeight);
+    for (Map.Entry<Operation, Integer> weight : options.mix.entrySet()) {
+      ticket -= weight.getValue();
+      if (ticket < 0) {
+        return weight.getKey();
+      }
+    }
+    throw new IllegalStateException("Empty operation mix");
+  }
+
+  private void execute(Operation operation, long intendedStart, boolean measured) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long sendStart = System.nanoTime();
+    int status;
+
+    try {
+      switch (operation) {
+        case CREATE:
+          String accountId = accountPrefix + "new-" + createdAccounts.incrementAndGet();
+          try {
+            status = client.createAccount(accountId, options.initialBalance);
+          } catch (IOException e) {
+            uncertainAccounts.add(accountId);
+            throw e;
+          }
+          if (status == 201) {
+            runAccounts.add(accountId);
+          }
+          break;
+        case GET:
+          status = client.getAccount(accountId(random.nextInt(options.accounts)));
+          break;
+        case TRANSFER:
+          int from = random.nextInt(options.accounts);
+          int to = random.nextInt(options.accounts - 1);
+          status = client.transfer(accountId(from), accountId(to >= from ? to + 1 : to), options.amount, options.asyncTransfers);
+          break;
+        default:
+          throw new IllegalStateException("Unknown operation " + operation);
+      }
+    } catch (IOException e) {
+      status = -1;
+    }
+
+    if (measured) {
+      long end = System.nanoTime();
+      stats.get(operation).record(status, end - intendedStart, end - sendStart);
+    }
+  }
+
+  private void report(long measuredNanos) {
+    double seconds = measuredNanos / 1e9;
+    System.out.println();
+    System.out.printf("%-9s %9s %10s | %-37s | %-37s | %s%n", "operation", "count", "req/s",
+      "response time ms (p50 p99 p99.9 max)", "service time ms (p50 p99 p99.9 max)", "status counts");
+
+    for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+      OperationStats operationStats = entry.getValue();
+      Histogram response = operationStats.response.getIntervalHistogram();
+      Histogram service = operationStats.service.getIntervalHistogram();
+      if (response.getTotalCount() == 0) {
+        continue;
+      }
+
+      Map<Integer, Long> statuses = new TreeMap<>();
+      operationStats.statuses.forEach((status, count) -> statuses.put(status, count.sum()));
+
+      System.out.printf("%-9s %9d %10.1f | %s | %s | %s%n", entry.getKey().name().toLowerCase(),
+        response.getTotalCount(), response.getTotalCount() / seconds,
+        percentiles(response), percentiles(service), statuses);
+      if (statuses.containsKey(503)) {
+        // refused transfers answer fast and would hide the latency of the admitted ones
+        Histogram admitted = operationStats.admittedResponse.getIntervalHistogram();
+        System.out.printf("%-9s %9d %10.1f | %s | without 503 responses%n", "",
+          admitted.getTotalCount(), admitted.getTotalCount() / seconds, percentiles(admitted));
+      }
+    }
+
+    if (lateSchedules.sum() > 0) {
+      System.out.printf("%nWarning: %d requests were scheduled more than 1 ms late, the generator could not keep up%n",
+        lateSchedules.sum());
+    }
+    System.out.println("Status -1 means the request failed with an I/O error.");
+  }
+
+  private static String percentiles(Histogram histogram) {
+    return String.format("%8.2f %8.2f %8.2f %8.2f",
+      histogram.getValueAtPercentile(50) / 1e6, histogram.getValueAtPercentile(99) / 1e6,
+      histogram.getValueAtPercentile(99.9) / 1e6, histogram.getMaxValue() / 1e6);
+  }
+
+  private boolean checkConservation(ExecutorService connections) throws Exception {
+    List<String> accountIds = new ArrayList<>();
+    for (int i = 0; i < options.accounts; i++) {
+      accountIds.add(accountId(i));
+    }
+    accountIds.addAll(runAccounts);
+
+    BigDecimal expected = BigDecimal.valueOf(options.initialBalance).multiply(BigDecimal.valueOf(accountIds.size()));
+    BigDecimal actual = sumBalances(connections, accountIds, true);
+
+    // a creation that failed on the client side may still have reached the server
+    List<String> uncertain = new ArrayList<>(uncertainAccounts);
+    BigDecimal uncertainBalance = sumBalances(connections, uncertain, false);
+    expected = expected.add(uncertainBalance);
+    actual = actual.add(uncertainBalance);
+
+    boolean conserved = expected.compareTo(actual) == 0;
+    System.out.printf("%nMoney conservation over %d accounts: expected %s, found %s: %s%n",
+      accountIds.size(), expected.toPlainString(), actual.toPlainString(), conserved ? "OK" : "VIOLATED");
+    return conserved;
+  }
+
+  private BigDecimal sumBalances(ExecutorService connections, List<String> accountIds, boolean required) throws Exception {
+    List<Future<BigDecimal>> balances = new ArrayList<>(accountIds.size());
+    for (String accountId : accountIds) {
+      balances.add(connections.submit(() -> client.getBalance(accountId)));
+    }
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < balances.size(); i++) {
+      BigDecimal balance = balances.get(i).get();
+      if (balance == null) {
+        if (required) {
+          throw new IllegalStateException("Could not read the balance of " + accountIds.get(i));
+        }
+        continue;
+      }
+      total = total.add(balance);
+    }
+    return total;
+  }
+
+  private String accountId(int index) {
+    return accountPrefix + index;
+  }
+
+  private static final class OperationStats {
+
+    private final Recorder response = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+
+    private final Recorder service = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+
+    private final Recorder admittedResponse = new Recorder(HIGHEST_TRACKABLE_NANOS, 3);
+
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    private void record(int status, long responseNanos, long serviceNanos) {
+      response.recordValue(Math.min(responseNanos, HIGHEST_TRACKABLE_NANOS));
+      service.recordValue(Math.min(serviceNanos, HIGHEST_TRACKABLE_NANOS));
+      if (status != 503) {
+        admittedResponse.recordValue(Math.min(responseNanos, HIGHEST_TRACKABLE_NANOS));
+      }
+      statuses.computeIfAbsent(status, key -> new LongAdder()).increment();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.db.awmd.challenge.loadtest;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options of the {@link LoadGenerator}, all given as {@code --name=value}.
+ */
+final class LoadTestOptions {
+
+  static final String USAGE = String.join(System.lineSeparator(),
+    "Options:",
+    "  --url=<base url>          run against a running instance, e.g. http://localhost:18080,",
+    "                            or against a cluster with comma-separated node URLs",
+    "                            (default: start the application in-process on --port)",
+    "  --port=<port>             port of the in-process application (default 18080)",
+    "  --rate=<requests/s>       open-loop arrival rate over all operations (default 1000)",
+    "  --duration=<seconds>      measured duration (default 30)",
+    "  --warmup=<seconds>        duration at the same rate before measuring (default 5)",
+    "  --mix=create:5,get:45,transfer:50",
+    "                            relative weights of the operations",
+    "  --accounts=<count>        accounts created before the run (default 1000)",
+    "  --initial-balance=<n>     balance of each created account (default 1000000)",
+    "  --amount=<n>              amount of each transfer (default 1)",
+    "  --connections=<count>     concurrent HTTP connections (default 64)",
+    "  --async-transfers=true    send transfers to the asynchronous endpoint (default false)");
+
+  final String url;
+
+  final int port;
+
+  final int rate;
+
+  final int durationSeconds;
+
+  final int warmupSeconds;
+
+  final Map<Operation, Integer> mix;
+
+  final int accounts;
+
+  final long initialBalance;
+
+  final long amount;
+
+  final int connections;
+
+  final boolean asyncTransfers;
+
+  private LoadTestOptions(Map<String, String> values) {
+    this.url = values.remove("url");
+    this.port = intValue(values, "port", 18080);
+    this.rate = intValue(values, "rate", 1000);
+    this.durationSeconds = intValue(values, "duration", 30);
+    this.warmupSeconds = intValue(values, "warmup", 5);
+    this.mix = parseMix(values.containsKey("mix") ? values.remove("mix") : "create:5,get:45,transfer:50");
+    this.accounts = intValue(values, "accounts", 1000);
+    this.initialBalance = Long.parseLong(values.containsKey("initial-balance") ? values.remove("initial-balance") : "1000000");
+    this.amount = Long.parseLong(values.containsKey("amount") ? values.remove("amount") : "1");
+    this.connections = intValue(values, "connections", 64);
+    this.asyncTransfers = Boolean.parseBoolean(values.containsKey("async-transfers") ? values.remove("async-transfers") : "false");
+
+    if (!values.isEmpty()) {
+      throw new IllegalArgumentException("Unknown options " + values.keySet());
+    }
+    if (rate <= 0 || durationSeconds <= 0 || connections <= 0) {
+      throw new IllegalArgumentException("rate, duration and connections must be positive");
+    }
+    if (accounts < 2 && mix.getOrDefault(Operation.TRANSFER, 0) > 0) {
+      throw new IllegalArgumentException("Transfers need at least 2 accounts");
+    }
+  }
+
+  static LoadTestOptions parse(String[] args) {
+    Map<String, String> values = new HashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Expected --name=value but got " + arg);
+      }
+      int separator = arg.indexOf('=');
+      values.put(arg.substring(2, separator), arg.substring(separator + 1));
+    }
+    return new LoadTestOptions(values);
+  }
+
+  private static int intValue(Map<String, String> values, String name, int defaultValue) {
+    String value = values.remove(name);
+    return value == null ? defaultValue : Integer.parseInt(value);
+  }
+
+  private static Map<Operation, Integer> parseMix(String mix) {
+    Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+    for (String entry : mix.split(",")) {
+      String[] parts = entry.split(":");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Expected operation:weight in mix but got " + entry);
+      }
+      weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+    }
+    if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+      throw new IllegalArgumentException("The mix needs at least one positive weight");
+    }
+    return weights;
+  }
+
+  enum Operation {
+    CREATE, GET, TRANSFER
+  }
+}
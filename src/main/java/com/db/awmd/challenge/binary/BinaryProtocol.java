@@ -0,0 +1,61 @@
+package com.db.awmd.challenge.binary;
+
+import com.db.awmd.challenge.domain.TransferStatus;
+
+/**
+ * Frames of the binary transfer protocol served by {@link BinaryTransferServer}. All integers are
+ * big-endian and every frame starts with the length of the rest of the frame as an int.
+ *
+ * <pre>
+ * request:  int length, int requestId, byte opcode (1 = transfer),
+ *           short fromLength, fromLength bytes of UTF-8 fromAccountId,
+ *           short toLength, toLength bytes of UTF-8 toAccountId,
+ *           long unscaled amount, byte scale
+ * response: int length (5), int requestId, byte status
+ * </pre>
+ *
+ * <p>Clients may send any number of requests without waiting; responses on a connection come back
+ * in request order.
+ */
+public final class BinaryProtocol {
+
+  public static final byte OP_TRANSFER = 1;
+
+  public static final int RESPONSE_LENGTH = Integer.BYTES + 1;
+
+  public static final byte STATUS_ACCEPTED = 0;
+
+  public static final byte STATUS_ACCOUNT_NOT_FOUND = 1;
+
+  public static final byte STATUS_INSUFFICIENT_BALANCE = 2;
+
+  public static final byte STATUS_LOCK_TIMEOUT = 3;
+
+  public static final byte STATUS_INVALID_REQUEST = 4;
+
+  public static final byte STATUS_FAILED = 5;
+
+  public static final byte STATUS_OVERLOADED = 6;
+
+  private BinaryProtocol() {
+  }
+
+  public static byte statusCode(TransferStatus status) {
+    switch (status) {
+      case ACCEPTED:
+        return STATUS_ACCEPTED;
+      case ACCOUNT_NOT_FOUND:
+        return STATUS_ACCOUNT_NOT_FOUND;
+      case INSUFFICIENT_BALANCE:
+        return STATUS_INSUFFICIENT_BALANCE;
+      case LOCK_TIMEOUT:
+        return STATUS_LOCK_TIMEOUT;
+      case INVALID_REQUEST:
+        return STATUS_INVALID_REQUEST;
+      case OVERLOADED:
+        return STATUS_OVERLOADED;
+      default:
+        return STATUS_FAILED;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package com.db.awmd.challenge.binary;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Blocking client of the {@link BinaryProtocol}. Requests are buffered until {@link #flush()} or
+ * until the buffer is full, so many can be sent before the first response is read; responses
+ * arrive in the order the requests were sent. Not thread-safe, use one client per thread.
+ */
+public final class BinaryTransferClient implements Closeable {
+
+  private final SocketChannel channel;
+
+  private final ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+
+  private final ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+
+  private int lastRequestId;
+
+  public BinaryTransferClient(String host, int port) throws IOException {
+    this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+    this.channel.socket().setTcpNoDelay(true);
+    this.in.flip();
+  }
+
+  /**
+   * Queues a transfer request.
+   *
+   * @throws IllegalArgumentException if an id is longer than 65535 bytes or the amount does not
+   *                                  fit in a long with a scale of at most 127
+   */
+  public void send(int requestId, String fromAccountId, String toAccountId, BigDecimal amount) throws IOException {
+    byte[] from = fromAccountId.getBytes(StandardCharsets.UTF_8);
+    byte[] to = toAccountId.getBytes(StandardCharsets.UTF_8);
+    if (from.length > 0xffff || to.length > 0xffff) {
+      throw new IllegalArgumentException("Account ids are limited to 65535 bytes");
+    }
+    if (amount.scale() != (byte) amount.scale() || amount.unscaledValue().bitLength() > 63) {
+      throw new IllegalArgumentException("Amount " + amount + " cannot be sent in the binary protocol");
+    }
+
+    int length = Integer.BYTES + 1 + Short.BYTES + from.length + Short.BYTES + to.length + Long.BYTES + 1;
+    if (out.remaining() < Integer.BYTES + length) {
+      flush();
+    }
+    out.putInt(length);
+    out.putInt(requestId);
+    out.put(BinaryProtocol.OP_TRANSFER);
+    out.putShort((short) from.length);
+    out.put(from);
+    out.putShort((short) to.length);
+    out.put(to);
+    out.putLong(amount.unscaledValue().longValue());
+    out.put((byte) amount.scale());
+  }
+
+  public void flush() throws IOException {
+    out.flip();
+    while (out.hasRemaining()) {
+      channel.write(out);
+    }
+    out.clear();
+  }
+
+  /**
+   * Waits for the next response and returns its status, one of the {@code STATUS_} codes of
+   * {@link BinaryProtocol}. Requests still buffered are sent first.
+   */
+  public byte receive() throws IOException {
+    if (out.position() > 0) {
+      flush();
+    }
+    fill(Integer.BYTES + BinaryProtocol.RESPONSE_LENGTH);
+    int length = in.getInt();
+    if (length != BinaryProtocol.RESPONSE_LENGTH) {
+      throw new IOException("Unexpected response length " + length);
+    }
+    lastRequestId = in.getInt();
+    return in.get();
+  }
+
+  /**
+   * The request id of the response last returned by {@link #receive()}.
+   */
+  public int getLastRequestId() {
+    return lastRequestId;
+  }
+
+  public byte transfer(String fromAccountId, String toAccountId, BigDecimal amount) throws IOException {
+    send(0, fromAccountId, toAccountId, amount);
+    return receive();
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void fill(int bytes) throws IOException {
+    if (in.remaining() >= bytes) {
+      return;
+    }
+    in.compact();
+    while (in.position() < bytes) {
+      if (channel.read(in) < 0) {
+        throw new EOFException("Connection closed by the server");
+      }
+    }
+    in.flip();
+  }
+}
@@ -0,0 +1,306 @@
+package com.db.awmd.challenge.binary;
+
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.service.AccountsService;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Accepts transfers in the {@link BinaryProtocol} on {@code accounts.binary.port}, enabled with
+ * {@code accounts.binary.enabled=true}.
+ *
+ * <p>Connections are spread over {@code accounts.binary.io-threads} selector threads. Each
+ * connection owns one input and one output buffer for its lifetime. A selector thread decodes every
+ * complete frame in the input buffer, runs the transfer through {@link AccountsService} on the
+ * spot and appends the response to the output buffer, which is written once per batch of frames.
+ * No request object besides {@link AmountTransferRequest} is built and nothing is bound or
+ * validated reflectively. While a client does not read its responses the connection stops being
+ * read, so a fast sender cannot make the server buffer without bound.
+ *
+ * <p>A transfer waiting for a locked account holds up the other connections of its selector
+ * thread, as it would hold a servlet thread, so the number of threads should cover the expected
+ * lock waits.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.binary.enabled", havingValue = "true")
+@Slf4j
+public class BinaryTransferServer {
+
+  // requestId, opcode, two empty id lengths, amount and scale
+  private static final int MIN_REQUEST_LENGTH = Integer.BYTES + 1 + Short.BYTES + Short.BYTES + Long.BYTES + 1;
+
+  private static final BigDecimal MIN_AMOUNT = BigDecimal.ONE;
+
+  private final AccountsService accountsService;
+
+  private final int port;
+
+  private final int maxFrameLength;
+
+  private final int bufferSize;
+
+  private final EventLoop[] eventLoops;
+
+  private ServerSocketChannel serverChannel;
+
+  private volatile boolean running = true;
+
+  @Autowired
+  public BinaryTransferServer(AccountsService accountsService,
+                              @Value("${accounts.binary.port:9090}") int port,
+                              @Value("${accounts.binary.io-threads:0}") int ioThreads,
+                              @Value("${accounts.binary.max-frame-length:1024}") int maxFrameLength,
+                              @Value("${accounts.binary.buffer-size:65536}") int bufferSize) {
+    this.accountsService = accountsService;
+    this.port = port;
+    this.maxFrameLength = maxFrameLength;
+    this.bufferSize = Math.max(bufferSize, Integer.BYTES + maxFrameLength);
+    this.eventLoops = new EventLoop[ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors()];
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(port));
+    for (int i = 0; i < eventLoops.length; i++) {
+      eventLoops[i] = new EventLoop("binary-transfers-" + (i + 1));
+      eventLoops[i].start();
+    }
+
+    Thread acceptor = new Thread(this::acceptConnections, "binary-transfers-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    log.info("Accepting binary transfers on port {} with {} threads", getPort(), eventLoops.length);
+  }
+
+  @PreDestroy
+  public void stop() throws IOException {
+    running = false;
+    serverChannel.close();
+    for (EventLoop eventLoop : eventLoops) {
+      eventLoop.selector.wakeup();
+    }
+  }
+
+  public int getPort() {
+    return serverChannel.socket().getLocalPort();
+  }
+
+  private void acceptConnections() {
+    int next = 0;
+    while (running) {
+      try {
+        SocketChannel channel = serverChannel.accept();
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        eventLoops[next].register(channel);
+        next = (next + 1) % eventLoops.length;
+      } catch (ClosedChannelException e) {
+        return;
+      } catch (IOException e) {
+        log.warn("Could not accept a binary transfer connection: {}", e.getMessage());
+      }
+    }
+  }
+
+  private final class EventLoop extends Thread {
+
+    private final Selector selector;
+
+    private final Queue<SocketChannel> registrations = new ConcurrentLinkedQueue<>();
+
+    private EventLoop(String name) throws IOException {
+      super(name);
+      this.selector = Selector.open();
+      setDaemon(true);
+    }
+
+    private void register(SocketChannel channel) {
+      registrations.add(channel);
+      selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (running) {
+          selector.select();
+          SocketChannel channel;
+          while ((channel = registrations.poll()) != null) {
+            channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+          }
+
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Connection connection = (Connection) key.attachment();
+            try {
+              connection.serve(key);
+            } catch (IOException | RuntimeException e) {
+              log.debug("Closing binary transfer connection: {}", e.toString());
+              key.cancel();
+              connection.channel.close();
+            }
+          }
+        }
+      } catch (IOException e) {
+        log.error("Binary transfer selector failed", e);
+      } finally {
+        for (SelectionKey key : selector.keys()) {
+          try {
+            key.channel().close();
+          } catch (IOException e) {
+            log.debug("Could not close binary transfer connection", e);
+          }
+        }
+        try {
+          selector.close();
+        } catch (IOException e) {
+          log.debug("Could not close selector", e);
+        }
+      }
+    }
+  }
+
+  private final class Connection {
+
+    private final SocketChannel channel;
+
+    private final ByteBuffer in = ByteBuffer.allocate(bufferSize);
+
+    private final ByteBuffer out = ByteBuffer.allocate(bufferSize);
+
+    private Connection(SocketChannel channel) {
+      this.channel = channel;
+      // out is kept in read mode between writes
+      out.flip();
+    }
+
+    private void serve(SelectionKey key) throws IOException {
+      if (key.isWritable() && !flush()) {
+        return;
+      }
+      if (key.isReadable() && channel.read(in) < 0) {
+        throw new IOException("connection closed by the client");
+      }
+
+      // answer everything received, writing whenever the output buffer fills up
+      while (true) {
+        out.compact();
+        boolean drained;
+        try {
+          drained = handleFrames();
+        } finally {
+          out.flip();
+        }
+        if (!flush()) {
+          key.interestOps(SelectionKey.OP_WRITE);
+          return;
+        }
+        if (drained) {
+          key.interestOps(SelectionKey.OP_READ);
+          return;
+        }
+      }
+    }
+
+    /**
+     * Writes as much of the output as the socket takes now.
+     *
+     * @return whether all of it was written
+     */
+    private boolean flush() throws IOException {
+      while (out.hasRemaining()) {
+        if (channel.write(out) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Answers the complete frames in the input buffer while there is room for the responses.
+     *
+     * @return whether every complete frame was answered
+     */
+    private boolean handleFrames() throws IOException {
+      in.flip();
+      try {
+        while (in.remaining() >= Integer.BYTES) {
+          int length = in.getInt(in.position());
+          if (length < MIN_REQUEST_LENGTH || length > maxFrameLength) {
+            throw new IOException("invalid frame length " + length);
+          }
+          if (in.remaining() < Integer.BYTES + length) {
+            return true;
+          }
+          if (out.remaining() < Integer.BYTES + BinaryProtocol.RESPONSE_LENGTH) {
+            return false;
+          }
+
+          int frameEnd = in.position() + Integer.BYTES + length;
+          in.position(in.position() + Integer.BYTES);
+          int requestId = in.getInt();
+          byte status = handleRequest(frameEnd);
+          in.position(frameEnd);
+
+          out.putInt(BinaryProtocol.RESPONSE_LENGTH);
+          out.putInt(requestId);
+          out.put(status);
+        }
+        return true;
+      } finally {
+        in.compact();
+      }
+    }
+
+    private byte handleRequest(int frameEnd) {
+      if (in.get() != BinaryProtocol.OP_TRANSFER) {
+        return BinaryProtocol.STATUS_INVALID_REQUEST;
+      }
+      String fromAccountId = readString(frameEnd);
+      String toAccountId = fromAccountId != null ? readString(frameEnd) : null;
+      if (toAccountId == null || frameEnd - in.position() != Long.BYTES + 1) {
+        return BinaryProtocol.STATUS_INVALID_REQUEST;
+      }
+      BigDecimal amount = BigDecimal.valueOf(in.getLong(), in.get());
+      // the same rules as the constraints on AmountTransferRequest
+      if (fromAccountId.isEmpty() || toAccountId.isEmpty() || amount.compareTo(MIN_AMOUNT) < 0) {
+        return BinaryProtocol.STATUS_INVALID_REQUEST;
+      }
+
+      return BinaryProtocol.statusCode(accountsService
+        .amountTransferForResult(new AmountTransferRequest(fromAccountId, toAccountId, amount))
+        .getStatus());
+    }
+
+    private String readString(int frameEnd) {
+      int length = in.getShort() & 0xffff;
+      if (frameEnd - in.position() < length + Short.BYTES) {
+        return null;
+      }
+      String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+      in.position(in.position() + length);
+      return value;
+    }
+  }
+}
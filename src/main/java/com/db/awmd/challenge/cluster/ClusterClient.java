@@ -0,0 +1,140 @@
+package com.db.awmd.challenge.cluster;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.RemoteCreditBatch;
+import com.db.awmd.challenge.domain.RemoteCreditBatchResult;
+import com.db.awmd.challenge.exception.AccountDoesNotExistsException;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
+import com.db.awmd.challenge.exception.NodeUnavailableException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Calls the accounts API of other nodes. Error responses are turned back into the exceptions
+ * that produced them on the other node, so a forwarded request fails the way a local one would.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.cluster.enabled", havingValue = "true")
+public class ClusterClient {
+
+  /**
+   * Carries {@code accounts.cluster.secret}, which the endpoints under {@code /v1/cluster} require.
+   */
+  public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+  private final ClusterTopology clusterTopology;
+
+  private final ObjectMapper objectMapper;
+
+  private final RestTemplate restTemplate;
+
+  private final String secret;
+
+  @Autowired
+  public ClusterClient(ClusterTopology clusterTopology,
+                       ObjectMapper objectMapper,
+                       @Value("${accounts.cluster.secret:}") String secret,
+                       @Value("${accounts.cluster.connect-timeout:1000}") int connectTimeoutMillis,
+                       @Value("${accounts.cluster.read-timeout:10000}") int readTimeoutMillis) {
+    this.clusterTopology = clusterTopology;
+    this.objectMapper = objectMapper;
+    this.secret = secret;
+
+    SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+    requestFactory.setConnectTimeout(connectTimeoutMillis);
+    requestFactory.setReadTimeout(readTimeoutMillis);
+    this.restTemplate = new RestTemplate(requestFactory);
+    this.restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+      @Override
+      public boolean hasError(ClientHttpResponse response) {
+        return false;
+      }
+    });
+  }
+
+  public void createAccount(int node, Account account) {
+    ResponseEntity<String> response = exchange(node, HttpMethod.POST, "/v1/accounts", account);
+    if (response.getStatusCode() != HttpStatus.CREATED) {
+      throwFailure(response);
+    }
+  }
+
+  public Account getAccount(int node, String accountId) {
+    ResponseEntity<String> response = exchange(node, HttpMethod.GET, "/v1/accounts/" + accountId, null);
+    if (response.getStatusCode() != HttpStatus.OK) {
+      throwFailure(response);
+    }
+    return read(response, Account.class);
+  }
+
+  public void transfer(int node, AmountTransferRequest amountTransferRequest) throws InsufficientAccountBalanceException {
+    ResponseEntity<String> response = exchange(node, HttpMethod.PUT, "/v1/accounts/amounttransfer", amountTransferRequest);
+    if (response.getStatusCode() == HttpStatus.FORBIDDEN) {
+      throw new InsufficientAccountBalanceException(response.getBody());
+    }
+    if (response.getStatusCode() != HttpStatus.ACCEPTED) {
+      throwFailure(response);
+    }
+  }
+
+  public RemoteCreditBatchResult sendCredits(int node, RemoteCreditBatch batch) {
+    ResponseEntity<String> response = exchange(node, HttpMethod.POST, "/v1/cluster/credits", batch);
+    if (response.getStatusCode() != HttpStatus.OK) {
+      throwFailure(response);
+    }
+    return read(response, RemoteCreditBatchResult.class);
+  }
+
+  private ResponseEntity<String> exchange(int node, HttpMethod method, String path, Object body) {
+    HttpHeaders headers = new HttpHeaders();
+    if (body != null) {
+      headers.setContentType(MediaType.APPLICATION_JSON);
+    }
+    // every node is a peer, so the forwarded public requests may carry it too
+    headers.set(SECRET_HEADER, secret);
+    try {
+      return restTemplate.exchange(clusterTopology.urlOf(node) + path, method, new HttpEntity<>(body, headers), String.class);
+    } catch (ResourceAccessException e) {
+      throw new NodeUnavailableException("Node " + node + " is not reachable, please retry", e);
+    }
+  }
+
+  private <T> T read(ResponseEntity<String> response, Class<T> type) {
+    try {
+      return objectMapper.readValue(response.getBody(), type);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unexpected response from another node: " + response.getBody(), e);
+    }
+  }
+
+  private static void throwFailure(ResponseEntity<String> response) {
+    String message = response.getBody();
+    switch (response.getStatusCode()) {
+      case NOT_FOUND:
+        throw new AccountDoesNotExistsException(message);
+      case BAD_REQUEST:
+        throw new IllegalArgumentException(message);
+      case SERVICE_UNAVAILABLE:
+        throw new AccountLockTimeoutException(message);
+      default:
+        throw new RuntimeException("Another node answered " + response.getStatusCode() + ": " + message);
+    }
+  }
+}
@@ -0,0 +1,386 @@
+package com.db.awmd.challenge.cluster;
+
+import com.db.awmd.challenge.domain.AccountRuntime;
+import com.db.awmd.challenge.domain.AccountState;
+import com.db.awmd.challenge.domain.RejectedRemoteCredit;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.journal.JournalParticipant;
+import com.db.awmd.challenge.journal.JournalRecord;
+import com.db.awmd.challenge.journal.TransferJournal;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Durable state of cross-node transfers: the credits this node still owes other nodes, and how
+ * far it has applied the credits other nodes sent it.
+ *
+ * <p>Credits to each node are numbered in order. A debited credit stays in the outbox until the
+ * target node confirms it, so it is delivered at least once. The target applies a credit only if
+ * its number is above the highest it has applied from that sender, so it is applied at most once.
+ * Rejected credits are remembered, so that a repeated delivery is rejected again instead of being
+ * dropped as a duplicate, and the sender refunds each of them once.
+ *
+ * <p>With the journal enabled every change is appended as a ledger record while the account it
+ * belongs to is still locked, and replayed on startup. Without the journal a restarted node starts
+ * a new incarnation, whose numbering the other nodes track from scratch.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.cluster.enabled", havingValue = "true")
+public class ClusterLedger implements JournalParticipant {
+
+  private static final byte INCARNATION = 1;
+
+  private static final byte DEBITED = 2;
+
+  private static final byte ACKNOWLEDGED = 3;
+
+  private static final byte REFUNDED = 4;
+
+  private static final byte CREDITED = 5;
+
+  private static final byte OUTBOX = 6;
+
+  private static final byte INBOX = 7;
+
+  private final Outbox[] outboxes;
+
+  private final Inbox[] inboxes;
+
+  // guarded by this
+  private long incarnation;
+
+  @Autowired(required = false)
+  private TransferJournal transferJournal;
+
+  @Autowired
+  public ClusterLedger(ClusterTopology clusterTopology) {
+    this.outboxes = new Outbox[clusterTopology.getNodeCount()];
+    this.inboxes = new Inbox[clusterTopology.getNodeCount()];
+    for (int node = 0; node < outboxes.length; node++) {
+      this.outboxes[node] = new Outbox();
+      this.inboxes[node] = new Inbox();
+    }
+  }
+
+  /**
+   * Identifies this run of the node's credit numbering. Chosen on first use unless recovered
+   * from the journal.
+   */
+  public synchronized long getIncarnation() {
+    if (incarnation == 0L) {
+      incarnation = ThreadLocalRandom.current().nextLong(1L, Long.MAX_VALUE);
+      append(null, payload(INCARNATION, out -> out.writeLong(incarnation)));
+    }
+    return incarnation;
+  }
+
+  /**
+   * Puts the credit for an account just debited into the node's outbox. The caller holds the
+   * account's lock, so the ledger record follows the account's earlier records in the journal.
+   */
+  PendingCredit debited(int node, AccountRuntime fromAccount, String toAccountId, BigDecimal amount) {
+    // taken first so that the incarnation is in the journal before any credit numbered by it
+    getIncarnation();
+
+    Outbox outbox = outboxes[node];
+    synchronized (outbox) {
+      long sequence = outbox.nextSequence++;
+      long journalPosition = append(fromAccount,
+        debitPayload(node, sequence, fromAccount.getAccountId(), toAccountId, amount));
+      PendingCredit credit = new PendingCredit(sequence, fromAccount.getAccountId(), toAccountId, amount, journalPosition);
+      outbox.pending.put(sequence, credit);
+      return credit;
+    }
+  }
+
+  /**
+   * The oldest credits owed to the node, in sequence order.
+   */
+  List<PendingCredit> pending(int node, int max) {
+    Outbox outbox = outboxes[node];
+    synchronized (outbox) {
+      List<PendingCredit> credits = new ArrayList<>(Math.min(max, outbox.pending.size()));
+      for (PendingCredit credit : outbox.pending.values()) {
+        if (credits.size() == max) {
+          break;
+        }
+        credits.add(credit);
+      }
+      return credits;
+    }
+  }
+
+  PendingCredit getPending(int node, long sequence) {
+    Outbox outbox = outboxes[node];
+    synchronized (outbox) {
+      return outbox.pending.get(sequence);
+    }
+  }
+
+  long countPending(int node) {
+    Outbox outbox = outboxes[node];
+    synchronized (outbox) {
+      return outbox.pending.size();
+    }
+  }
+
+  /**
+   * Drops a rejected credit whose amount was just given back to the source account. The caller
+   * holds that account's lock.
+   *
+   * @return the journal position of the refund, 0 without the journal
+   */
+  long refunded(int node, long sequence, AccountRuntime fromAccount) {
+    Outbox outbox = outboxes[node];
+    synchronized (outbox) {
+      outbox.pending.remove(sequence);
+      return append(fromAccount, payload(REFUNDED, out -> {
+        out.writeInt(node);
+        out.writeLong(sequence);
+      }));
+    }
+  }
+
+  /**
+   * Drops every credit up to the sequence number the node confirmed and returns them.
+   */
+  List<PendingCredit> acknowledged(int node, long throughSequence) {
+    Outbox outbox = outboxes[node];
+    synchronized (outbox) {
+      NavigableMap<Long, PendingCredit> delivered = outbox.pending.headMap(throughSequence, true);
+      if (delivered.isEmpty()) {
+        return new ArrayList<>();
+      }
+      List<PendingCredit> credits = new ArrayList<>(delivered.values());
+      delivered.clear();
+      // losing this record only means the credits are delivered again and ignored as duplicates
+      append(null, payload(ACKNOWLEDGED, out -> {
+        out.writeInt(node);
+        out.writeLong(throughSequence);
+      }));
+      return credits;
+    }
+  }
+
+  /**
+   * The state of the credits received from a node. Callers synchronize on it while applying them.
+   */
+  Inbox inbox(int node) {
+    return inboxes[node];
+  }
+
+  /**
+   * Forgets what was received from an earlier incarnation of the node. The caller holds the inbox.
+   */
+  void startIncarnation(Inbox inbox, long incarnation) {
+    if (inbox.incarnation != incarnation) {
+      inbox.reset(incarnation, 0L);
+    }
+  }
+
+  /**
+   * Records a credit applied to the account, whose lock the caller holds along with the inbox.
+   *
+   * @return the journal position of the credit, 0 without the journal
+   */
+  long credited(int node, Inbox inbox, long sequence, AccountRuntime toAccount) {
+    inbox.applied = sequence;
+    return append(toAccount, creditPayload(node, inbox.incarnation, sequence, null));
+  }
+
+  /**
+   * Records a credit that could not be applied. The caller holds the inbox.
+   */
+  long rejected(int node, Inbox inbox, long sequence, TransferStatus status, String message) {
+    RejectedRemoteCredit rejection = new RejectedRemoteCredit(sequence, status, message);
+    inbox.applied = sequence;
+    inbox.rejected.put(sequence, rejection);
+    return append(null, creditPayload(node, inbox.incarnation, sequence, rejection));
+  }
+
+  @Override
+  public void checkpoint() {
+    long currentIncarnation = getIncarnation();
+    append(null, payload(INCARNATION, out -> out.writeLong(currentIncarnation)));
+
+    for (int node = 0; node < outboxes.length; node++) {
+      int outboxNode = node;
+      Outbox outbox = outboxes[node];
+      synchronized (outbox) {
+        append(null, payload(OUTBOX, out -> {
+          out.writeInt(outboxNode);
+          out.writeLong(outbox.nextSequence);
+        }));
+        for (PendingCredit credit : outbox.pending.values()) {
+          append(null, debitPayload(node, credit.getSequence(), credit.getFromAccountId(), credit.getToAccountId(), credit.getAmount()));
+        }
+      }
+    }
+
+    for (int node = 0; node < inboxes.length; node++) {
+      int inboxNode = node;
+      Inbox inbox = inboxes[node];
+      synchronized (inbox) {
+        append(null, payload(INBOX, out -> {
+          out.writeInt(inboxNode);
+          out.writeLong(inbox.incarnation);
+          out.writeLong(inbox.applied);
+        }));
+        for (RejectedRemoteCredit rejection : inbox.rejected.values()) {
+          append(null, creditPayload(node, inbox.incarnation, rejection.getSequence(), rejection));
+        }
+      }
+    }
+  }
+
+  @Override
+  public synchronized void replay(JournalRecord record) {
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(record.getPayload()));
+      byte kind = in.readByte();
+      if (kind == INCARNATION) {
+        incarnation = in.readLong();
+        return;
+      }
+
+      int node = in.readInt();
+      Outbox outbox = outboxes[node];
+      Inbox inbox = inboxes[node];
+      switch (kind) {
+        case DEBITED:
+          long sequence = in.readLong();
+          outbox.pending.put(sequence, new PendingCredit(sequence, in.readUTF(), in.readUTF(), new BigDecimal(in.readUTF()), 0L));
+          outbox.nextSequence = Math.max(outbox.nextSequence, sequence + 1);
+          break;
+        case ACKNOWLEDGED:
+          long throughSequence = in.readLong();
+          outbox.pending.headMap(throughSequence, true).clear();
+          outbox.nextSequence = Math.max(outbox.nextSequence, throughSequence + 1);
+          break;
+        case REFUNDED:
+          outbox.pending.remove(in.readLong());
+          break;
+        case OUTBOX:
+          outbox.pending.clear();
+          outbox.nextSequence = in.readLong();
+          break;
+        case CREDITED:
+          long creditIncarnation = in.readLong();
+          long creditSequence = in.readLong();
+          if (inbox.incarnation != creditIncarnation) {
+            inbox.reset(creditIncarnation, 0L);
+          }
+          inbox.applied = Math.max(inbox.applied, creditSequence);
+          if (in.readBoolean()) {
+            inbox.rejected.put(creditSequence,
+              new RejectedRemoteCredit(creditSequence, TransferStatus.valueOf(in.readUTF()), in.readUTF()));
+          }
+          break;
+        case INBOX:
+          inbox.reset(in.readLong(), in.readLong());
+          break;
+        default:
+          throw new IllegalStateException("Unknown cluster ledger record " + kind);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private long append(AccountRuntime account, byte[] payload) {
+    if (transferJournal == null) {
+      return 0L;
+    }
+    if (account == null) {
+      return transferJournal.append(JournalRecord.ledger(payload));
+    }
+    AccountState state = account.getState();
+    return transferJournal.append(JournalRecord.ledger(account.getAccountId(), state.getBalance(), state.getVersion(), payload));
+  }
+
+  private static byte[] debitPayload(int node, long sequence, String fromAccountId, String toAccountId, BigDecimal amount) {
+    return payload(DEBITED, out -> {
+      out.writeInt(node);
+      out.writeLong(sequence);
+      out.writeUTF(fromAccountId);
+      out.writeUTF(toAccountId);
+      out.writeUTF(amount.toString());
+    });
+  }
+
+  private static byte[] creditPayload(int node, long incarnation, long sequence, RejectedRemoteCredit rejection) {
+    return payload(CREDITED, out -> {
+      out.writeInt(node);
+      out.writeLong(incarnation);
+      out.writeLong(sequence);
+      out.writeBoolean(rejection != null);
+      if (rejection != null) {
+        out.writeUTF(rejection.getStatus().name());
+        out.writeUTF(rejection.getMessage() != null ? rejection.getMessage() : "");
+      }
+    });
+  }
+
+  private static byte[] payload(byte kind, PayloadWriter writer) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(kind);
+      writer.write(out);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not encode cluster ledger record", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  @FunctionalInterface
+  private interface PayloadWriter {
+
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private static final class Outbox {
+
+    private final TreeMap<Long, PendingCredit> pending = new TreeMap<>();
+
+    private long nextSequence = 1L;
+  }
+
+  static final class Inbox {
+
+    private final Map<Long, RejectedRemoteCredit> rejected = new HashMap<>();
+
+    private long incarnation;
+
+    // highest sequence number processed, applied or rejected
+    private long applied;
+
+    long getApplied() {
+      return applied;
+    }
+
+    RejectedRemoteCredit rejection(long sequence) {
+      return rejected.get(sequence);
+    }
+
+    private void reset(long incarnation, long applied) {
+      this.incarnation = incarnation;
+      this.applied = applied;
+      this.rejected.clear();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package com.db.awmd.challenge.cluster;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Which node owns which account, enabled with {@code accounts.cluster.enabled=true}.
+ *
+ * <p>Nodes are placed on a hash ring at {@code accounts.cluster.virtual-nodes} points each and an
+ * account belongs to the first node point at or after its id's hash, so adding a node only moves
+ * the accounts between its points and their predecessors. Every node must be configured with the
+ * same {@code accounts.cluster.nodes}, in the same order.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.cluster.enabled", havingValue = "true")
+public class ClusterTopology {
+
+  private final List<String> nodes;
+
+  private final int nodeIndex;
+
+  private final TreeMap<Integer, Integer> ring = new TreeMap<>();
+
+  @Autowired
+  public ClusterTopology(@Value("${accounts.cluster.nodes}") String[] nodes,
+                         @Value("${accounts.cluster.node-index}") int nodeIndex,
+                         @Value("${accounts.cluster.virtual-nodes:128}") int virtualNodes) {
+    if (nodeIndex < 0 || nodeIndex >= nodes.length) {
+      throw new IllegalStateException("accounts.cluster.node-index must point into accounts.cluster.nodes");
+    }
+    this.nodes = Collections.unmodifiableList(Arrays.asList(nodes));
+    this.nodeIndex = nodeIndex;
+
+    for (int node = 0; node < nodes.length; node++) {
+      for (int point = 0; point < virtualNodes; point++) {
+        ring.put(hash(nodes[node].trim() + "#" + point), node);
+      }
+    }
+  }
+
+  public int ownerOf(String accountId) {
+    Map.Entry<Integer, Integer> point = ring.ceilingEntry(hash(accountId));
+    return point != null ? point.getValue() : ring.firstEntry().getValue();
+  }
+
+  public boolean isLocal(String accountId) {
+    return ownerOf(accountId) == nodeIndex;
+  }
+
+  public int getNodeIndex() {
+    return nodeIndex;
+  }
+
+  public int getNodeCount() {
+    return nodes.size();
+  }
+
+  public List<String> getNodes() {
+    return nodes;
+  }
+
+  public String urlOf(int node) {
+    String url = nodes.get(node).trim();
+    return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+
+  // String.hashCode is specified, so every node computes the same ring; the finalizer spreads it
+  private static int hash(String key) {
+    int hash = key.hashCode();
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return hash;
+  }
+}
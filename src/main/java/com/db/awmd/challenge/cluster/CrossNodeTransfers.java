@@ -0,0 +1,402 @@
+package com.db.awmd.challenge.cluster;
+
+import com.db.awmd.challenge.domain.AccountRuntime;
+import com.db.awmd.challenge.domain.RejectedRemoteCredit;
+import com.db.awmd.challenge.domain.RemoteCredit;
+import com.db.awmd.challenge.domain.RemoteCreditBatch;
+import com.db.awmd.challenge.domain.RemoteCreditBatchResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.AccountDoesNotExistsException;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.AccountAggregates;
+import com.db.awmd.challenge.service.AccountLockManager;
+import com.db.awmd.challenge.service.ConsistentCuts;
+import com.db.awmd.challenge.service.TransferGate;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Transfers to accounts owned by another node, in two steps.
+ *
+ * <p>The source node debits its account and records the credit it owes in the {@link ClusterLedger}
+ * under the account's lock, like a local transfer. One sender thread per node delivers owed
+ * credits in batches of up to {@code accounts.cluster.max-batch-size}, oldest first. The target
+ * node credits its accounts and answers with the highest credit it has processed, plus the
+ * credits it rejected because the account does not exist, the amount is invalid there or applying
+ * it failed; those are refunded to the source account. Unreachable nodes are retried every
+ * {@code accounts.cluster.retry-interval} milliseconds.
+ *
+ * <p>A transfer waits up to {@code accounts.cluster.credit-timeout} milliseconds for its credit.
+ * Past that it still succeeds: the money has left the source account and is delivered, or
+ * refunded, once the target node answers. Until then it is not counted by either node.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.cluster.enabled", havingValue = "true")
+@Slf4j
+public class CrossNodeTransfers {
+
+  private final ClusterTopology clusterTopology;
+
+  private final ClusterClient clusterClient;
+
+  private final ClusterLedger clusterLedger;
+
+  private final AccountsRepository accountsRepository;
+
+  private final AccountLockManager accountLockManager;
+
+  private final TransferGate transferGate;
+
+  private final ConsistentCuts consistentCuts;
+
+  private final AccountAggregates accountAggregates;
+
+  private final long creditTimeoutMillis;
+
+  private final long retryIntervalMillis;
+
+  private final int maxBatchSize;
+
+  private final Sender[] senders;
+
+  @Autowired(required = false)
+  private TransferJournal transferJournal;
+
+  @Autowired
+  public CrossNodeTransfers(ClusterTopology clusterTopology,
+                            ClusterClient clusterClient,
+                            ClusterLedger clusterLedger,
+                            AccountsRepository accountsRepository,
+                            AccountLockManager accountLockManager,
+                            TransferGate transferGate,
+                            ConsistentCuts consistentCuts,
+                            AccountAggregates accountAggregates,
+                            @Value("${accounts.cluster.credit-timeout:5000}") long creditTimeoutMillis,
+                            @Value("${accounts.cluster.retry-interval:500}") long retryIntervalMillis,
+                            @Value("${accounts.cluster.max-batch-size:1000}") int maxBatchSize) {
+    this.clusterTopology = clusterTopology;
+    this.clusterClient = clusterClient;
+    this.clusterLedger = clusterLedger;
+    this.accountsRepository = accountsRepository;
+    this.accountLockManager = accountLockManager;
+    this.transferGate = transferGate;
+    this.consistentCuts = consistentCuts;
+    this.accountAggregates = accountAggregates;
+    this.creditTimeoutMillis = creditTimeoutMillis;
+    this.retryIntervalMillis = retryIntervalMillis;
+    this.maxBatchSize = maxBatchSize;
+    this.senders = new Sender[clusterTopology.getNodeCount()];
+  }
+
+  // credits recovered from the journal are sent as soon as the node is up
+  @PostConstruct
+  public void start() {
+    for (int node = 0; node < senders.length; node++) {
+      if (node != clusterTopology.getNodeIndex()) {
+        senders[node] = new Sender(node);
+        senders[node].start();
+      }
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    for (Sender sender : senders) {
+      if (sender != null) {
+        sender.interrupt();
+      }
+    }
+  }
+
+  /**
+   * Debits the local account and waits for the owner of the target account to credit it.
+   *
+   * @throws InsufficientAccountBalanceException if the account cannot cover the amount
+   * @throws AccountDoesNotExistsException       if the target node has no such account; the
+   *                                             amount has been refunded
+   */
+  public void transfer(AccountRuntime fromAccount, String toAccountId, BigDecimal amount) throws InsufficientAccountBalanceException {
+    int node = clusterTopology.ownerOf(toAccountId);
+    PendingCredit credit;
+
+    int epoch = transferGate.enter();
+    try {
+      accountLockManager.lock(fromAccount, fromAccount);
+      try {
+        checkJournalWritable();
+        consistentCuts.beforeChange(fromAccount.getAccountId(), fromAccount.getBalance(), fromAccount.getVersion());
+        if (!fromAccount.withdraw(amount)) {
+          throw new InsufficientAccountBalanceException("Insufficient account balance in accountId:" + fromAccount.getAccountId() + "to perform this transaction");
+        }
+        accountAggregates.balanceChanged(fromAccount);
+        accountAggregates.totalChanged(amount.negate());
+        credit = clusterLedger.debited(node, fromAccount, toAccountId, amount);
+      } finally {
+        accountLockManager.unlock(fromAccount, fromAccount);
+      }
+    } finally {
+      transferGate.exit(epoch);
+    }
+
+    if (credit.getJournalPosition() > 0L) {
+      transferJournal.awaitDurable(credit.getJournalPosition());
+    }
+    senders[node].signal();
+
+    try {
+      credit.getOutcome().get(creditTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      log.warn("Credit {} to node {} not confirmed within {} ms, it stays pending", credit.getSequence(), node, creditTimeoutMillis);
+    } catch (InterruptedException e) {
+      // the credit stays pending and is still delivered, but this transfer cannot report its outcome
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Something went wrong. Server not able to process the request");
+    } catch (ExecutionException e) {
+      throw (RuntimeException) e.getCause();
+    }
+  }
+
+  /**
+   * Applies credits sent by another node, skipping those already processed. Credits that cannot
+   * be applied are rejected; a lock timeout ends the batch early and the rest is sent again.
+   *
+   * @param onCredited called for every credit applied by this call, once it is durable
+   */
+  public RemoteCreditBatchResult applyCredits(RemoteCreditBatch batch, Consumer<RemoteCredit> onCredited) {
+    int source = batch.getSourceNode();
+    if (source < 0 || source >= clusterTopology.getNodeCount() || source == clusterTopology.getNodeIndex()) {
+      throw new IllegalArgumentException("Unknown source node " + source);
+    }
+    // refused whole, so the sender keeps the credits and sends them again
+    checkJournalWritable();
+
+    List<RemoteCredit> credited = new ArrayList<>();
+    List<RejectedRemoteCredit> rejected = new ArrayList<>();
+    long journalPosition = 0L;
+    long appliedThrough;
+
+    ClusterLedger.Inbox inbox = clusterLedger.inbox(source);
+    synchronized (inbox) {
+      clusterLedger.startIncarnation(inbox, batch.getIncarnation());
+      for (RemoteCredit credit : batch.getCredits()) {
+        if (credit.getSequence() <= inbox.getApplied()) {
+          RejectedRemoteCredit rejection = inbox.rejection(credit.getSequence());
+          if (rejection != null) {
+            rejected.add(rejection);
+          }
+          continue;
+        }
+
+        try {
+          journalPosition = Math.max(journalPosition, credit(source, inbox, credit));
+          credited.add(credit);
+        } catch (AccountLockTimeoutException e) {
+          break;
+        } catch (AccountDoesNotExistsException e) {
+          journalPosition = Math.max(journalPosition,
+            clusterLedger.rejected(source, inbox, credit.getSequence(), TransferStatus.ACCOUNT_NOT_FOUND, e.getMessage()));
+          rejected.add(inbox.rejection(credit.getSequence()));
+        } catch (IllegalArgumentException e) {
+          journalPosition = Math.max(journalPosition,
+            clusterLedger.rejected(source, inbox, credit.getSequence(), TransferStatus.INVALID_REQUEST, e.getMessage()));
+          rejected.add(inbox.rejection(credit.getSequence()));
+        } catch (RuntimeException e) {
+          // rejected rather than retried: resending the same credit would fail again and hold up the later ones
+          log.error("Could not apply credit {} from node {}, rejecting it", credit.getSequence(), source, e);
+          journalPosition = Math.max(journalPosition,
+            clusterLedger.rejected(source, inbox, credit.getSequence(), TransferStatus.FAILED, e.toString()));
+          rejected.add(inbox.rejection(credit.getSequence()));
+        }
+      }
+      appliedThrough = inbox.getApplied();
+    }
+
+    if (journalPosition > 0L) {
+      transferJournal.awaitDurable(journalPosition);
+    }
+    credited.forEach(onCredited);
+    return new RemoteCreditBatchResult(appliedThrough, rejected);
+  }
+
+  /**
+   * Number of credits owed to each node, indexed like {@link ClusterTopology#getNodes()}.
+   */
+  public long[] pendingCredits() {
+    long[] pending = new long[clusterTopology.getNodeCount()];
+    for (int node = 0; node < pending.length; node++) {
+      pending[node] = clusterLedger.countPending(node);
+    }
+    return pending;
+  }
+
+  private long credit(int source, ClusterLedger.Inbox inbox, RemoteCredit credit) {
+    if (credit.getAmount().signum() <= 0) {
+      throw new IllegalArgumentException("Amount to transfer must be positive.");
+    }
+    AccountRuntime toAccount = (AccountRuntime) accountsRepository.getAccount(credit.getToAccountId());
+
+    int epoch = transferGate.enter();
+    try {
+      accountLockManager.lock(toAccount, toAccount);
+      try {
+        consistentCuts.beforeChange(toAccount.getAccountId(), toAccount.getBalance(), toAccount.getVersion());
+        toAccount.deposit(credit.getAmount());
+        accountAggregates.balanceChanged(toAccount);
+        accountAggregates.totalChanged(credit.getAmount());
+        return clusterLedger.credited(source, inbox, credit.getSequence(), toAccount);
+      } finally {
+        accountLockManager.unlock(toAccount, toAccount);
+      }
+    } finally {
+      transferGate.exit(epoch);
+    }
+  }
+
+  private void refund(int node, RejectedRemoteCredit rejection) {
+    PendingCredit credit = clusterLedger.getPending(node, rejection.getSequence());
+    if (credit == null) {
+      return;
+    }
+    checkJournalWritable();
+    AccountRuntime fromAccount = (AccountRuntime) accountsRepository.getAccount(credit.getFromAccountId());
+    long journalPosition;
+
+    int epoch = transferGate.enter();
+    try {
+      accountLockManager.lock(fromAccount, fromAccount);
+      try {
+        consistentCuts.beforeChange(fromAccount.getAccountId(), fromAccount.getBalance(), fromAccount.getVersion());
+        fromAccount.deposit(credit.getAmount());
+        accountAggregates.balanceChanged(fromAccount);
+        accountAggregates.totalChanged(credit.getAmount());
+        journalPosition = clusterLedger.refunded(node, credit.getSequence(), fromAccount);
+      } finally {
+        accountLockManager.unlock(fromAccount, fromAccount);
+      }
+    } finally {
+      transferGate.exit(epoch);
+    }
+
+    if (journalPosition > 0L) {
+      transferJournal.awaitDurable(journalPosition);
+    }
+    log.info("Refunded {} to account {}, node {} rejected the credit: {}",
+      credit.getAmount(), credit.getFromAccountId(), node, rejection.getMessage());
+    credit.getOutcome().completeExceptionally(failureOf(rejection));
+  }
+
+  private void checkJournalWritable() {
+    if (transferJournal != null) {
+      transferJournal.checkWritable();
+    }
+  }
+
+  private static RuntimeException failureOf(RejectedRemoteCredit rejection) {
+    switch (rejection.getStatus()) {
+      case ACCOUNT_NOT_FOUND:
+        return new AccountDoesNotExistsException(rejection.getMessage());
+      case INVALID_REQUEST:
+        return new IllegalArgumentException(rejection.getMessage());
+      default:
+        return new RuntimeException("Another node could not apply the credit: " + rejection.getMessage());
+    }
+  }
+
+  private final class Sender extends Thread {
+
+    private final int node;
+
+    // guarded by this
+    private boolean signalled;
+
+    private Sender(int node) {
+      super("cluster-credits-" + node);
+      this.node = node;
+      setDaemon(true);
+    }
+
+    private synchronized void signal() {
+      signalled = true;
+      notifyAll();
+    }
+
+    @Override
+    public void run() {
+      while (!isInterrupted()) {
+        try {
+          List<PendingCredit> batch = clusterLedger.pending(node, maxBatchSize);
+          if (batch.isEmpty()) {
+            awaitSignal();
+          } else if (!deliver(batch)) {
+            Thread.sleep(retryIntervalMillis);
+          }
+        } catch (InterruptedException e) {
+          return;
+        } catch (RuntimeException e) {
+          log.error("Could not settle credits with node {}", node, e);
+          try {
+            Thread.sleep(retryIntervalMillis);
+          } catch (InterruptedException interrupted) {
+            return;
+          }
+        }
+      }
+    }
+
+    private synchronized void awaitSignal() throws InterruptedException {
+      if (!signalled) {
+        wait(retryIntervalMillis);
+      }
+      signalled = false;
+    }
+
+    /**
+     * @return whether the node settled any of the credits
+     */
+    private boolean deliver(List<PendingCredit> batch) {
+      long journalPosition = 0L;
+      List<RemoteCredit> credits = new ArrayList<>(batch.size());
+      for (PendingCredit credit : batch) {
+        journalPosition = Math.max(journalPosition, credit.getJournalPosition());
+        credits.add(credit.toRemoteCredit());
+      }
+      // never hand out a credit the source could forget in a crash
+      if (journalPosition > 0L) {
+        transferJournal.awaitDurable(journalPosition);
+      }
+
+      RemoteCreditBatchResult result;
+      try {
+        result = clusterClient.sendCredits(node,
+          new RemoteCreditBatch(clusterTopology.getNodeIndex(), clusterLedger.getIncarnation(), credits));
+      } catch (RuntimeException e) {
+        log.warn("Could not deliver {} credits to node {}: {}", credits.size(), node, e.getMessage());
+        return false;
+      }
+
+      for (RejectedRemoteCredit rejection : result.getRejected()) {
+        refund(node, rejection);
+      }
+      List<PendingCredit> delivered = clusterLedger.acknowledged(node, result.getAppliedThrough());
+      for (PendingCredit credit : delivered) {
+        credit.getOutcome().complete(null);
+      }
+      return !delivered.isEmpty() || !result.getRejected().isEmpty();
+    }
+  }
+}
@@ -0,0 +1,39 @@
+package com.db.awmd.challenge.cluster;
+
+import com.db.awmd.challenge.domain.RemoteCredit;
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import lombok.Getter;
+
+/**
+ * A credit owed to another node for an account debited here. The outcome completes once the
+ * other node applied it, or exceptionally once it was rejected and refunded.
+ */
+@Getter
+final class PendingCredit {
+
+  private final long sequence;
+
+  private final String fromAccountId;
+
+  private final String toAccountId;
+
+  private final BigDecimal amount;
+
+  // 0 when the journal is off or the credit was recovered from it
+  private final long journalPosition;
+
+  private final CompletableFuture<Void> outcome = new CompletableFuture<>();
+
+  PendingCredit(long sequence, String fromAccountId, String toAccountId, BigDecimal amount, long journalPosition) {
+    this.sequence = sequence;
+    this.fromAccountId = fromAccountId;
+    this.toAccountId = toAccountId;
+    this.amount = amount;
+    this.journalPosition = journalPosition;
+  }
+
+  RemoteCredit toRemoteCredit() {
+    return new RemoteCredit(sequence, fromAccountId, toAccountId, amount);
+  }
+}
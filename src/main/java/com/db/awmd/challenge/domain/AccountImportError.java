@@ -0,0 +1,21 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AccountImportError {
+
+    private final long line;
+
+    private final String accountId;
+
+    private final String message;
+
+    public AccountImportError(long line, String accountId, String message) {
+        this.line = line;
+        this.accountId = accountId;
+        this.message = message;
+    }
+}
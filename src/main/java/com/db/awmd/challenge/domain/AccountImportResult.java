@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk account import. {@code errors} lists at most
+ * {@code accounts.import.max-reported-errors} of the {@code rejected} lines, ordered by line.
+ */
+@Data
+public class AccountImportResult {
+
+    private final long imported;
+
+    private final long rejected;
+
+    private final List<AccountImportError> errors;
+
+    public AccountImportResult(long imported, long rejected, List<AccountImportError> errors) {
+        this.imported = imported;
+        this.rejected = rejected;
+        this.errors = errors;
+    }
+}
@@ -1,27 +1,73 @@
 package com.db.awmd.challenge.domain;
 
-import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.annotation.JsonProperty;
-import lombok.Data;
 import lombok.Getter;
-import lombok.Setter;
 
 import java.math.BigDecimal;
 import java.util.concurrent.locks.ReentrantLock;
 
-public class AccountRuntime extends Account{
+/**
+ * Live account held by the in-memory repository.
+ *
+ * <p>Subclasses keep the balance and its version together in one immutable value that every change
+ * replaces through a single volatile write, {@link AccountState} in {@link DecimalAccountRuntime}
+ * and long minor units in {@link FixedPointAccountRuntime}. Readers never lock: one read of
+ * {@link #getState()} always yields a committed balance with its matching version. Changes still
+ * need exclusive access to the account, usually its {@link #getLock() lock}.
+ */
+public abstract class AccountRuntime extends Account{
 
     @JsonIgnore
     @Getter
-    ReentrantLock lock = new ReentrantLock(true);
+    final ReentrantLock lock;
 
-    public AccountRuntime(String accountId) {
-        super(accountId);
+    protected AccountRuntime(String accountId,
+                             boolean fairLock) {
+        super(accountId, null);
+        this.lock = new ReentrantLock(fairLock);
     }
 
-    public AccountRuntime(String accountId,
-                          BigDecimal balance) {
-        super(accountId, balance);
+    @JsonIgnore
+    public abstract AccountState getState();
+
+    @JsonIgnore
+    public long getVersion() {
+        return getState().getVersion();
+    }
+
+    @Override
+    public BigDecimal getBalance() {
+        return getState().getBalance();
+    }
+
+    @Override
+    public abstract void setBalance(BigDecimal balance);
+
+    /**
+     * Debits the amount if the balance covers it. The caller must have exclusive access to the account.
+     */
+    public abstract boolean withdraw(BigDecimal amount);
+
+    /**
+     * Credits the amount. The caller must have exclusive access to the account.
+     */
+    public abstract void deposit(BigDecimal amount);
+
+    /**
+     * Replaces the balance with a recovered or replicated state, unless the account already has
+     * that version or a newer one.
+     */
+    public abstract void restore(BigDecimal balance, long version);
+
+    /**
+     * Moves the amount to the other account if this balance covers it. The caller must have
+     * exclusive access to both accounts.
+     */
+    public boolean transferTo(AccountRuntime toAccount, BigDecimal amount) {
+        if (!withdraw(amount)) {
+            return false;
+        }
+        toAccount.deposit(amount);
+        return true;
     }
 }
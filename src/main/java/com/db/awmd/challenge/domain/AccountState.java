@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Committed balance of an account together with the version it was committed at. Instances are
+ * never modified; every change to an account publishes a new one.
+ */
+@Data
+public final class AccountState {
+
+    private final BigDecimal balance;
+
+    private final long version;
+
+    public AccountState(BigDecimal balance, long version) {
+        this.balance = balance;
+        this.version = version;
+    }
+}
@@ -0,0 +1,25 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Money held across all accounts and the accounts holding the most, largest first.
+ */
+@Data
+public class AccountsSummary {
+
+    private final BigDecimal total;
+
+    private final long accounts;
+
+    private final List<Account> top;
+
+    public AccountsSummary(BigDecimal total, long accounts, List<Account> top) {
+        this.total = total;
+        this.accounts = accounts;
+        this.top = top;
+    }
+}
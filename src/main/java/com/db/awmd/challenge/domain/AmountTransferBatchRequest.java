@@ -0,0 +1,35 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+@Data
+public class AmountTransferBatchRequest {
+
+    @Valid
+    @NotNull(message = "Transfers cannot be null")
+    @NotEmpty(message = "Transfers cannot be empty")
+    @Size(max = 10000, message = "A batch cannot contain more than 10000 transfers")
+    private final List<AmountTransferRequest> transfers;
+
+    @JsonCreator
+    public AmountTransferBatchRequest(@JsonProperty("transfers") List<AmountTransferRequest> transfers){
+        this.transfers = transfers;
+    }
+
+    // element constraints like List<@NotNull ...> need Bean Validation 2.0
+    @JsonIgnore
+    @AssertTrue(message = "Transfers cannot contain null")
+    public boolean isWithoutNullTransfers() {
+        return transfers == null || !transfers.contains(null);
+    }
+}
@@ -7,6 +7,7 @@ import org.hibernate.validator.constraints.NotEmpty;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
 import java.math.BigDecimal;
 
 @Data
@@ -24,13 +25,26 @@ public class AmountTransferRequest {
     @Min(value = 1, message = "Invalid amount to be transferred: Cannot be less than 1")
     private final BigDecimal amountToTransfer;
 
+    /**
+     * Optional client-chosen key; retries carrying the same key return the outcome of the first
+     * attempt instead of transferring again.
+     */
+    @Size(min = 1, max = 64, message = "Idempotency key must be between 1 and 64 characters")
+    private final String idempotencyKey;
+
+    public AmountTransferRequest(String fromAccountId, String toAccountId, BigDecimal amountToTransfer) {
+        this(fromAccountId, toAccountId, amountToTransfer, null);
+    }
+
     @JsonCreator
     public AmountTransferRequest(@JsonProperty("fromAccountId") String fromAccountId,
                                  @JsonProperty("toAccountId") String toAccountId,
-                                 @JsonProperty("amountToTransfer") BigDecimal amountToTransfer){
+                                 @JsonProperty("amountToTransfer") BigDecimal amountToTransfer,
+                                 @JsonProperty("idempotencyKey") String idempotencyKey){
         this.fromAccountId = fromAccountId;
         this.toAccountId = toAccountId;
         this.amountToTransfer = amountToTransfer;
+        this.idempotencyKey = idempotencyKey;
     }
 }
 
@@ -0,0 +1,50 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AmountTransferResult {
+
+    private static final AmountTransferResult ACCEPTED = new AmountTransferResult(TransferStatus.ACCEPTED, null);
+
+    private static final AmountTransferResult OVERLOADED = new AmountTransferResult(TransferStatus.OVERLOADED,
+        "Too many transfers in progress. Please retry the transfer later");
+
+    private final TransferStatus status;
+
+    private final String message;
+
+    public AmountTransferResult(TransferStatus status, String message) {
+        this.status = status;
+        this.message = message;
+    }
+
+    public static AmountTransferResult accepted() {
+        return ACCEPTED;
+    }
+
+    public static AmountTransferResult accountNotFound(String accountId) {
+        return new AmountTransferResult(TransferStatus.ACCOUNT_NOT_FOUND, "Account id " + accountId + " does not exists!");
+    }
+
+    public static AmountTransferResult insufficientBalance(String accountId) {
+        return new AmountTransferResult(TransferStatus.INSUFFICIENT_BALANCE,
+            "Insufficient account balance in accountId:" + accountId + "to perform this transaction");
+    }
+
+    public static AmountTransferResult lockTimeout(String accountId) {
+        return new AmountTransferResult(TransferStatus.LOCK_TIMEOUT,
+            "Timed out waiting for account id " + accountId + ". Please retry the transfer");
+    }
+
+    public static AmountTransferResult overloaded() {
+        return OVERLOADED;
+    }
+
+    public static AmountTransferResult accountOverloaded(String accountId) {
+        return new AmountTransferResult(TransferStatus.OVERLOADED,
+            "Too many transfers in progress for account id " + accountId + ". Please retry the transfer later");
+    }
+}
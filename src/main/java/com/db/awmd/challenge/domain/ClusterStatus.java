@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * This node's place in the cluster and the credits it still has to deliver to each node.
+ */
+@Data
+public class ClusterStatus {
+
+    private final int node;
+
+    private final List<String> nodes;
+
+    private final long[] pendingCredits;
+
+    public ClusterStatus(int node, List<String> nodes, long[] pendingCredits) {
+        this.node = node;
+        this.nodes = nodes;
+        this.pendingCredits = pendingCredits;
+    }
+}
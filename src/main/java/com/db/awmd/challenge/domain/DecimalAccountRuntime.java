@@ -0,0 +1,61 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+
+/**
+ * Account whose balance is held as a {@link BigDecimal}, published with its version as one
+ * {@link AccountState}.
+ */
+public class DecimalAccountRuntime extends AccountRuntime {
+
+    private volatile AccountState state;
+
+    public DecimalAccountRuntime(String accountId) {
+        this(accountId, BigDecimal.ZERO, true);
+    }
+
+    public DecimalAccountRuntime(String accountId,
+                                 BigDecimal balance) {
+        this(accountId, balance, true);
+    }
+
+    public DecimalAccountRuntime(String accountId,
+                                 BigDecimal balance,
+                                 boolean fairLock) {
+        super(accountId, fairLock);
+        this.state = new AccountState(balance, 0L);
+    }
+
+    @Override
+    public AccountState getState() {
+        return state;
+    }
+
+    @Override
+    public void setBalance(BigDecimal balance) {
+        state = new AccountState(balance, state.getVersion() + 1);
+    }
+
+    @Override
+    public boolean withdraw(BigDecimal amount) {
+        AccountState current = state;
+        if (current.getBalance().compareTo(amount) < 0) {
+            return false;
+        }
+        state = new AccountState(current.getBalance().subtract(amount), current.getVersion() + 1);
+        return true;
+    }
+
+    @Override
+    public void deposit(BigDecimal amount) {
+        AccountState current = state;
+        state = new AccountState(current.getBalance().add(amount), current.getVersion() + 1);
+    }
+
+    @Override
+    public void restore(BigDecimal balance, long version) {
+        if (version > state.getVersion()) {
+            state = new AccountState(balance, version);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * Account whose balance is held as {@code long} minor units at a fixed scale instead of a
+ * {@link BigDecimal}, so transfers between two such accounts do no decimal arithmetic. The balance
+ * is only converted back to a {@link BigDecimal} when it is read through {@link #getBalance()}.
+ *
+ * <p>Units and version are published together as one immutable {@link Units} value, so reads see
+ * a committed pair without locking, as in {@link DecimalAccountRuntime}; no {@link AccountState}
+ * is kept besides them.
+ */
+public class FixedPointAccountRuntime extends AccountRuntime {
+
+    @JsonIgnore
+    @Getter
+    private final int scale;
+
+    private volatile Units units;
+
+    public FixedPointAccountRuntime(String accountId,
+                                    BigDecimal balance,
+                                    boolean fairLock,
+                                    int scale) {
+        super(accountId, fairLock);
+        this.scale = scale;
+        this.units = new Units(FixedPointBalance.toUnits(balance, scale), 0L);
+    }
+
+    @JsonIgnore
+    public long getBalanceUnits() {
+        return units.balance;
+    }
+
+    @Override
+    public AccountState getState() {
+        Units current = units;
+        return new AccountState(FixedPointBalance.toBigDecimal(current.balance, scale), current.version);
+    }
+
+    @Override
+    public long getVersion() {
+        return units.version;
+    }
+
+    @Override
+    public BigDecimal getBalance() {
+        return FixedPointBalance.toBigDecimal(units.balance, scale);
+    }
+
+    @Override
+    public void setBalance(BigDecimal balance) {
+        units = new Units(FixedPointBalance.toUnits(balance, scale), units.version + 1);
+    }
+
+    @Override
+    public boolean withdraw(BigDecimal amount) {
+        long amountUnits = FixedPointBalance.toUnits(amount, scale);
+        Units current = units;
+        if (current.balance < amountUnits) {
+            return false;
+        }
+        units = new Units(current.balance - amountUnits, current.version + 1);
+        return true;
+    }
+
+    @Override
+    public void deposit(BigDecimal amount) {
+        Units current = units;
+        units = new Units(addUnits(current.balance, FixedPointBalance.toUnits(amount, scale)), current.version + 1);
+    }
+
+    @Override
+    public void restore(BigDecimal balance, long version) {
+        if (version > units.version) {
+            units = new Units(FixedPointBalance.toUnits(balance, scale), version);
+        }
+    }
+
+    @Override
+    public boolean transferTo(AccountRuntime toAccount, BigDecimal amount) {
+        // a transfer to the same account has to credit the debited balance, not the one read before
+        if (!(toAccount instanceof FixedPointAccountRuntime) || toAccount == this) {
+            return super.transferTo(toAccount, amount);
+        }
+
+        FixedPointAccountRuntime fixedPointToAccount = (FixedPointAccountRuntime) toAccount;
+        long amountUnits = FixedPointBalance.toUnits(amount, scale);
+        Units from = units;
+        if (from.balance < amountUnits) {
+            return false;
+        }
+
+        Units to = fixedPointToAccount.units;
+        long credited = fixedPointToAccount.addUnits(to.balance, amountUnits);
+        units = new Units(from.balance - amountUnits, from.version + 1);
+        fixedPointToAccount.units = new Units(credited, to.version + 1);
+        return true;
+    }
+
+    private long addUnits(long balance, long amountUnits) {
+        try {
+            return Math.addExact(balance, amountUnits);
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Balance of account id " + getAccountId() + " would overflow");
+        }
+    }
+
+    private static final class Units {
+
+        private final long balance;
+
+        private final long version;
+
+        private Units(long balance, long version) {
+            this.balance = balance;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+
+/**
+ * Conversions between {@link BigDecimal} amounts and {@code long} minor units at a fixed scale,
+ * e.g. 12.34 at scale 2 is 1234 units.
+ */
+public final class FixedPointBalance {
+
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L
+    };
+
+    private FixedPointBalance() {
+    }
+
+    public static long toUnits(BigDecimal amount, int scale) {
+        try {
+            if (amount.scale() == 0 && scale < POWERS_OF_TEN.length) {
+                return Math.multiplyExact(amount.longValueExact(), POWERS_OF_TEN[scale]);
+            }
+            return amount.setScale(scale).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(
+                "Amount " + amount.toPlainString() + " cannot be represented with " + scale + " decimal places");
+        }
+    }
+
+    public static BigDecimal toBigDecimal(long units, int scale) {
+        return BigDecimal.valueOf(units, scale);
+    }
+}
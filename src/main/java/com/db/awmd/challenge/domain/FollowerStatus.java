@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+/**
+ * A follower connected to the primary, with the journal position it last confirmed.
+ */
+@Data
+public class FollowerStatus {
+
+    private final String address;
+
+    private final long acknowledgedPosition;
+
+    private final long lagBytes;
+
+    public FollowerStatus(String address, long acknowledgedPosition, long lagBytes) {
+        this.address = address;
+        this.acknowledgedPosition = acknowledgedPosition;
+        this.lagBytes = lagBytes;
+    }
+}
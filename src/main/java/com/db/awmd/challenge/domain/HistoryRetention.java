@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Number of transactions kept in an account's history.
+ */
+@Data
+public class HistoryRetention {
+
+    @NotNull(message = "Retention cannot be null")
+    @Min(value = 0, message = "Retention cannot be negative")
+    private final Integer retention;
+
+    @JsonCreator
+    public HistoryRetention(@JsonProperty("retention") Integer retention) {
+        this.retention = retention;
+    }
+}
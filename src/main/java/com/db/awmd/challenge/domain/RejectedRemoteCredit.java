@@ -0,0 +1,24 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+@Data
+public class RejectedRemoteCredit {
+
+    private final long sequence;
+
+    private final TransferStatus status;
+
+    private final String message;
+
+    @JsonCreator
+    public RejectedRemoteCredit(@JsonProperty("sequence") long sequence,
+                                @JsonProperty("status") TransferStatus status,
+                                @JsonProperty("message") String message) {
+        this.sequence = sequence;
+        this.status = status;
+        this.message = message;
+    }
+}
@@ -0,0 +1,38 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import javax.validation.constraints.NotNull;
+import java.math.BigDecimal;
+
+/**
+ * The credit half of a transfer whose source account lives on another node. The sequence number
+ * orders the credits one node sends to another.
+ */
+@Data
+public class RemoteCredit {
+
+    private final long sequence;
+
+    @NotNull
+    private final String fromAccountId;
+
+    @NotNull
+    private final String toAccountId;
+
+    @NotNull
+    private final BigDecimal amount;
+
+    @JsonCreator
+    public RemoteCredit(@JsonProperty("sequence") long sequence,
+                        @JsonProperty("fromAccountId") String fromAccountId,
+                        @JsonProperty("toAccountId") String toAccountId,
+                        @JsonProperty("amount") BigDecimal amount) {
+        this.sequence = sequence;
+        this.fromAccountId = fromAccountId;
+        this.toAccountId = toAccountId;
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,34 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * Credits sent by one node to another, in sequence order. The incarnation changes whenever the
+ * sending node starts without its previous state, which restarts its sequence numbers.
+ */
+@Data
+public class RemoteCreditBatch {
+
+    private final int sourceNode;
+
+    private final long incarnation;
+
+    @NotNull
+    @Valid
+    private final List<RemoteCredit> credits;
+
+    @JsonCreator
+    public RemoteCreditBatch(@JsonProperty("sourceNode") int sourceNode,
+                             @JsonProperty("incarnation") long incarnation,
+                             @JsonProperty("credits") List<RemoteCredit> credits) {
+        this.sourceNode = sourceNode;
+        this.incarnation = incarnation;
+        this.credits = credits;
+    }
+}
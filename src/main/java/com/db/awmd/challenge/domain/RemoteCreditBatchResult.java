@@ -0,0 +1,26 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Every credit up to {@code appliedThrough} has been processed: applied, or listed in
+ * {@code rejected} and to be refunded by the sender.
+ */
+@Data
+public class RemoteCreditBatchResult {
+
+    private final long appliedThrough;
+
+    private final List<RejectedRemoteCredit> rejected;
+
+    @JsonCreator
+    public RemoteCreditBatchResult(@JsonProperty("appliedThrough") long appliedThrough,
+                                   @JsonProperty("rejected") List<RejectedRemoteCredit> rejected) {
+        this.appliedThrough = appliedThrough;
+        this.rejected = rejected;
+    }
+}
@@ -0,0 +1,41 @@
+package com.db.awmd.challenge.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * This instance's part in journal replication. A primary reports its durable journal position
+ * and its followers; a follower reports how far it has applied the primary's journal and how far
+ * it is behind, in bytes and in milliseconds since it was last caught up.
+ */
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReplicationStatus {
+
+    private final String role;
+
+    private final long position;
+
+    private final Long primaryPosition;
+
+    private final Boolean connected;
+
+    private final Long lagBytes;
+
+    private final Long lagMillis;
+
+    private final List<FollowerStatus> followers;
+
+    public ReplicationStatus(String role, long position, Long primaryPosition, Boolean connected,
+                             Long lagBytes, Long lagMillis, List<FollowerStatus> followers) {
+        this.role = role;
+        this.position = position;
+        this.primaryPosition = primaryPosition;
+        this.connected = connected;
+        this.lagBytes = lagBytes;
+        this.lagMillis = lagMillis;
+        this.followers = followers;
+    }
+}
@@ -0,0 +1,28 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * One side of a transfer as seen from an account: negative amounts were debited, positive ones
+ * credited. Both sides of a transfer carry the same transaction id.
+ */
+@Data
+public class TransactionEntry {
+
+    private final long transactionId;
+
+    private final long timestamp;
+
+    private final String counterpartyAccountId;
+
+    private final BigDecimal amount;
+
+    public TransactionEntry(long transactionId, long timestamp, String counterpartyAccountId, BigDecimal amount) {
+        this.transactionId = transactionId;
+        this.timestamp = timestamp;
+        this.counterpartyAccountId = counterpartyAccountId;
+        this.amount = amount;
+    }
+}
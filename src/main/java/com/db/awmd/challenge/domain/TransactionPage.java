@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Transactions of an account, newest first. {@code nextCursor} fetches the older ones and is null
+ * on the last page.
+ */
+@Data
+public class TransactionPage {
+
+    private final List<TransactionEntry> transactions;
+
+    private final String nextCursor;
+
+    public TransactionPage(List<TransactionEntry> transactions, String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,18 @@
+package com.db.awmd.challenge.domain;
+
+public enum TransferStatus {
+
+    ACCEPTED,
+
+    ACCOUNT_NOT_FOUND,
+
+    INSUFFICIENT_BALANCE,
+
+    LOCK_TIMEOUT,
+
+    INVALID_REQUEST,
+
+    OVERLOADED,
+
+    FAILED
+}
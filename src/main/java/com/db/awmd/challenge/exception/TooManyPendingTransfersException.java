@@ -0,0 +1,8 @@
+package com.db.awmd.challenge.exception;
+
+public class TooManyPendingTransfersException extends RuntimeException {
+
+    public TooManyPendingTransfersException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,231 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Binary snapshot files of the account store.
+ *
+ * <p>A snapshot is a directory {@code snapshot-<journal position>} holding one file per
+ * partition plus a {@code COMPLETE} marker written last. Each partition file is a sequence of
+ * {@code (id, balance, version)} entries; accounts are assigned to partitions by id hash so that
+ * partitions can be loaded in parallel. Recovery loads the newest complete snapshot and then
+ * replays the journal from the position in its name.
+ */
+final class AccountSnapshots {
+
+  static final String SNAPSHOTS_DIRECTORY = "snapshots";
+
+  private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+  private static final String COMPLETE_MARKER = "COMPLETE";
+
+  private static final int MAGIC = 0x41534e50;
+
+  private AccountSnapshots() {
+  }
+
+  /**
+   * Open partition writers for a new snapshot. Entries are written to a temporary directory
+   * which {@link Writer#commit()} moves into place.
+   */
+  static Writer writer(Path journalDirectory, long journalPosition, int partitions) throws IOException {
+    return new Writer(journalDirectory.resolve(SNAPSHOTS_DIRECTORY), journalPosition, partitions);
+  }
+
+  /**
+   * Loads the newest complete snapshot into the repository, one thread per partition.
+   *
+   * @return the journal position to replay from, 0 if there is no snapshot
+   */
+  static long loadLatest(Path journalDirectory, AccountsRepository accountsRepository) throws IOException {
+    Path latest = latestComplete(journalDirectory.resolve(SNAPSHOTS_DIRECTORY));
+    if (latest == null) {
+      return 0L;
+    }
+
+    List<Path> partitions;
+    try (Stream<Path> files = Files.list(latest)) {
+      partitions = files.filter(file -> !file.getFileName().toString().equals(COMPLETE_MARKER))
+                        .collect(Collectors.toList());
+    }
+
+    ExecutorService loaders = Executors.newFixedThreadPool(
+      Math.max(1, Math.min(partitions.size(), Runtime.getRuntime().availableProcessors())));
+    try {
+      List<Future<?>> loads = new ArrayList<>();
+      for (Path partition : partitions) {
+        loads.add(loaders.submit(() -> {
+          load(partition, accountsRepository);
+          return null;
+        }));
+      }
+      for (Future<?> load : loads) {
+        load.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while loading snapshot " + latest, e);
+    } catch (Exception e) {
+      throw new IOException("Could not load snapshot " + latest, e);
+    } finally {
+      loaders.shutdownNow();
+    }
+
+    return positionOf(latest);
+  }
+
+  private static void load(Path partition, AccountsRepository accountsRepository) throws IOException {
+    try (InputStream file = Files.newInputStream(partition);
+         DataInputStream in = new DataInputStream(new BufferedInputStream(file, 256 * 1024))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a snapshot partition: " + partition);
+      }
+      while (true) {
+        String accountId;
+        try {
+          accountId = in.readUTF();
+        } catch (EOFException e) {
+          return;
+        }
+        BigDecimal balance = JournalRecord.readDecimal(in);
+        accountsRepository.restoreAccount(accountId, balance, in.readLong());
+      }
+    }
+  }
+
+  private static Path latestComplete(Path snapshotsDirectory) throws IOException {
+    Path latest = null;
+    for (Path snapshot : snapshots(snapshotsDirectory)) {
+      if (Files.exists(snapshot.resolve(COMPLETE_MARKER))
+          && (latest == null || positionOf(snapshot) > positionOf(latest))) {
+        latest = snapshot;
+      }
+    }
+    return latest;
+  }
+
+  private static List<Path> snapshots(Path snapshotsDirectory) throws IOException {
+    List<Path> snapshots = new ArrayList<>();
+    if (Files.isDirectory(snapshotsDirectory)) {
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(snapshotsDirectory, SNAPSHOT_PREFIX + "*")) {
+        for (Path entry : entries) {
+          snapshots.add(entry);
+        }
+      }
+    }
+    return snapshots;
+  }
+
+  private static long positionOf(Path snapshot) {
+    return Long.parseLong(snapshot.getFileName().toString().substring(SNAPSHOT_PREFIX.length()));
+  }
+
+  private static void deleteRecursively(Path path) throws IOException {
+    if (Files.isDirectory(path)) {
+      try (Stream<Path> children = Files.list(path)) {
+        for (Path child : children.collect(Collectors.toList())) {
+          deleteRecursively(child);
+        }
+      }
+    }
+    Files.deleteIfExists(path);
+  }
+
+  static final class Writer {
+
+    private final Path snapshotsDirectory;
+
+    private final Path temporaryDirectory;
+
+    private final long journalPosition;
+
+    private final FileOutputStream[] files;
+
+    private final DataOutputStream[] outputs;
+
+    private long accounts;
+
+    private Writer(Path snapshotsDirectory, long journalPosition, int partitions) throws IOException {
+      this.snapshotsDirectory = snapshotsDirectory;
+      this.journalPosition = journalPosition;
+      this.temporaryDirectory = snapshotsDirectory.resolve("tmp-" + SNAPSHOT_PREFIX + journalPosition);
+
+      deleteRecursively(temporaryDirectory);
+      Files.createDirectories(temporaryDirectory);
+
+      this.files = new FileOutputStream[partitions];
+      this.outputs = new DataOutputStream[partitions];
+      for (int i = 0; i < partitions; i++) {
+        files[i] = new FileOutputStream(temporaryDirectory.resolve("part-" + i).toFile());
+        outputs[i] = new DataOutputStream(new BufferedOutputStream(files[i], 256 * 1024));
+        outputs[i].writeInt(MAGIC);
+      }
+    }
+
+    void write(String accountId, BigDecimal balance, long version) throws IOException {
+      int hash = accountId.hashCode();
+      hash ^= (hash >>> 16);
+      DataOutputStream out = outputs[(hash & Integer.MAX_VALUE) % outputs.length];
+
+      out.writeUTF(accountId);
+      JournalRecord.writeDecimal(out, balance);
+      out.writeLong(version);
+      accounts++;
+    }
+
+    long getAccounts() {
+      return accounts;
+    }
+
+    /**
+     * Forces the partitions to disk, publishes the snapshot and removes older snapshots.
+     */
+    void commit() throws IOException {
+      for (int i = 0; i < outputs.length; i++) {
+        outputs[i].flush();
+        files[i].getFD().sync();
+        outputs[i].close();
+      }
+      Files.write(temporaryDirectory.resolve(COMPLETE_MARKER), Long.toString(accounts).getBytes("UTF-8"));
+
+      Path snapshot = snapshotsDirectory.resolve(SNAPSHOT_PREFIX + journalPosition);
+      deleteRecursively(snapshot);
+      Files.move(temporaryDirectory, snapshot, StandardCopyOption.ATOMIC_MOVE);
+
+      for (Path older : snapshots(snapshotsDirectory)) {
+        if (positionOf(older) < journalPosition) {
+          deleteRecursively(older);
+        }
+      }
+    }
+
+    void abort() throws IOException {
+      for (DataOutputStream output : outputs) {
+        if (output != null) {
+          output.close();
+        }
+      }
+      deleteRecursively(temporaryDirectory);
+    }
+  }
+}
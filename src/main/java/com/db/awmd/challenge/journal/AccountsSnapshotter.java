@@ -0,0 +1,128 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.TransferGate;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically writes a snapshot of the account store next to the transfer journal so recovery
+ * only has to replay the journal written after it.
+ *
+ * <p>Accounts are read while transfers keep running, so the snapshot is fuzzy: it records the
+ * journal position from before the scan, and replaying from there brings every account up to
+ * date because journal records only ever move an account to a newer version. Before the snapshot
+ * is published, the snapshotter waits for transfers that were in progress during the scan and
+ * forces the journal, so every change captured in the snapshot is also durable in the journal.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.journal.enabled", havingValue = "true")
+@Slf4j
+public class AccountsSnapshotter {
+
+  private final AccountsRepository accountsRepository;
+
+  private final TransferJournal transferJournal;
+
+  private final TransferGate transferGate;
+
+  private final long intervalSeconds;
+
+  private final int partitions;
+
+  private ScheduledExecutorService scheduler;
+
+  @Autowired(required = false)
+  private List<JournalParticipant> participants = Collections.emptyList();
+
+  @Autowired
+  public AccountsSnapshotter(AccountsRepository accountsRepository,
+                             TransferJournal transferJournal,
+                             TransferGate transferGate,
+                             @Value("${accounts.snapshot.interval:300}") long intervalSeconds,
+                             @Value("${accounts.snapshot.partitions:0}") int partitions) {
+    this.accountsRepository = accountsRepository;
+    this.transferJournal = transferJournal;
+    this.transferGate = transferGate;
+    this.intervalSeconds = intervalSeconds;
+    this.partitions = partitions > 0 ? partitions : Runtime.getRuntime().availableProcessors();
+  }
+
+  @PostConstruct
+  public void start() {
+    if (intervalSeconds > 0) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "accounts-snapshotter");
+        thread.setDaemon(true);
+        return thread;
+      });
+      scheduler.scheduleWithFixedDelay(this::takeSnapshotQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Writes a snapshot and returns the journal position recovery will replay from.
+   */
+  public synchronized long takeSnapshot() throws IOException {
+    long startNanos = System.nanoTime();
+    long journalPosition = transferJournal.getAppendedPosition();
+    // replay starts at the position above, so participants restate themselves after it
+    for (JournalParticipant participant : participants) {
+      participant.checkpoint();
+    }
+
+    AccountSnapshots.Writer writer = AccountSnapshots.writer(transferJournal.getDirectory(), journalPosition, partitions);
+    try {
+      accountsRepository.forEachAccount((accountId, balance, version) -> {
+        try {
+          writer.write(accountId, balance, version);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+
+      transferGate.advance();
+      transferJournal.flush();
+      transferJournal.awaitDurable(transferJournal.getAppendedPosition());
+
+      writer.commit();
+    } catch (UncheckedIOException e) {
+      writer.abort();
+      throw e.getCause();
+    } catch (IOException | RuntimeException e) {
+      writer.abort();
+      throw e;
+    }
+
+    log.info("Wrote snapshot of {} accounts at journal position {} in {} ms",
+      writer.getAccounts(), journalPosition, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    return journalPosition;
+  }
+
+  private void takeSnapshotQuietly() {
+    try {
+      takeSnapshot();
+    } catch (IOException | RuntimeException e) {
+      log.error("Failed to write account snapshot", e);
+    }
+  }
+}
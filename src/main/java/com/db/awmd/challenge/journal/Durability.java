@@ -0,0 +1,13 @@
+package com.db.awmd.challenge.journal;
+
+public enum Durability {
+
+  /** Every caller waits until its record has been forced to disk. */
+  SYNC,
+
+  /** Callers wait for the next periodic force, which covers every record appended before it. */
+  GROUP,
+
+  /** Callers do not wait; records are forced periodically in the background. */
+  ASYNC
+}
@@ -0,0 +1,20 @@
+package com.db.awmd.challenge.journal;
+
+/**
+ * State that is kept durable in {@link JournalRecord.Type#LEDGER ledger records} of the transfer
+ * journal, next to the accounts.
+ */
+public interface JournalParticipant {
+
+  /**
+   * Applies a ledger record read back on startup. Records arrive in journal order, after the
+   * account state they carry has been restored.
+   */
+  void replay(JournalRecord record);
+
+  /**
+   * Appends ledger records from which {@link #replay} rebuilds the whole state. Called when a
+   * snapshot is taken, because the journal written before a snapshot is not replayed.
+   */
+  void checkpoint();
+}
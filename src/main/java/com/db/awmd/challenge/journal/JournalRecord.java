@@ -0,0 +1,161 @@
+package com.db.awmd.challenge.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * One entry of the transfer journal. Records carry the state of every account they touch after
+ * the change (balance and version), so replaying them is idempotent: an account only takes a
+ * record's state if the record's version is newer than the one it already has.
+ *
+ * <p>{@link Type#LEDGER} records carry an opaque payload for a {@link JournalParticipant}, and
+ * optionally the state of the one account the change touched.
+ */
+@Getter
+@ToString
+public final class JournalRecord {
+
+  public enum Type {
+    CREATED,
+    TRANSFERRED,
+    LEDGER
+  }
+
+  private final Type type;
+
+  private final String accountId;
+
+  private final BigDecimal balance;
+
+  private final long version;
+
+  private final BigDecimal amount;
+
+  private final String toAccountId;
+
+  private final BigDecimal toBalance;
+
+  private final long toVersion;
+
+  private final byte[] payload;
+
+  private JournalRecord(Type type, String accountId, BigDecimal balance, long version,
+                        BigDecimal amount, String toAccountId, BigDecimal toBalance, long toVersion) {
+    this(type, accountId, balance, version, amount, toAccountId, toBalance, toVersion, null);
+  }
+
+  private JournalRecord(Type type, String accountId, BigDecimal balance, long version,
+                        BigDecimal amount, String toAccountId, BigDecimal toBalance, long toVersion,
+                        byte[] payload) {
+    this.type = type;
+    this.accountId = accountId;
+    this.balance = balance;
+    this.version = version;
+    this.amount = amount;
+    this.toAccountId = toAccountId;
+    this.toBalance = toBalance;
+    this.toVersion = toVersion;
+    this.payload = payload;
+  }
+
+  public static JournalRecord created(String accountId, BigDecimal balance, long version) {
+    return new JournalRecord(Type.CREATED, accountId, balance, version, null, null, null, 0L);
+  }
+
+  public static JournalRecord transferred(BigDecimal amount,
+                                          String fromAccountId, BigDecimal fromBalance, long fromVersion,
+                                          String toAccountId, BigDecimal toBalance, long toVersion) {
+    return new JournalRecord(Type.TRANSFERRED, fromAccountId, fromBalance, fromVersion,
+                             amount, toAccountId, toBalance, toVersion);
+  }
+
+  /**
+   * A participant's record, with the account state it changed if any.
+   */
+  public static JournalRecord ledger(String accountId, BigDecimal balance, long version, byte[] payload) {
+    return new JournalRecord(Type.LEDGER, accountId, balance, version, null, null, null, 0L, payload);
+  }
+
+  public static JournalRecord ledger(byte[] payload) {
+    return ledger(null, null, 0L, payload);
+  }
+
+  public byte[] encode() {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(type.ordinal());
+      if (type == Type.LEDGER) {
+        out.writeBoolean(accountId != null);
+      }
+      if (accountId != null) {
+        out.writeUTF(accountId);
+        writeDecimal(out, balance);
+        out.writeLong(version);
+      }
+      if (type == Type.TRANSFERRED) {
+        writeDecimal(out, amount);
+        out.writeUTF(toAccountId);
+        writeDecimal(out, toBalance);
+        out.writeLong(toVersion);
+      } else if (type == Type.LEDGER) {
+        writePayload(out);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not encode journal record", e);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static JournalRecord decode(byte[] payload) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+    Type type = Type.values()[in.readUnsignedByte()];
+    if (type == Type.LEDGER && !in.readBoolean()) {
+      return ledger(readPayload(in));
+    }
+    String accountId = in.readUTF();
+    BigDecimal balance = readDecimal(in);
+    long version = in.readLong();
+
+    if (type == Type.CREATED) {
+      return created(accountId, balance, version);
+    }
+    if (type == Type.LEDGER) {
+      return ledger(accountId, balance, version, readPayload(in));
+    }
+    return transferred(readDecimal(in), accountId, balance, version, in.readUTF(), readDecimal(in), in.readLong());
+  }
+
+  private void writePayload(DataOutput out) throws IOException {
+    out.writeInt(payload.length);
+    out.write(payload);
+  }
+
+  private static byte[] readPayload(DataInput in) throws IOException {
+    byte[] payload = new byte[in.readInt()];
+    in.readFully(payload);
+    return payload;
+  }
+
+  static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+    byte[] unscaled = value.unscaledValue().toByteArray();
+    out.writeInt(value.scale());
+    out.writeShort(unscaled.length);
+    out.write(unscaled);
+  }
+
+  static BigDecimal readDecimal(DataInput in) throws IOException {
+    int scale = in.readInt();
+    byte[] unscaled = new byte[in.readUnsignedShort()];
+    in.readFully(unscaled);
+    return new BigDecimal(new BigInteger(unscaled), scale);
+  }
+}
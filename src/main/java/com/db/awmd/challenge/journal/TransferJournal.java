@@ -0,0 +1,348 @@
+package com.db.awmd.challenge.journal;
+
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Append-only journal of account creations and transfers, enabled with
+ * {@code accounts.journal.enabled=true}.
+ *
+ * <p>Records are appended to an in-memory buffer and written to the journal file by whoever
+ * flushes next, so a single {@link FileChannel#force(boolean)} covers every record appended
+ * since the previous one (group commit). {@link #append(JournalRecord)} returns the journal
+ * position just past the record; {@link #awaitDurable(long)} waits until that position is on
+ * disk as far as the configured {@link Durability} requires.
+ *
+ * <p>Records must be appended while the accounts they describe are still locked, so the journal
+ * order of records touching the same account matches the order they were applied in. A crash
+ * then only ever loses a suffix of the journal. On startup the newest snapshot written by
+ * {@link AccountsSnapshotter} is loaded and only the journal after it is replayed; a torn record
+ * at the end is discarded.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.journal.enabled", havingValue = "true")
+@Slf4j
+public class TransferJournal {
+
+  static final String JOURNAL_FILE = "transfers.journal";
+
+  private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+  private final AccountsRepository accountsRepository;
+
+  private final Path directory;
+
+  private final Durability durability;
+
+  private final long flushIntervalNanos;
+
+  private final Object appendLock = new Object();
+
+  private final Object flushLock = new Object();
+
+  private final Object durableSignal = new Object();
+
+  private FileChannel channel;
+
+  private ByteBuffer activeBuffer = ByteBuffer.allocate(64 * 1024);
+
+  private ByteBuffer standbyBuffer = ByteBuffer.allocate(64 * 1024);
+
+  private long appendedPosition;
+
+  private volatile long durablePosition;
+
+  private volatile IOException failure;
+
+  private volatile boolean running = true;
+
+  private Thread flusher;
+
+  @Autowired(required = false)
+  private List<JournalParticipant> participants = Collections.emptyList();
+
+  @Autowired
+  public TransferJournal(AccountsRepository accountsRepository,
+                         @Value("${accounts.journal.directory:journal}") String directory,
+                         @Value("${accounts.journal.durability:GROUP}") Durability durability,
+                         @Value("${accounts.journal.flush-interval:2}") long flushIntervalMillis) {
+    this.accountsRepository = accountsRepository;
+    this.directory = Paths.get(directory);
+    this.durability = durability;
+    this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+  }
+
+  @PostConstruct
+  public void open() throws IOException {
+    Files.createDirectories(directory);
+    Path file = directory.resolve(JOURNAL_FILE);
+
+    long snapshotPosition = AccountSnapshots.loadLatest(directory, accountsRepository);
+    long validLength = replay(file, snapshotPosition);
+
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    channel.truncate(validLength);
+    channel.position(validLength);
+    appendedPosition = validLength;
+    durablePosition = validLength;
+
+    if (durability != Durability.SYNC) {
+      flusher = new Thread(this::flushPeriodically, "transfer-journal-flusher");
+      flusher.setDaemon(true);
+      flusher.start();
+    }
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * The journal file. Only its durable prefix is stable; the rest may still be rewritten.
+   */
+  public Path getFile() {
+    return directory.resolve(JOURNAL_FILE);
+  }
+
+  /**
+   * Journal position up to which records are known to be on disk.
+   */
+  public long getDurablePosition() {
+    return durablePosition;
+  }
+
+  /**
+   * Waits up to {@code timeoutMillis} for the durable position to move past {@code position} and
+   * returns the durable position.
+   */
+  public long awaitDurableBeyond(long position, long timeoutMillis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    synchronized (durableSignal) {
+      long remaining = timeoutMillis;
+      while (durablePosition <= position && failure == null && remaining > 0L) {
+        durableSignal.wait(remaining);
+        remaining = deadline - System.currentTimeMillis();
+      }
+    }
+    return durablePosition;
+  }
+
+  /**
+   * Journal position just past the last appended record, durable or not.
+   */
+  public long getAppendedPosition() {
+    synchronized (appendLock) {
+      return appendedPosition;
+    }
+  }
+
+  /**
+   * Adds the record to the journal buffer and returns the position just past it.
+   */
+  public long append(JournalRecord record) {
+    byte[] payload = record.encode();
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    int frameLength = Integer.BYTES + payload.length + Integer.BYTES;
+
+    synchronized (appendLock) {
+      if (activeBuffer.remaining() < frameLength) {
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(activeBuffer.capacity() * 2, activeBuffer.position() + frameLength));
+        activeBuffer.flip();
+        grown.put(activeBuffer);
+        activeBuffer = grown;
+      }
+      activeBuffer.putInt(payload.length);
+      activeBuffer.put(payload);
+      activeBuffer.putInt((int) crc.getValue());
+      appendedPosition += frameLength;
+      return appendedPosition;
+    }
+  }
+
+  /**
+   * Writes must call this before changing anything they will journal. Once a write to the file
+   * has failed, records appended since the last durable position are lost, so the in-memory
+   * balances no longer match what a restart recovers and no further change is accepted.
+   *
+   * @throws IllegalStateException if writing the journal has failed
+   */
+  public void checkWritable() {
+    if (failure != null) {
+      throw new IllegalStateException("Transfer journal is not writable", failure);
+    }
+  }
+
+  /**
+   * Waits until the journal up to {@code position} is durable according to the configured level.
+   */
+  public void awaitDurable(long position) {
+    switch (durability) {
+      case SYNC:
+        if (durablePosition < position) {
+          flush();
+        }
+        break;
+      case GROUP:
+        synchronized (durableSignal) {
+          while (durablePosition < position && failure == null) {
+            try {
+              durableSignal.wait();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new RuntimeException("Something went wrong. Server not able to process the request");
+            }
+          }
+        }
+        break;
+      case ASYNC:
+        break;
+    }
+
+    checkWritable();
+  }
+
+  /**
+   * Writes and forces everything appended so far.
+   */
+  public void flush() {
+    synchronized (flushLock) {
+      ByteBuffer pending;
+      long target;
+      synchronized (appendLock) {
+        if (appendedPosition == durablePosition) {
+          return;
+        }
+        pending = activeBuffer;
+        activeBuffer = standbyBuffer;
+        standbyBuffer = null;
+        target = appendedPosition;
+      }
+
+      try {
+        pending.flip();
+        while (pending.hasRemaining()) {
+          channel.write(pending);
+        }
+        channel.force(false);
+      } catch (IOException e) {
+        log.error("Failed to write transfer journal", e);
+        failure = e;
+      } finally {
+        pending.clear();
+        synchronized (appendLock) {
+          standbyBuffer = pending;
+        }
+      }
+
+      if (failure == null) {
+        durablePosition = target;
+      }
+      synchronized (durableSignal) {
+        durableSignal.notifyAll();
+      }
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException, InterruptedException {
+    running = false;
+    if (flusher != null) {
+      LockSupport.unpark(flusher);
+      flusher.join(TimeUnit.SECONDS.toMillis(5));
+    }
+    flush();
+    channel.close();
+  }
+
+  /**
+   * Replays the journal file from {@code fromPosition} into the repository and returns the
+   * length of its valid prefix.
+   */
+  long replay(Path file, long fromPosition) throws IOException {
+    if (!Files.exists(file)) {
+      return fromPosition;
+    }
+
+    long position = fromPosition;
+    int replayed = 0;
+    try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+      in.position(fromPosition);
+      DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(in), 64 * 1024));
+
+      while (true) {
+        JournalRecord record;
+        int payloadLength;
+        try {
+          payloadLength = input.readInt();
+          if (payloadLength < 0 || payloadLength > MAX_RECORD_SIZE) {
+            log.warn("Discarding corrupt transfer journal tail at position {}", position);
+            break;
+          }
+          byte[] payload = new byte[payloadLength];
+          input.readFully(payload);
+          int checksum = input.readInt();
+
+          CRC32 crc = new CRC32();
+          crc.update(payload, 0, payloadLength);
+          if ((int) crc.getValue() != checksum) {
+            log.warn("Discarding corrupt transfer journal tail at position {}", position);
+            break;
+          }
+          record = JournalRecord.decode(payload);
+        } catch (EOFException e) {
+          break;
+        }
+
+        apply(record);
+        position += Integer.BYTES + payloadLength + Integer.BYTES;
+        replayed++;
+      }
+    }
+
+    log.info("Replayed {} transfer journal records", replayed);
+    return position;
+  }
+
+  private void apply(JournalRecord record) {
+    if (record.getAccountId() != null) {
+      accountsRepository.restoreAccount(record.getAccountId(), record.getBalance(), record.getVersion());
+    }
+    if (record.getType() == JournalRecord.Type.TRANSFERRED) {
+      accountsRepository.restoreAccount(record.getToAccountId(), record.getToBalance(), record.getToVersion());
+    } else if (record.getType() == JournalRecord.Type.LEDGER) {
+      for (JournalParticipant participant : participants) {
+        participant.replay(record);
+      }
+    }
+  }
+
+  private void flushPeriodically() {
+    while (running) {
+      LockSupport.parkNanos(flushIntervalNanos);
+      flush();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package com.db.awmd.challenge.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latency histograms and counters of the transfer hot path, published on the actuator
+ * {@code /metrics} endpoint.
+ *
+ * <p>Latencies are recorded into HdrHistogram {@link Recorder}s, which writers update without
+ * locks or allocation. Each read of the metrics moves the values recorded since the previous
+ * read into a cumulative histogram, so percentiles cover the whole lifetime of the application.
+ * Recording can be switched off with {@code accounts.metrics.enabled=false} to measure its cost.
+ */
+@Component
+public class TransferMetrics implements PublicMetrics {
+
+  private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private final boolean enabled;
+
+  private final Latency transferLatency = new Latency("accounts.transfer.latency");
+
+  private final Latency lockWait = new Latency("accounts.lock.wait");
+
+  private final Latency notificationLatency = new Latency("accounts.notification.latency");
+
+  private final LongAdder lockTimeouts = new LongAdder();
+
+  @Autowired
+  public TransferMetrics(@Value("${accounts.metrics.enabled:true}") boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * End-to-end time of one transfer request, whatever its outcome.
+   */
+  public void recordTransfer(long nanos) {
+    if (enabled) {
+      transferLatency.record(nanos);
+    }
+  }
+
+  /**
+   * Time spent acquiring the locks of a transfer, including acquisitions that timed out.
+   */
+  public void recordLockWait(long nanos) {
+    if (enabled) {
+      lockWait.record(nanos);
+    }
+  }
+
+  /**
+   * Time the transfer thread spent handing notifications to the dispatcher.
+   */
+  public void recordNotification(long nanos) {
+    if (enabled) {
+      notificationLatency.record(nanos);
+    }
+  }
+
+  public void lockTimedOut() {
+    lockTimeouts.increment();
+  }
+
+  public long getLockTimeouts() {
+    return lockTimeouts.sum();
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    transferLatency.addTo(metrics);
+    lockWait.addTo(metrics);
+    notificationLatency.addTo(metrics);
+    metrics.add(new Metric<>("accounts.lock.timeouts", getLockTimeouts()));
+    return metrics;
+  }
+
+  private static final class Latency {
+
+    private final String name;
+
+    private final Recorder recorder = new Recorder(HIGHEST_TRACKABLE_NANOS, 2);
+
+    private final Histogram total = new Histogram(HIGHEST_TRACKABLE_NANOS, 2);
+
+    private Histogram interval;
+
+    private Latency(String name) {
+      this.name = name;
+    }
+
+    private void record(long nanos) {
+      recorder.recordValue(Math.min(Math.max(nanos, 0L), HIGHEST_TRACKABLE_NANOS));
+    }
+
+    private synchronized void addTo(List<Metric<?>> metrics) {
+      interval = recorder.getIntervalHistogram(interval);
+      total.add(interval);
+
+      metrics.add(new Metric<>(name + ".count", total.getTotalCount()));
+      metrics.add(new Metric<>(name + ".mean.micros", total.getMean() / 1000.0));
+      metrics.add(new Metric<>(name + ".p50.micros", micros(total.getValueAtPercentile(50))));
+      metrics.add(new Metric<>(name + ".p99.micros", micros(total.getValueAtPercentile(99))));
+      metrics.add(new Metric<>(name + ".p999.micros", micros(total.getValueAtPercentile(99.9))));
+      metrics.add(new Metric<>(name + ".max.micros", micros(total.getMaxValue())));
+    }
+
+    private static long micros(long nanos) {
+      return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+  }
+}
@@ -0,0 +1,267 @@
+package com.db.awmd.challenge.replication;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.journal.JournalRecord;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.AccountAggregates;
+import com.db.awmd.challenge.service.TransactionHistory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps a read-only copy of the primary's accounts by applying its transfer journal, enabled with
+ * {@code accounts.replication.role=FOLLOWER}. See {@link ReplicationPrimary} for the protocol.
+ *
+ * <p>A single thread applies the journal records in order, restoring each account to the state
+ * the record carries, and keeps the aggregates and transaction history up to date as the primary
+ * would. Reads are served from the store meanwhile, as on the primary. After a lost connection the
+ * follower reconnects and continues from the last record it applied; after a restart it starts
+ * over from the beginning of the journal.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.replication.role", havingValue = "FOLLOWER")
+@Slf4j
+public class ReplicationFollower {
+
+  private static final int MAX_RECORD_SIZE = 64 * 1024;
+
+  private final AccountsRepository accountsRepository;
+
+  private final AccountAggregates accountAggregates;
+
+  private final TransactionHistory transactionHistory;
+
+  private final String primary;
+
+  private final long heartbeatIntervalMillis;
+
+  private ByteBuffer received = ByteBuffer.allocate(64 * 1024);
+
+  private volatile long appliedPosition;
+
+  private volatile long primaryPosition;
+
+  private volatile long caughtUpAtMillis = System.currentTimeMillis();
+
+  private volatile boolean connected;
+
+  private volatile boolean running = true;
+
+  private volatile Socket socket;
+
+  private Thread follower;
+
+  @Autowired
+  public ReplicationFollower(AccountsRepository accountsRepository,
+                             AccountAggregates accountAggregates,
+                             TransactionHistory transactionHistory,
+                             @Value("${accounts.replication.primary:localhost:7070}") String primary,
+                             @Value("${accounts.replication.heartbeat-interval:100}") long heartbeatIntervalMillis) {
+    this.accountsRepository = accountsRepository;
+    this.accountAggregates = accountAggregates;
+    this.transactionHistory = transactionHistory;
+    this.primary = primary;
+    this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+  }
+
+  @PostConstruct
+  public void start() {
+    follower = new Thread(this::follow, "replication-follower");
+    follower.setDaemon(true);
+    follower.start();
+  }
+
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    closeQuietly(socket);
+    follower.interrupt();
+    follower.join(heartbeatIntervalMillis * 10);
+  }
+
+  public String getPrimary() {
+    return primary;
+  }
+
+  public boolean isConnected() {
+    return connected;
+  }
+
+  /**
+   * Position in the primary's journal up to which records have been applied here.
+   */
+  public long getAppliedPosition() {
+    return appliedPosition;
+  }
+
+  /**
+   * The primary's durable journal position, as last reported by it.
+   */
+  public long getPrimaryPosition() {
+    return primaryPosition;
+  }
+
+  public long getLagBytes() {
+    return Math.max(0L, primaryPosition - appliedPosition);
+  }
+
+  /**
+   * Milliseconds since this follower had applied everything the primary had reported, 0 while
+   * it is caught up.
+   */
+  public long getLagMillis() {
+    return appliedPosition >= primaryPosition ? 0L : System.currentTimeMillis() - caughtUpAtMillis;
+  }
+
+  private void follow() {
+    int separator = primary.lastIndexOf(':');
+    InetSocketAddress address = new InetSocketAddress(primary.substring(0, separator), Integer.parseInt(primary.substring(separator + 1)));
+
+    while (running) {
+      try (Socket connection = new Socket()) {
+        socket = connection;
+        connection.connect(address, (int) Math.max(1000L, heartbeatIntervalMillis * 10));
+        // the primary sends at least a heartbeat every interval
+        connection.setSoTimeout((int) Math.max(1000L, heartbeatIntervalMillis * 20));
+        connection.setTcpNoDelay(true);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 64 * 1024));
+        out.writeLong(appliedPosition);
+        out.flush();
+        connected = true;
+        log.info("Following the journal of {} from position {}", primary, appliedPosition);
+
+        received.clear();
+        receive(in, out);
+      } catch (IOException e) {
+        if (running) {
+          log.warn("Lost replication primary {}: {}", primary, e.toString());
+        }
+      } finally {
+        connected = false;
+      }
+
+      try {
+        Thread.sleep(heartbeatIntervalMillis);
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  private void receive(DataInputStream in, DataOutputStream out) throws IOException {
+    while (running) {
+      long position = in.readLong();
+      int length = in.readInt();
+      long durable = in.readLong();
+      if (position != appliedPosition + received.position()) {
+        throw new IOException("expected journal position " + (appliedPosition + received.position()) + " but got " + position);
+      }
+
+      if (received.remaining() < length) {
+        ByteBuffer grown = ByteBuffer.allocate(received.position() + length);
+        received.flip();
+        grown.put(received);
+        received = grown;
+      }
+      in.readFully(received.array(), received.position(), length);
+      received.position(received.position() + length);
+      applyReceived();
+
+      primaryPosition = durable;
+      if (appliedPosition >= durable) {
+        caughtUpAtMillis = System.currentTimeMillis();
+      }
+      if (length > 0) {
+        out.writeLong(appliedPosition);
+        out.flush();
+      }
+    }
+  }
+
+  /**
+   * Applies every complete journal frame received so far and keeps the incomplete rest.
+   */
+  private void applyReceived() throws IOException {
+    received.flip();
+    while (received.remaining() >= Integer.BYTES) {
+      received.mark();
+      int payloadLength = received.getInt();
+      if (payloadLength < 0 || payloadLength > MAX_RECORD_SIZE) {
+        throw new IOException("corrupt journal record at position " + appliedPosition);
+      }
+      if (received.remaining() < payloadLength + Integer.BYTES) {
+        received.reset();
+        break;
+      }
+
+      byte[] payload = new byte[payloadLength];
+      received.get(payload);
+      CRC32 crc = new CRC32();
+      crc.update(payload, 0, payloadLength);
+      if ((int) crc.getValue() != received.getInt()) {
+        throw new IOException("corrupt journal record at position " + appliedPosition);
+      }
+
+      apply(JournalRecord.decode(payload));
+      appliedPosition += Integer.BYTES + payloadLength + Integer.BYTES;
+    }
+    received.compact();
+  }
+
+  private void apply(JournalRecord record) {
+    if (record.getAccountId() != null) {
+      restore(record.getAccountId(), record.getBalance(), record.getVersion());
+    }
+    if (record.getType() == JournalRecord.Type.TRANSFERRED) {
+      restore(record.getToAccountId(), record.getToBalance(), record.getToVersion());
+      transactionHistory.recordTransfer(accountsRepository.getAccount(record.getAccountId()).getAccountId(),
+        accountsRepository.getAccount(record.getToAccountId()).getAccountId(), record.getAmount());
+    }
+  }
+
+  private void restore(String accountId, BigDecimal balance, long version) {
+    BigDecimal previous = balanceOf(accountId);
+    accountsRepository.restoreAccount(accountId, balance, version);
+    Account account = accountsRepository.getAccount(accountId);
+
+    if (previous == null) {
+      accountAggregates.accountCreated(account.getAccountId(), account.getBalance());
+    } else {
+      // cross-node credits and refunds change the total, transfers only move money
+      accountAggregates.totalChanged(account.getBalance().subtract(previous));
+      accountAggregates.balanceChanged(account.getAccountId(), account.getBalance());
+    }
+  }
+
+  private BigDecimal balanceOf(String accountId) {
+    Account account = accountsRepository.findAccount(accountId);
+    return account == null ? null : account.getBalance();
+  }
+
+  private static void closeQuietly(Socket socket) {
+    if (socket != null) {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        log.debug("Could not close the replication connection", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,190 @@
+package com.db.awmd.challenge.replication;
+
+import com.db.awmd.challenge.domain.FollowerStatus;
+import com.db.awmd.challenge.journal.TransferJournal;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Ships the transfer journal to {@link ReplicationFollower followers}, enabled with
+ * {@code accounts.replication.role=PRIMARY} together with the journal.
+ *
+ * <p>A follower connects to {@code accounts.replication.port} and sends the journal position it
+ * has applied up to. From then on it is sent the journal file as it becomes durable, as raw journal
+ * frames preceded by a header with the chunk's position, its length and the primary's durable
+ * position; an empty chunk goes out every {@code accounts.replication.heartbeat-interval}
+ * milliseconds while nothing new is durable. The follower answers with the position it applied.
+ *
+ * <p>Each follower is served by its own thread reading the journal file, which the journal never
+ * truncates, so transfers do no extra work for any number of followers. Only durable records are
+ * shipped, so a follower is never ahead of what the primary recovers after a crash.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.replication.role", havingValue = "PRIMARY")
+@Slf4j
+public class ReplicationPrimary {
+
+  private static final int MAX_CHUNK = 1024 * 1024;
+
+  private final int port;
+
+  private final long heartbeatIntervalMillis;
+
+  private final List<Session> sessions = new CopyOnWriteArrayList<>();
+
+  private ServerSocket serverSocket;
+
+  private volatile boolean running = true;
+
+  @Autowired(required = false)
+  private TransferJournal transferJournal;
+
+  @Autowired
+  public ReplicationPrimary(@Value("${accounts.replication.port:7070}") int port,
+                            @Value("${accounts.replication.heartbeat-interval:100}") long heartbeatIntervalMillis) {
+    this.port = port;
+    this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+  }
+
+  @PostConstruct
+  public void start() throws IOException {
+    if (transferJournal == null) {
+      throw new IllegalStateException("A replication primary ships the transfer journal, set accounts.journal.enabled=true");
+    }
+    serverSocket = new ServerSocket(port);
+    Thread acceptor = new Thread(this::acceptFollowers, "replication-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+    log.info("Shipping the transfer journal to followers on port {}", getPort());
+  }
+
+  @PreDestroy
+  public void stop() throws IOException {
+    running = false;
+    serverSocket.close();
+    for (Session session : sessions) {
+      session.close();
+    }
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  /**
+   * The journal position followers are being brought up to.
+   */
+  public long getPosition() {
+    return transferJournal.getDurablePosition();
+  }
+
+  public List<FollowerStatus> followers() {
+    long position = getPosition();
+    List<FollowerStatus> followers = new ArrayList<>(sessions.size());
+    for (Session session : sessions) {
+      followers.add(new FollowerStatus(session.address, session.acknowledged, Math.max(0L, position - session.acknowledged)));
+    }
+    return followers;
+  }
+
+  private void acceptFollowers() {
+    while (running) {
+      try {
+        Session session = new Session(serverSocket.accept());
+        sessions.add(session);
+        session.start();
+      } catch (IOException e) {
+        if (running) {
+          log.warn("Could not accept a follower: {}", e.getMessage());
+        }
+      }
+    }
+  }
+
+  private final class Session extends Thread {
+
+    private final Socket socket;
+
+    private final String address;
+
+    private volatile long acknowledged;
+
+    private Session(Socket socket) {
+      super("replication-" + socket.getRemoteSocketAddress());
+      this.socket = socket;
+      this.address = socket.getRemoteSocketAddress().toString();
+      setDaemon(true);
+    }
+
+    private void close() {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        log.debug("Could not close connection to follower {}", address, e);
+      }
+    }
+
+    @Override
+    public void run() {
+      try (Socket connection = socket;
+           FileChannel journal = FileChannel.open(transferJournal.getFile(), StandardOpenOption.READ)) {
+        connection.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream(), 64 * 1024));
+        WritableByteChannel body = Channels.newChannel(out);
+
+        long shipped = in.readLong();
+        acknowledged = shipped;
+        log.info("Follower {} connected at journal position {}", address, shipped);
+
+        while (running) {
+          long durable = transferJournal.awaitDurableBeyond(shipped, heartbeatIntervalMillis);
+          if (shipped > durable) {
+            throw new IOException("follower is ahead of this journal at position " + shipped);
+          }
+          int length = (int) Math.min(durable - shipped, MAX_CHUNK);
+          out.writeLong(shipped);
+          out.writeInt(length);
+          out.writeLong(durable);
+          for (long sent = 0L; sent < length; ) {
+            sent += journal.transferTo(shipped + sent, length - sent, body);
+          }
+          out.flush();
+          shipped += length;
+
+          while (in.available() >= Long.BYTES) {
+            acknowledged = in.readLong();
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (SocketException e) {
+        log.info("Follower {} disconnected", address);
+      } catch (IOException e) {
+        log.warn("Stopped shipping the journal to follower {}: {}", address, e.getMessage());
+      } finally {
+        sessions.remove(this);
+      }
+    }
+  }
+}
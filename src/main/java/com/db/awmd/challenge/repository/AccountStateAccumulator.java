@@ -0,0 +1,9 @@
+package com.db.awmd.challenge.repository;
+
+import java.math.BigDecimal;
+
+@FunctionalInterface
+public interface AccountStateAccumulator<R> {
+
+  void accept(R result, String accountId, BigDecimal balance, long version);
+}
@@ -0,0 +1,9 @@
+package com.db.awmd.challenge.repository;
+
+import java.math.BigDecimal;
+
+@FunctionalInterface
+public interface AccountStateConsumer {
+
+  void accept(String accountId, BigDecimal balance, long version);
+}
@@ -3,12 +3,47 @@ package com.db.awmd.challenge.repository;
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.exception.AccountDoesNotExistsException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import java.math.BigDecimal;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 public interface AccountsRepository {
 
   void createAccount(Account account) throws DuplicateAccountIdException;
 
-  Account getAccount(String accountId) throws AccountDoesNotExistsException;
+  /**
+   * @return the account, or null if there is none
+   */
+  Account findAccount(String accountId);
+
+  default Account getAccount(String accountId) throws AccountDoesNotExistsException {
+    Account account = findAccount(accountId);
+    if (account == null) {
+      throw new AccountDoesNotExistsException("Account id " + accountId + " does not exists!");
+    }
+    return account;
+  }
 
   void clearAccounts();
+
+  /**
+   * Creates the account with the given state, or overwrites an existing account's state if
+   * {@code version} is newer than its current one. Used when rebuilding the store from
+   * durable or replicated records; must not race with transfers on the same account.
+   */
+  void restoreAccount(String accountId, BigDecimal balance, long version);
+
+  /**
+   * Visits every account without blocking transfers. Each account's balance is at least as new
+   * as its reported version, but different accounts may be seen at different points in time.
+   */
+  void forEachAccount(AccountStateConsumer consumer);
+
+  /**
+   * Folds every account into a result in parallel on the common fork-join pool, like
+   * {@link java.util.stream.Stream#collect}: each task accumulates into its own container from
+   * {@code supplier}, and containers are merged with {@code combiner}. Accounts are read as by
+   * {@link #forEachAccount}.
+   */
+  <R> R collectAccounts(Supplier<R> supplier, AccountStateAccumulator<R> accumulator, BiConsumer<R, R> combiner);
 }
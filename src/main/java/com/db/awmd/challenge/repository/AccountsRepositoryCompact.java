@@ -0,0 +1,294 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.FixedPointBalance;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Account store for very large populations, enabled with {@code accounts.repository.type=compact}.
+ *
+ * <p>Account ids are interned to dense int handles; balances (as fixed-point minor units) and
+ * versions live in segmented primitive arrays, optionally off-heap. Balances are guarded by a
+ * fixed array of lock stripes taken in stripe order, so there is no per-account object besides
+ * the id itself. {@link #findAccount(String)} returns a detached copy of the account.
+ *
+ * <p>Footprint per account as measured by {@code FootprintReport} with 1M and 4M accounts with
+ * ids like {@code Id-123456} and a balance each on JDK 17 with compressed oops: 131 to 136 bytes of
+ * heap, mostly the id-to-handle map entry with its boxed handle and the id string. Off-heap, 16
+ * bytes of balance and version per account move to direct memory and 116 to 120 bytes stay on the
+ * heap. The in-memory repository takes 242 to 243 bytes per account, 208 to 210 with fixed-point
+ * balances. On Java 8 each id string of that length takes about 8 bytes more.
+ */
+@Repository
+@ConditionalOnProperty(name = "accounts.repository.type", havingValue = "compact")
+public class AccountsRepositoryCompact implements HandleAccountsRepository {
+
+  private final Map<String, Integer> handles = new ConcurrentHashMap<>();
+
+  private final LongSegments balances;
+
+  private final LongSegments versions;
+
+  private volatile String[][] idSegments = new String[0][];
+
+  private final ReentrantLock[] stripes;
+
+  private final int scale;
+
+  private final long lockTimeoutMillis;
+
+  private final Object creationLock = new Object();
+
+  private int size;
+
+  @Autowired(required = false)
+  @Setter
+  private TransferMetrics transferMetrics;
+
+  @Autowired
+  public AccountsRepositoryCompact(@Value("${accounts.balance.scale:2}") int scale,
+                                   @Value("${accounts.repository.off-heap:false}") boolean offHeap,
+                                   @Value("${accounts.lock.stripes:0}") int stripeCount,
+                                   @Value("${accounts.lock.fair:true}") boolean fair,
+                                   @Value("${accounts.lock.timeout:${server.connection-timeout}}") long lockTimeoutMillis) {
+    this.scale = scale;
+    this.lockTimeoutMillis = lockTimeoutMillis;
+    this.balances = new LongSegments(offHeap);
+    this.versions = new LongSegments(offHeap);
+
+    this.stripes = new ReentrantLock[stripeCount > 0 ? stripeCount : 4096];
+    for (int i = 0; i < this.stripes.length; i++) {
+      this.stripes[i] = new ReentrantLock(fair);
+    }
+  }
+
+  @Override
+  public void createAccount(Account account) throws DuplicateAccountIdException {
+    long units = FixedPointBalance.toUnits(account.getBalance(), scale);
+
+    synchronized (creationLock) {
+      if (handles.containsKey(account.getAccountId())) {
+        throw new DuplicateAccountIdException(
+          "Account id " + account.getAccountId() + " already exists!");
+      }
+
+      int handle = size++;
+      balances.ensureCapacity(size);
+      versions.ensureCapacity(size);
+      ensureIdCapacity(size);
+
+      balances.set(handle, units);
+      versions.set(handle, 0L);
+      idSegments[handle >>> LongSegments.SEGMENT_BITS][handle & (LongSegments.SEGMENT_SIZE - 1)] = account.getAccountId();
+
+      handles.put(account.getAccountId(), handle);
+    }
+  }
+
+  @Override
+  public Account findAccount(String accountId) {
+    int handle = findHandle(accountId);
+    return handle < 0 ? null : new Account(accountId, FixedPointBalance.toBigDecimal(balances.get(handle), scale));
+  }
+
+  @Override
+  public void clearAccounts() {
+    synchronized (creationLock) {
+      handles.clear();
+      balances.clear();
+      versions.clear();
+      idSegments = new String[0][];
+      size = 0;
+    }
+  }
+
+  @Override
+  public void restoreAccount(String accountId, BigDecimal balance, long version) {
+    long units = FixedPointBalance.toUnits(balance, scale);
+
+    synchronized (creationLock) {
+      Integer handle = handles.get(accountId);
+      if (handle == null) {
+        createAccount(new Account(accountId, balance));
+        handle = handles.get(accountId);
+      } else if (versions.get(handle) >= version) {
+        return;
+      }
+
+      ReentrantLock stripe = stripes[handle % stripes.length];
+      lock(stripe, handle);
+      try {
+        balances.set(handle, units);
+        versions.set(handle, version);
+      } finally {
+        stripe.unlock();
+      }
+    }
+  }
+
+  @Override
+  public void forEachAccount(AccountStateConsumer consumer) {
+    int count;
+    synchronized (creationLock) {
+      count = size;
+    }
+
+    for (int handle = 0; handle < count; handle++) {
+      long units;
+      long version;
+      ReentrantLock stripe = stripes[handle % stripes.length];
+      lock(stripe, handle);
+      try {
+        units = balances.get(handle);
+        version = versions.get(handle);
+      } finally {
+        stripe.unlock();
+      }
+      consumer.accept(getAccountId(handle), FixedPointBalance.toBigDecimal(units, scale), version);
+    }
+  }
+
+  @Override
+  public <R> R collectAccounts(Supplier<R> supplier, AccountStateAccumulator<R> accumulator, BiConsumer<R, R> combiner) {
+    int count;
+    synchronized (creationLock) {
+      count = size;
+    }
+
+    return IntStream.range(0, count).parallel().collect(supplier, (result, handle) -> {
+      long units;
+      long version;
+      ReentrantLock stripe = stripes[handle % stripes.length];
+      lock(stripe, handle);
+      try {
+        units = balances.get(handle);
+        version = versions.get(handle);
+      } finally {
+        stripe.unlock();
+      }
+      accumulator.accept(result, getAccountId(handle), FixedPointBalance.toBigDecimal(units, scale), version);
+    }, combiner);
+  }
+
+  @Override
+  public int findHandle(String accountId) {
+    Integer handle = handles.get(accountId);
+    return handle == null ? -1 : handle;
+  }
+
+  @Override
+  public String getAccountId(int handle) {
+    return idSegments[handle >>> LongSegments.SEGMENT_BITS][handle & (LongSegments.SEGMENT_SIZE - 1)];
+  }
+
+  @Override
+  public int getScale() {
+    return scale;
+  }
+
+  @Override
+  public boolean transfer(int fromHandle, int toHandle, long units, TransferObserver observer) throws AccountLockTimeoutException {
+    ReentrantLock lower = stripes[Math.min(fromHandle % stripes.length, toHandle % stripes.length)];
+    ReentrantLock upper = stripes[Math.max(fromHandle % stripes.length, toHandle % stripes.length)];
+
+    long lockStart = System.nanoTime();
+    lock(lower, fromHandle, lockStart);
+    try {
+      if (upper != lower) {
+        lock(upper, toHandle, lockStart);
+      }
+      recordLockWait(lockStart);
+      try {
+        long fromBalance = balances.get(fromHandle);
+        if (fromBalance < units) {
+          return false;
+        }
+        if (fromHandle == toHandle) {
+          // nothing moves; crediting the balance read above would overwrite the debit
+          return true;
+        }
+
+        long toBalance;
+        try {
+          toBalance = Math.addExact(balances.get(toHandle), units);
+        } catch (ArithmeticException e) {
+          throw new ArithmeticException("Balance of account id " + getAccountId(toHandle) + " would overflow");
+        }
+
+        long fromVersion = versions.get(fromHandle) + 1;
+        long toVersion = versions.get(toHandle) + 1;
+        balances.set(fromHandle, fromBalance - units);
+        balances.set(toHandle, toBalance);
+        versions.set(fromHandle, fromVersion);
+        versions.set(toHandle, toVersion);
+
+        if (observer != null) {
+          observer.transferred(getAccountId(fromHandle), fromBalance - units, fromVersion,
+                               getAccountId(toHandle), toBalance, toVersion);
+        }
+        return true;
+      } finally {
+        if (upper != lower) {
+          upper.unlock();
+        }
+      }
+    } finally {
+      lower.unlock();
+    }
+  }
+
+  private void recordLockWait(long start) {
+    if (transferMetrics != null) {
+      transferMetrics.recordLockWait(System.nanoTime() - start);
+    }
+  }
+
+  private void lock(ReentrantLock lock, int handle, long lockStart) {
+    try {
+      lock(lock, handle);
+    } catch (AccountLockTimeoutException e) {
+      recordLockWait(lockStart);
+      throw e;
+    }
+  }
+
+  private void lock(ReentrantLock lock, int handle) {
+    try {
+      if (!lock.tryLock(lockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        throw new AccountLockTimeoutException(
+          "Timed out waiting for account id " + getAccountId(handle) + ". Please retry the transfer");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Something went wrong. Server not able to process the request");
+    }
+  }
+
+  private void ensureIdCapacity(int size) {
+    int segmentsNeeded = (size + LongSegments.SEGMENT_SIZE - 1) >>> LongSegments.SEGMENT_BITS;
+    String[][] segments = idSegments;
+    if (segments.length < segmentsNeeded) {
+      String[][] grown = Arrays.copyOf(segments, segmentsNeeded);
+      for (int i = segments.length; i < segmentsNeeded; i++) {
+        grown[i] = new String[LongSegments.SEGMENT_SIZE];
+      }
+      idSegments = grown;
+    }
+  }
+}
@@ -2,21 +2,38 @@ package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.AccountRuntime;
-import com.db.awmd.challenge.exception.AccountDoesNotExistsException;
+import com.db.awmd.challenge.domain.AccountState;
+import com.db.awmd.challenge.domain.DecimalAccountRuntime;
+import com.db.awmd.challenge.domain.FixedPointAccountRuntime;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import java.math.BigDecimal;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
 @Repository
+@ConditionalOnProperty(name = "accounts.repository.type", havingValue = "in-memory", matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
   private final Map<String, Account> accounts = new ConcurrentHashMap<>();
 
+  @Value("${accounts.lock.fair:true}")
+  private boolean fairLocks = true;
+
+  @Value("${accounts.balance.fixed-point:false}")
+  private boolean fixedPointBalances;
+
+  @Value("${accounts.balance.scale:2}")
+  private int balanceScale = 2;
+
   @Override
   public void createAccount(Account account) throws DuplicateAccountIdException {
 
-    AccountRuntime accountRuntime = new AccountRuntime(account.getAccountId(), account.getBalance());
+    AccountRuntime accountRuntime = newAccountRuntime(account.getAccountId(), account.getBalance());
 
     Account previousAccount = accounts.putIfAbsent(account.getAccountId(), accountRuntime);
     if (previousAccount != null) {
@@ -26,13 +43,8 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
   }
 
   @Override
-  public Account getAccount(String accountId) throws AccountDoesNotExistsException {
-    if(accounts.containsKey(accountId)) {
-     return accounts.get(accountId);
-    }else {
-      throw new AccountDoesNotExistsException(
-              "Account id " + accountId + " does not exists!");
-    }
+  public Account findAccount(String accountId) {
+    return accounts.get(accountId);
   }
 
   @Override
@@ -40,4 +52,34 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
     accounts.clear();
   }
 
+  @Override
+  public void restoreAccount(String accountId, BigDecimal balance, long version) {
+    accounts.compute(accountId, (id, existing) -> {
+      AccountRuntime accountRuntime = existing != null ? (AccountRuntime) existing : newAccountRuntime(id, balance);
+      accountRuntime.restore(balance, version);
+      return accountRuntime;
+    });
+  }
+
+  @Override
+  public void forEachAccount(AccountStateConsumer consumer) {
+    for (Account account : accounts.values()) {
+      AccountState state = ((AccountRuntime) account).getState();
+      consumer.accept(account.getAccountId(), state.getBalance(), state.getVersion());
+    }
+  }
+
+  @Override
+  public <R> R collectAccounts(Supplier<R> supplier, AccountStateAccumulator<R> accumulator, BiConsumer<R, R> combiner) {
+    return accounts.values().parallelStream().collect(supplier, (result, account) -> {
+      AccountState state = ((AccountRuntime) account).getState();
+      accumulator.accept(result, account.getAccountId(), state.getBalance(), state.getVersion());
+    }, combiner);
+  }
+
+  private AccountRuntime newAccountRuntime(String accountId, BigDecimal balance) {
+    return fixedPointBalances
+      ? new FixedPointAccountRuntime(accountId, balance, fairLocks, balanceScale)
+      : new DecimalAccountRuntime(accountId, balance, fairLocks);
+  }
 }
@@ -0,0 +1,40 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.exception.AccountDoesNotExistsException;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+
+/**
+ * Repository that identifies accounts by dense int handles as well as by id. Callers that
+ * transfer repeatedly between the same accounts can resolve the handles once and skip the id
+ * lookup on every transfer.
+ */
+public interface HandleAccountsRepository extends AccountsRepository {
+
+  /**
+   * @return the handle of the account, or -1 if there is none
+   */
+  int findHandle(String accountId);
+
+  default int getHandle(String accountId) throws AccountDoesNotExistsException {
+    int handle = findHandle(accountId);
+    if (handle < 0) {
+      throw new AccountDoesNotExistsException("Account id " + accountId + " does not exists!");
+    }
+    return handle;
+  }
+
+  String getAccountId(int handle);
+
+  /**
+   * Number of decimal places of the minor units balances are kept in.
+   */
+  int getScale();
+
+  /**
+   * Moves {@code units} minor units between the two accounts. The observer, if any, is called
+   * before the accounts are unlocked.
+   *
+   * @return false if the source balance does not cover the amount
+   */
+  boolean transfer(int fromHandle, int toHandle, long units, TransferObserver observer) throws AccountLockTimeoutException;
+}
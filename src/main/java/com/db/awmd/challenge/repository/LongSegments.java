@@ -0,0 +1,75 @@
+package com.db.awmd.challenge.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable array of longs stored in fixed-size segments, either on the heap or in direct
+ * (off-heap) buffers. Growing only ever adds segments, so existing values are never copied.
+ * Growth and {@link #clear()} must be externally serialised; reads and writes of individual
+ * slots may happen concurrently with growth.
+ */
+final class LongSegments {
+
+  static final int SEGMENT_BITS = 16;
+
+  static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+  private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+  private final boolean offHeap;
+
+  private volatile long[][] heapSegments = new long[0][];
+
+  private volatile LongBuffer[] directSegments = new LongBuffer[0];
+
+  LongSegments(boolean offHeap) {
+    this.offHeap = offHeap;
+  }
+
+  long get(int index) {
+    if (offHeap) {
+      return directSegments[index >>> SEGMENT_BITS].get(index & SEGMENT_MASK);
+    }
+    return heapSegments[index >>> SEGMENT_BITS][index & SEGMENT_MASK];
+  }
+
+  void set(int index, long value) {
+    if (offHeap) {
+      directSegments[index >>> SEGMENT_BITS].put(index & SEGMENT_MASK, value);
+    } else {
+      heapSegments[index >>> SEGMENT_BITS][index & SEGMENT_MASK] = value;
+    }
+  }
+
+  void ensureCapacity(int size) {
+    int segmentsNeeded = (size + SEGMENT_MASK) >>> SEGMENT_BITS;
+
+    if (offHeap) {
+      LongBuffer[] segments = directSegments;
+      if (segments.length < segmentsNeeded) {
+        LongBuffer[] grown = Arrays.copyOf(segments, segmentsNeeded);
+        for (int i = segments.length; i < segmentsNeeded; i++) {
+          grown[i] = ByteBuffer.allocateDirect(SEGMENT_SIZE * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        directSegments = grown;
+      }
+    } else {
+      long[][] segments = heapSegments;
+      if (segments.length < segmentsNeeded) {
+        long[][] grown = Arrays.copyOf(segments, segmentsNeeded);
+        for (int i = segments.length; i < segmentsNeeded; i++) {
+          grown[i] = new long[SEGMENT_SIZE];
+        }
+        heapSegments = grown;
+      }
+    }
+  }
+
+  void clear() {
+    heapSegments = new long[0][];
+    directSegments = new LongBuffer[0];
+  }
+}
@@ -0,0 +1,12 @@
+package com.db.awmd.challenge.repository;
+
+/**
+ * Callback told about the state of both accounts right after a handle-based transfer has been
+ * applied, while both accounts are still locked.
+ */
+@FunctionalInterface
+public interface TransferObserver {
+
+  void transferred(String fromAccountId, long fromUnits, long fromVersion,
+                   String toAccountId, long toUnits, long toVersion);
+}
@@ -0,0 +1,250 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountRuntime;
+import com.db.awmd.challenge.domain.AccountsSummary;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Total money under management and the largest balances, kept up to date as accounts are
+ * created and balances change instead of being computed by a scan.
+ *
+ * <p>Transfers between local accounts never change the total, so only account creation and
+ * cross-node transfers add to it, spread over striped cells so that concurrent changes do not
+ * contend on one value. Reading it sums the cells. Balances are indexed in a skip list ordered by
+ * balance, so the top N are read in O(log n + N). Every balance change replaces the account's
+ * entry; callers report changes while they still have exclusive access to the account, which
+ * keeps each account's updates in order.
+ *
+ * <p>The index costs roughly 120 bytes per account (skip list node, entry and id map entry), so
+ * it can be turned off with {@code accounts.aggregates.enabled=false}. {@link #recompute(int)}
+ * computes the same figures from scratch on the fork-join pool to check the incremental ones.
+ */
+@Component
+public class AccountAggregates {
+
+  private static final int TOTAL_CELLS = 64;
+
+  private static final Comparator<Entry> BY_BALANCE = Comparator
+    .comparing((Entry entry) -> entry.balance)
+    .thenComparing(entry -> entry.accountId);
+
+  private final AccountsRepository accountsRepository;
+
+  private final boolean enabled;
+
+  private final AtomicReferenceArray<BigDecimal> totalCells = new AtomicReferenceArray<>(TOTAL_CELLS);
+
+  private final LongAdder accounts = new LongAdder();
+
+  private final Map<String, BigDecimal> indexedBalances = new ConcurrentHashMap<>();
+
+  private final ConcurrentSkipListSet<Entry> balanceIndex = new ConcurrentSkipListSet<>(BY_BALANCE);
+
+  // accounts restored from the journal bypass the service, so they are counted after recovery
+  @Autowired(required = false)
+  private TransferJournal transferJournal;
+
+  @Autowired
+  public AccountAggregates(AccountsRepository accountsRepository,
+                           @Value("${accounts.aggregates.enabled:true}") boolean enabled) {
+    this.accountsRepository = accountsRepository;
+    this.enabled = enabled;
+    clear();
+  }
+
+  @PostConstruct
+  public void loadExistingAccounts() {
+    if (enabled) {
+      accountsRepository.forEachAccount((accountId, balance, version) -> accountCreated(accountId, balance));
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Counts a new account. Its balance may already have changed since it was created.
+   */
+  public void accountCreated(String accountId, BigDecimal balance) {
+    if (!enabled) {
+      return;
+    }
+    totalChanged(balance);
+    accounts.increment();
+
+    // a transfer that got to the account first has already indexed its newer balance
+    indexedBalances.computeIfAbsent(accountId, id -> {
+      balanceIndex.add(new Entry(id, balance));
+      return balance;
+    });
+  }
+
+  /**
+   * Adds money that arrived from or subtracts money that left for another node.
+   */
+  public void totalChanged(BigDecimal delta) {
+    if (!enabled) {
+      return;
+    }
+    int cell = (int) Thread.currentThread().getId() & (TOTAL_CELLS - 1);
+    BigDecimal current;
+    do {
+      current = totalCells.get(cell);
+    } while (!totalCells.compareAndSet(cell, current, current.add(delta)));
+  }
+
+  /**
+   * Re-indexes the account. The caller must still have exclusive access to it.
+   */
+  public void balanceChanged(AccountRuntime account) {
+    if (enabled) {
+      balanceChanged(account.getAccountId(), account.getBalance());
+    }
+  }
+
+  /**
+   * Re-indexes the account. The caller must still have exclusive access to it.
+   */
+  public void balanceChanged(String accountId, BigDecimal balance) {
+    if (!enabled) {
+      return;
+    }
+    indexedBalances.compute(accountId, (id, previous) -> {
+      // add before removing so that readers never miss the account, see topBalances
+      balanceIndex.add(new Entry(id, balance));
+      if (previous != null && previous.compareTo(balance) != 0) {
+        balanceIndex.remove(new Entry(id, previous));
+      }
+      return balance;
+    });
+  }
+
+  public BigDecimal getTotal() {
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < TOTAL_CELLS; i++) {
+      total = total.add(totalCells.get(i));
+    }
+    return total;
+  }
+
+  public long getAccountCount() {
+    return accounts.sum();
+  }
+
+  /**
+   * The {@code n} largest balances, largest first.
+   */
+  public List<Account> topBalances(int n) {
+    List<Account> top = new ArrayList<>(n);
+    Set<String> seen = new HashSet<>();
+    Iterator<Entry> entries = balanceIndex.descendingIterator();
+    while (top.size() < n && entries.hasNext()) {
+      Entry entry = entries.next();
+      // a balance being replaced can be listed twice for a moment, keep the first one seen
+      if (seen.add(entry.accountId)) {
+        top.add(new Account(entry.accountId, entry.balance));
+      }
+    }
+    return top;
+  }
+
+  public AccountsSummary summary(int n) {
+    return new AccountsSummary(getTotal(), getAccountCount(), topBalances(n));
+  }
+
+  /**
+   * Computes the summary from a scan of every account, split across the common fork-join pool.
+   * Only exact while no transfer or creation runs concurrently.
+   */
+  public AccountsSummary recompute(int n) {
+    Partial partial = accountsRepository.collectAccounts(() -> new Partial(n), Partial::add, Partial::merge);
+
+    List<Account> top = new ArrayList<>(n);
+    for (Entry entry : partial.top.descendingSet()) {
+      top.add(new Account(entry.accountId, entry.balance));
+    }
+    return new AccountsSummary(partial.total, partial.count, top);
+  }
+
+  /**
+   * Forgets every account, for use together with {@link AccountsRepository#clearAccounts()}.
+   */
+  public void clear() {
+    for (int i = 0; i < TOTAL_CELLS; i++) {
+      totalCells.set(i, BigDecimal.ZERO);
+    }
+    accounts.reset();
+    indexedBalances.clear();
+    balanceIndex.clear();
+  }
+
+  private static final class Entry {
+
+    private final String accountId;
+
+    private final BigDecimal balance;
+
+    private Entry(String accountId, BigDecimal balance) {
+      this.accountId = accountId;
+      this.balance = balance;
+    }
+  }
+
+  private static final class Partial {
+
+    private final int n;
+
+    private final NavigableSet<Entry> top = new TreeSet<>(BY_BALANCE);
+
+    private BigDecimal total = BigDecimal.ZERO;
+
+    private long count;
+
+    private Partial(int n) {
+      this.n = n;
+    }
+
+    private void add(String accountId, BigDecimal balance, long version) {
+      total = total.add(balance);
+      count++;
+      if (n > 0 && (top.size() < n || BY_BALANCE.compare(new Entry(accountId, balance), top.first()) > 0)) {
+        top.add(new Entry(accountId, balance));
+        if (top.size() > n) {
+          top.pollFirst();
+        }
+      }
+    }
+
+    private void merge(Partial other) {
+      total = total.add(other.total);
+      count += other.count;
+      for (Entry entry : other.top) {
+        top.add(entry);
+        if (top.size() > n) {
+          top.pollFirst();
+        }
+      }
+    }
+  }
+}
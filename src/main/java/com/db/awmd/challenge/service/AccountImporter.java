@@ -0,0 +1,336 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountImportError;
+import com.db.awmd.challenge.domain.AccountImportResult;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates accounts from a stream of NDJSON objects or CSV rows.
+ *
+ * <p>The calling thread only splits the body into lines and hands them on in batches of
+ * {@code accounts.import.batch-size}; parsing, validation and insertion run on
+ * {@code accounts.import.parallelism} worker threads. At most two batches per worker are waiting
+ * at any time, so the reader falls behind the workers instead of buffering the body. Each line is
+ * parsed with the streaming JSON parser, or split by hand for CSV, rather than bound and validated
+ * as a request body, and a batch waits for the journal once rather than once per account.
+ *
+ * <p>A line that cannot be parsed, fails validation or names an existing account is skipped and
+ * reported by its line number; the rest of the import goes on.
+ */
+@Component
+public class AccountImporter {
+
+  public static final String NDJSON_VALUE = "application/x-ndjson";
+
+  public static final String CSV_VALUE = "text/csv";
+
+  private static final MediaType NDJSON = MediaType.valueOf(NDJSON_VALUE);
+
+  private static final MediaType CSV = MediaType.valueOf(CSV_VALUE);
+
+  private static final String CSV_HEADER = "accountId,balance";
+
+  private final AccountsService accountsService;
+
+  private final JsonFactory jsonFactory = new JsonFactory();
+
+  private final ExecutorService workers;
+
+  private final int parallelism;
+
+  private final int batchSize;
+
+  private final int maxReportedErrors;
+
+  @Autowired
+  public AccountImporter(AccountsService accountsService,
+                         @Value("${accounts.import.parallelism:0}") int parallelism,
+                         @Value("${accounts.import.batch-size:10000}") int batchSize,
+                         @Value("${accounts.import.max-reported-errors:1000}") int maxReportedErrors) {
+    this.accountsService = accountsService;
+    this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    this.batchSize = batchSize;
+    this.maxReportedErrors = maxReportedErrors;
+
+    AtomicInteger threadCount = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "account-import-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Imports every line of the stream and returns once all of them have been applied or rejected.
+   *
+   * @throws IllegalArgumentException if the media type is neither NDJSON nor CSV
+   */
+  public AccountImportResult importAccounts(InputStream body, MediaType mediaType) throws IOException {
+    boolean csv = isCsv(mediaType);
+    Import accountImport = new Import();
+    Semaphore queued = new Semaphore(parallelism * 2);
+    List<Future<?>> batches = new ArrayList<>();
+
+    BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 64 * 1024);
+    long lineNumber = 0L;
+    long firstLine = 1L;
+    List<String> lines = new ArrayList<>(batchSize);
+    String line;
+    try {
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        if (csv && lineNumber == 1L && line.trim().equalsIgnoreCase(CSV_HEADER)) {
+          line = "";
+        }
+        lines.add(line);
+
+        if (lines.size() == batchSize) {
+          batches.add(submit(lines, firstLine, csv, accountImport, queued));
+          lines = new ArrayList<>(batchSize);
+          firstLine = lineNumber + 1;
+        }
+      }
+      if (!lines.isEmpty()) {
+        batches.add(submit(lines, firstLine, csv, accountImport, queued));
+      }
+    } finally {
+      await(batches);
+    }
+
+    return accountImport.result();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    workers.shutdownNow();
+  }
+
+  private static boolean isCsv(MediaType mediaType) {
+    if (mediaType != null && NDJSON.includes(mediaType)) {
+      return false;
+    }
+    if (mediaType != null && CSV.includes(mediaType)) {
+      return true;
+    }
+    throw new IllegalArgumentException("Accounts can only be imported as " + NDJSON_VALUE + " or " + CSV_VALUE);
+  }
+
+  private Future<?> submit(List<String> lines, long firstLine, boolean csv, Import accountImport, Semaphore queued) {
+    queued.acquireUninterruptibly();
+    try {
+      return workers.submit(() -> {
+        try {
+          insert(lines, firstLine, csv, accountImport);
+        } finally {
+          queued.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      queued.release();
+      throw e;
+    }
+  }
+
+  private void await(List<Future<?>> batches) {
+    for (Future<?> batch : batches) {
+      try {
+        batch.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while importing accounts", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Account import failed", e.getCause());
+      }
+    }
+  }
+
+  private void insert(List<String> lines, long firstLine, boolean csv, Import accountImport) {
+    List<Account> accounts = new ArrayList<>(lines.size());
+    List<Long> accountLines = new ArrayList<>(lines.size());
+
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i);
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      long lineNumber = firstLine + i;
+      try {
+        Account account = csv ? parseCsv(line) : parseJson(line);
+        validate(account);
+        accounts.add(account);
+        accountLines.add(lineNumber);
+      } catch (IOException | IllegalArgumentException e) {
+        accountImport.reject(lineNumber, null, e.getMessage());
+      }
+    }
+
+    String[] failures = accountsService.createAccounts(accounts);
+    for (int i = 0; i < failures.length; i++) {
+      if (failures[i] != null) {
+        accountImport.reject(accountLines.get(i), accounts.get(i).getAccountId(), failures[i]);
+      }
+    }
+    accountImport.imported.add(accounts.size() - countFailures(failures));
+  }
+
+  private Account parseJson(String line) throws IOException {
+    String accountId = null;
+    BigDecimal balance = null;
+
+    try (JsonParser parser = jsonFactory.createParser(line)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IllegalArgumentException("Expected a JSON object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if ("accountId".equals(field)) {
+          accountId = value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+        } else if ("balance".equals(field)) {
+          balance = decimal(parser, value);
+        } else {
+          parser.skipChildren();
+        }
+      }
+      if (parser.nextToken() != null) {
+        throw new IllegalArgumentException("Expected one JSON object per line");
+      }
+    } catch (JsonProcessingException e) {
+      throw new IllegalArgumentException("Malformed JSON: " + e.getOriginalMessage());
+    }
+
+    return new Account(accountId, balance);
+  }
+
+  private static BigDecimal decimal(JsonParser parser, JsonToken value) throws IOException {
+    switch (value) {
+      case VALUE_NUMBER_INT:
+      case VALUE_NUMBER_FLOAT:
+        return parser.getDecimalValue();
+      case VALUE_STRING:
+        return decimal(parser.getText());
+      case VALUE_NULL:
+        return null;
+      default:
+        throw new IllegalArgumentException("balance must be a number");
+    }
+  }
+
+  private static Account parseCsv(String line) {
+    List<String> fields = new ArrayList<>(2);
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else if (c == '"') {
+          quoted = false;
+        } else {
+          field.append(c);
+        }
+      } else if (c == '"' && field.length() == 0) {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    if (quoted) {
+      throw new IllegalArgumentException("Unterminated quoted field");
+    }
+    fields.add(field.toString());
+
+    if (fields.size() != 2) {
+      throw new IllegalArgumentException("Expected 2 fields (accountId,balance) but found " + fields.size());
+    }
+    String balance = fields.get(1).trim();
+    return new Account(fields.get(0).trim(), balance.isEmpty() ? null : decimal(balance));
+  }
+
+  private static BigDecimal decimal(String text) {
+    try {
+      return new BigDecimal(text.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("balance must be a number");
+    }
+  }
+
+  // the same rules as the constraints on Account, checked without a validator
+  private static void validate(Account account) {
+    if (account.getAccountId() == null || account.getAccountId().isEmpty()) {
+      throw new IllegalArgumentException("accountId may not be empty");
+    }
+    if (account.getBalance() == null) {
+      throw new IllegalArgumentException("balance may not be null");
+    }
+    if (account.getBalance().signum() < 0) {
+      throw new IllegalArgumentException("Initial balance must be positive.");
+    }
+  }
+
+  private static int countFailures(String[] failures) {
+    int count = 0;
+    for (String failure : failures) {
+      if (failure != null) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private final class Import {
+
+    private final LongAdder imported = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final List<AccountImportError> errors = new ArrayList<>();
+
+    private void reject(long line, String accountId, String message) {
+      rejected.increment();
+      synchronized (errors) {
+        if (errors.size() < maxReportedErrors) {
+          errors.add(new AccountImportError(line, accountId, message));
+        }
+      }
+    }
+
+    private AccountImportResult result() {
+      synchronized (errors) {
+        errors.sort(Comparator.comparingLong(AccountImportError::getLine));
+        return new AccountImportResult(imported.sum(), rejected.sum(), new ArrayList<>(errors));
+      }
+    }
+  }
+}
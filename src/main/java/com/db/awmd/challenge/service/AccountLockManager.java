@@ -0,0 +1,191 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AccountRuntime;
+import com.db.awmd.challenge.domain.AmountTransferResult;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hands out the locks guarding account balances and always acquires them in one global order,
+ * so two transfers touching the same pair of accounts can never deadlock.
+ *
+ * <p>With {@code accounts.lock.stripes} set to 0 every account is guarded by its own lock and
+ * locks are ordered by account id. With a positive stripe count accounts are hashed onto a
+ * fixed array of locks which are ordered by stripe index; two accounts on the same stripe
+ * need only one acquisition.
+ */
+@Component
+public class AccountLockManager {
+
+  @Getter
+  private final long lockTimeoutMillis;
+
+  private final ReentrantLock[] stripes;
+
+  private final TransferMetrics transferMetrics;
+
+  /**
+   * Told about every account whose lock was already held when a transfer tried to take it.
+   */
+  @Setter
+  private volatile Consumer<AccountRuntime> contentionListener;
+
+  @Autowired
+  public AccountLockManager(@Value("${accounts.lock.timeout:${server.connection-timeout}}") long lockTimeoutMillis,
+                            @Value("${accounts.lock.stripes:0}") int stripeCount,
+                            @Value("${accounts.lock.fair:true}") boolean fair,
+                            TransferMetrics transferMetrics) {
+    this.lockTimeoutMillis = lockTimeoutMillis;
+    this.transferMetrics = transferMetrics;
+
+    if (stripeCount > 0) {
+      this.stripes = new ReentrantLock[stripeCount];
+      for (int i = 0; i < stripeCount; i++) {
+        this.stripes[i] = new ReentrantLock(fair);
+      }
+    } else {
+      this.stripes = null;
+    }
+  }
+
+  /**
+   * Locks both accounts, lowest first. Either both locks are held on return or neither is.
+   *
+   * @throws AccountLockTimeoutException if the locks could not be taken within the timeout
+   */
+  public void lock(AccountRuntime first, AccountRuntime second) {
+    AccountRuntime timedOut = lockWithTimeout(first, second);
+    if (timedOut != null) {
+      throw new AccountLockTimeoutException(AmountTransferResult.lockTimeout(timedOut.getAccountId()).getMessage());
+    }
+  }
+
+  /**
+   * Same as {@link #lock(AccountRuntime, AccountRuntime)}, but reports a timeout by returning
+   * the account whose lock could not be taken instead of throwing.
+   *
+   * @return null if both locks are held
+   */
+  public AccountRuntime lockWithTimeout(AccountRuntime first, AccountRuntime second) {
+    ReentrantLock lower = lockFor(first);
+    ReentrantLock upper = lockFor(second);
+    AccountRuntime lowerAccount = first;
+    AccountRuntime upperAccount = second;
+
+    if (compare(first, second) > 0) {
+      lower = lockFor(second);
+      upper = lockFor(first);
+      lowerAccount = second;
+      upperAccount = first;
+    }
+
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(lockTimeoutMillis);
+
+    try {
+      if (!acquire(lower, lowerAccount, deadline)) {
+        return lowerAccount;
+      }
+
+      boolean upperLocked = false;
+      try {
+        upperLocked = upper == lower || acquire(upper, upperAccount, deadline);
+      } finally {
+        if (!upperLocked) {
+          lower.unlock();
+        }
+      }
+
+      return upperLocked ? null : upperAccount;
+    } finally {
+      transferMetrics.recordLockWait(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Locks both accounts if both locks are free right now, without waiting. Either both locks are
+   * held when this returns true or neither is.
+   */
+  public boolean tryLock(AccountRuntime first, AccountRuntime second) {
+    ReentrantLock lower = lockFor(first);
+    ReentrantLock upper = lockFor(second);
+    AccountRuntime lowerAccount = first;
+    AccountRuntime upperAccount = second;
+
+    if (compare(first, second) > 0) {
+      lower = lockFor(second);
+      upper = lockFor(first);
+      lowerAccount = second;
+      upperAccount = first;
+    }
+
+    if (!lower.tryLock()) {
+      contended(lowerAccount);
+      return false;
+    }
+    if (upper != lower && !upper.tryLock()) {
+      lower.unlock();
+      contended(upperAccount);
+      return false;
+    }
+    return true;
+  }
+
+  public void unlock(AccountRuntime first, AccountRuntime second) {
+    ReentrantLock firstLock = lockFor(first);
+    ReentrantLock secondLock = lockFor(second);
+
+    secondLock.unlock();
+    if (firstLock != secondLock) {
+      firstLock.unlock();
+    }
+  }
+
+  ReentrantLock lockFor(AccountRuntime account) {
+    if (stripes == null) {
+      return account.getLock();
+    }
+    return stripes[stripeOf(account.getAccountId())];
+  }
+
+  private int compare(AccountRuntime first, AccountRuntime second) {
+    if (stripes == null) {
+      return first.getAccountId().compareTo(second.getAccountId());
+    }
+    return Integer.compare(stripeOf(first.getAccountId()), stripeOf(second.getAccountId()));
+  }
+
+  private int stripeOf(String accountId) {
+    int hash = accountId.hashCode();
+    hash ^= (hash >>> 16);
+    return (hash & Integer.MAX_VALUE) % stripes.length;
+  }
+
+  private boolean acquire(ReentrantLock lock, AccountRuntime account, long deadline) {
+    if (lock.isLocked()) {
+      contended(account);
+    }
+
+    try {
+      return lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Something went wrong. Server not able to process the request");
+    }
+  }
+
+  private void contended(AccountRuntime account) {
+    Consumer<AccountRuntime> listener = contentionListener;
+    if (listener != null) {
+      listener.accept(account);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AccountState;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes every account as one NDJSON line {@code {"accountId":..,"balance":..,"version":..}},
+ * all taken at the same {@link ConsistentCuts consistent cut}.
+ *
+ * <p>Accounts are streamed straight from the store through a small generator buffer, so memory
+ * does not grow with the number of accounts, only with the number changed while the export runs.
+ */
+@Component
+@Slf4j
+public class AccountsExporter {
+
+  private final AccountsRepository accountsRepository;
+
+  private final ConsistentCuts consistentCuts;
+
+  private final JsonFactory jsonFactory = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+  @Autowired(required = false)
+  private ShardedTransferEngine shardedTransferEngine;
+
+  @Autowired
+  public AccountsExporter(AccountsRepository accountsRepository, ConsistentCuts consistentCuts) {
+    this.accountsRepository = accountsRepository;
+    this.consistentCuts = consistentCuts;
+  }
+
+  /**
+   * @throws IllegalStateException if transfers run in sharded mode, where they always move money
+   *                               in two steps and no cut is consistent
+   */
+  public void checkAvailable() {
+    if (this.shardedTransferEngine != null) {
+      throw new IllegalStateException("A consistent export is not available in the sharded transfer mode");
+    }
+  }
+
+  /**
+   * Writes the accounts to the stream and returns how many were written.
+   */
+  public long exportAccounts(OutputStream out) throws IOException {
+    checkAvailable();
+    long startNanos = System.nanoTime();
+    long[] exported = new long[1];
+
+    ConsistentCuts.Cut cut = consistentCuts.open();
+    try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+      generator.setRootValueSeparator(null);
+
+      accountsRepository.forEachAccount((accountId, balance, version) -> {
+        AccountState state = cut.stateOf(accountId, balance, version);
+        if (state == null) {
+          return;
+        }
+        try {
+          generator.writeStartObject();
+          generator.writeStringField("accountId", accountId);
+          generator.writeNumberField("balance", state.getBalance());
+          generator.writeNumberField("version", state.getVersion());
+          generator.writeEndObject();
+          generator.writeRaw('\n');
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        exported[0]++;
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      consistentCuts.close(cut);
+    }
+
+    log.info("Exported {} accounts in {} ms, keeping {} pre-images",
+      exported[0], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), cut.getPreImageCount());
+    return exported[0];
+  }
+}
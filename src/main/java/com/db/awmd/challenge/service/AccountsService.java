@@ -1,18 +1,38 @@
 package com.db.awmd.challenge.service;
 
+import com.db.awmd.challenge.cluster.ClusterClient;
+import com.db.awmd.challenge.cluster.ClusterTopology;
+import com.db.awmd.challenge.cluster.CrossNodeTransfers;
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.AccountRuntime;
 import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.AmountTransferResult;
+import com.db.awmd.challenge.domain.FixedPointBalance;
+import com.db.awmd.challenge.domain.RemoteCreditBatch;
+import com.db.awmd.challenge.domain.RemoteCreditBatchResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.AccountDoesNotExistsException;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
+import com.db.awmd.challenge.exception.ReadOnlyReplicaException;
+import com.db.awmd.challenge.exception.TooManyPendingTransfersException;
+import com.db.awmd.challenge.journal.JournalRecord;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import com.db.awmd.challenge.replication.ReplicationFollower;
 import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.HandleAccountsRepository;
+import com.db.awmd.challenge.repository.TransferObserver;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.concurrent.TimeUnit;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.PostConstruct;
 
 @Service
 public class AccountsService {
@@ -20,64 +40,596 @@ public class AccountsService {
   @Getter
   private final AccountsRepository accountsRepository;
 
+  private final HandleAccountsRepository handleAccountsRepository;
+
   @Autowired
   @Setter
   private NotificationService notificationService;
 
-  @Value("${server.connection-timeout}")
-  private String connectionTimeout;
+  @Autowired(required = false)
+  private ShardedTransferEngine shardedTransferEngine;
+
+  @Autowired(required = false)
+  private TransferJournal transferJournal;
+
+  @Autowired(required = false)
+  private ClusterTopology clusterTopology;
+
+  @Autowired(required = false)
+  private ClusterClient clusterClient;
+
+  @Autowired(required = false)
+  private CrossNodeTransfers crossNodeTransfers;
+
+  @Autowired(required = false)
+  private ReplicationFollower replicationFollower;
+
+  private final AccountLockManager accountLockManager;
+
+  private final NotificationDispatcher notificationDispatcher;
+
+  private final BatchTransferExecutor batchTransferExecutor;
+
+  private final TransferGate transferGate;
+
+  private final TransferMetrics transferMetrics;
+
+  private final IdempotencyCache idempotencyCache;
+
+  private final HotAccountCombiner hotAccountCombiner;
+
+  private final AsyncTransferExecutor asyncTransferExecutor;
+
+  private final ConsistentCuts consistentCuts;
+
+  private final AccountAggregates accountAggregates;
+
+  private final TransactionHistory transactionHistory;
+
+  private final TransferAdmission transferAdmission;
 
   @Autowired
-  public AccountsService(AccountsRepository accountsRepository) {
+  public AccountsService(AccountsRepository accountsRepository,
+                         AccountLockManager accountLockManager,
+                         NotificationDispatcher notificationDispatcher,
+                         BatchTransferExecutor batchTransferExecutor,
+                         TransferGate transferGate,
+                         TransferMetrics transferMetrics,
+                         IdempotencyCache idempotencyCache,
+                         HotAccountCombiner hotAccountCombiner,
+                         AsyncTransferExecutor asyncTransferExecutor,
+                         ConsistentCuts consistentCuts,
+                         AccountAggregates accountAggregates,
+                         TransactionHistory transactionHistory,
+                         TransferAdmission transferAdmission) {
     this.accountsRepository = accountsRepository;
+    this.handleAccountsRepository = accountsRepository instanceof HandleAccountsRepository
+      ? (HandleAccountsRepository) accountsRepository : null;
+    this.accountLockManager = accountLockManager;
+    this.notificationDispatcher = notificationDispatcher;
+    this.batchTransferExecutor = batchTransferExecutor;
+    this.transferGate = transferGate;
+    this.transferMetrics = transferMetrics;
+    this.idempotencyCache = idempotencyCache;
+    this.hotAccountCombiner = hotAccountCombiner;
+    this.asyncTransferExecutor = asyncTransferExecutor;
+    this.consistentCuts = consistentCuts;
+    this.accountAggregates = accountAggregates;
+    this.transactionHistory = transactionHistory;
+    this.transferAdmission = transferAdmission;
+  }
+
+  @PostConstruct
+  public void checkConfiguration() {
+    if (this.shardedTransferEngine != null && this.transferJournal != null) {
+      throw new IllegalStateException("The transfer journal cannot be used with the sharded transfer mode");
+    }
+    if (this.clusterTopology != null && (this.shardedTransferEngine != null || this.handleAccountsRepository != null)) {
+      throw new IllegalStateException("Cluster mode cannot be used with the sharded transfer mode or the handle repository");
+    }
+    if (this.replicationFollower != null && (this.transferJournal != null || this.clusterTopology != null)) {
+      throw new IllegalStateException("A replication follower cannot have its own transfer journal or be a cluster node");
+    }
+  }
+
+  /**
+   * @throws ReadOnlyReplicaException if this instance is a replication follower
+   * @throws IllegalStateException    if writing the transfer journal has failed
+   */
+  public void checkWritable() {
+    if (this.replicationFollower != null) {
+      throw new ReadOnlyReplicaException("This instance is a read-only replica of " + this.replicationFollower.getPrimary());
+    }
+    if (this.transferJournal != null) {
+      this.transferJournal.checkWritable();
+    }
   }
 
   public void createAccount(Account account) {
-    this.accountsRepository.createAccount(account);
+    checkWritable();
+    if (isRemote(account.getAccountId())) {
+      this.clusterClient.createAccount(this.clusterTopology.ownerOf(account.getAccountId()), account);
+      return;
+    }
+    long journalPosition = insertAccount(account);
+
+    if (journalPosition > 0L) {
+      this.transferJournal.awaitDurable(journalPosition);
+    }
+  }
+
+  /**
+   * Creates the accounts one by one but waits for the journal only once, after the last of them.
+   *
+   * @return the reason each account could not be created, null for those that were
+   */
+  public String[] createAccounts(List<Account> accounts) {
+    checkWritable();
+    String[] failures = new String[accounts.size()];
+    long journalPosition = 0L;
+
+    for (int i = 0; i < accounts.size(); i++) {
+      if (isRemote(accounts.get(i).getAccountId())) {
+        failures[i] = "Account " + accounts.get(i).getAccountId() + " belongs to node "
+          + this.clusterTopology.ownerOf(accounts.get(i).getAccountId());
+        continue;
+      }
+      try {
+        journalPosition = Math.max(journalPosition, insertAccount(accounts.get(i)));
+      } catch (DuplicateAccountIdException | IllegalArgumentException e) {
+        failures[i] = e.getMessage();
+      }
+    }
+
+    if (journalPosition > 0L) {
+      this.transferJournal.awaitDurable(journalPosition);
+    }
+    return failures;
+  }
+
+  private long insertAccount(Account account) {
+    int epoch = this.transferGate.enter();
+    try {
+      ConsistentCuts.Cut cut = this.consistentCuts.beforeCreate(account.getAccountId());
+      boolean created = false;
+      try {
+        this.accountsRepository.createAccount(account);
+        created = true;
+      } finally {
+        this.consistentCuts.afterCreate(cut, account.getAccountId(), created);
+      }
+      this.accountAggregates.accountCreated(account.getAccountId(), account.getBalance());
+
+      if (this.transferJournal != null) {
+        return this.transferJournal.append(JournalRecord.created(account.getAccountId(), account.getBalance(), 0L));
+      }
+      return 0L;
+    } finally {
+      this.transferGate.exit(epoch);
+    }
   }
 
   public Account getAccount(String accountId) {
+    if (isRemote(accountId)) {
+      return this.clusterClient.getAccount(this.clusterTopology.ownerOf(accountId), accountId);
+    }
     return this.accountsRepository.getAccount(accountId);
   }
 
+  /**
+   * @return the account, or null if there is none
+   */
+  public Account findAccount(String accountId) {
+    if (isRemote(accountId)) {
+      try {
+        return this.clusterClient.getAccount(this.clusterTopology.ownerOf(accountId), accountId);
+      } catch (AccountDoesNotExistsException accountDoesNotExistsException) {
+        return null;
+      }
+    }
+    return this.accountsRepository.findAccount(accountId);
+  }
+
   public void amountTransfer(AmountTransferRequest amountTransferRequest) throws InsufficientAccountBalanceException {
+    throwIfRejected(tryAmountTransfer(amountTransferRequest));
+  }
 
-    AccountRuntime fromAccount = (AccountRuntime) this.accountsRepository
-                                  .getAccount(amountTransferRequest.getFromAccountId());
-    AccountRuntime toAccount = (AccountRuntime) this.accountsRepository
-                                  .getAccount(amountTransferRequest.getToAccountId());
+  /**
+   * Same as {@link #amountTransfer(AmountTransferRequest)}, but a missing account, an
+   * insufficient balance or a lock timeout is returned as the result instead of thrown. Other
+   * failures are thrown as before. A transfer refused by {@link TransferAdmission} comes back as
+   * {@link TransferStatus#OVERLOADED} before it looks up or locks anything; a retry whose outcome
+   * is remembered is answered without asking for admission.
+   */
+  public AmountTransferResult tryAmountTransfer(AmountTransferRequest amountTransferRequest) {
+    checkWritable();
+    if (amountTransferRequest.getIdempotencyKey() == null) {
+      return admittedTransfer(amountTransferRequest);
+    }
+    return this.idempotencyCache.execute(amountTransferRequest, () -> resultOf(() -> admittedTransfer(amountTransferRequest)));
+  }
 
+  private AmountTransferResult admittedTransfer(AmountTransferRequest amountTransferRequest) {
+    String fromAccountId = amountTransferRequest.getFromAccountId();
+    String toAccountId = amountTransferRequest.getToAccountId();
+    AmountTransferResult rejection = this.transferAdmission.admit(fromAccountId, toAccountId);
+    if (rejection != null) {
+      return rejection;
+    }
+
+    long start = System.nanoTime();
+    AmountTransferResult result = null;
+    try {
+      result = measuredTransfer(amountTransferRequest);
+      return result;
+    } finally {
+      this.transferAdmission.complete(fromAccountId, toAccountId, start, result == null ? TransferStatus.FAILED : result.getStatus());
+    }
+  }
+
+  /**
+   * Asynchronous variant of {@link #amountTransfer(AmountTransferRequest)}. The future completes
+   * once the transfer is applied, or exceptionally with what the synchronous variant would throw,
+   * or with {@link TooManyPendingTransfersException} when too many
+   * transfers are already in progress.
+   *
+   * <p>On the plain lock path no thread waits for a locked account. Transfers that need the
+   * journal, an idempotency key, the handle repository, another node or a hot account combiner
+   * run their blocking path on the async executor instead, which still keeps servlet threads free.
+   */
+  public CompletableFuture<Void> amountTransferAsync(AmountTransferRequest amountTransferRequest) {
+    try {
+      checkWritable();
+      if (amountTransferRequest.getIdempotencyKey() != null || this.handleAccountsRepository != null
+          || this.transferJournal != null || this.clusterTopology != null) {
+        return this.asyncTransferExecutor.submit(() -> {
+          amountTransfer(amountTransferRequest);
+          return null;
+        });
+      }
+
+      long start = System.nanoTime();
+      BigDecimal amountToTransfer = amountTransferRequest.getAmountToTransfer();
+      AccountRuntime fromAccount = (AccountRuntime) this.accountsRepository.getAccount(amountTransferRequest.getFromAccountId());
+      AccountRuntime toAccount = (AccountRuntime) this.accountsRepository.getAccount(amountTransferRequest.getToAccountId());
+
+      CompletableFuture<Void> transfer;
+      if (this.shardedTransferEngine != null) {
+        transfer = this.asyncTransferExecutor.track(() -> this.shardedTransferEngine.submit(fromAccount, toAccount, amountToTransfer));
+      } else if (this.hotAccountCombiner.isHot(fromAccount, toAccount)) {
+        transfer = this.asyncTransferExecutor.submit(() -> {
+          this.hotAccountCombiner.transfer(fromAccount, toAccount, amountToTransfer);
+          return null;
+        });
+      } else {
+        transfer = this.asyncTransferExecutor.whenLocked(fromAccount, toAccount, () -> {
+          int epoch = this.transferGate.enter();
+          try {
+            if (!transferAmount(amountTransferRequest, fromAccount, toAccount)) {
+              throw new InsufficientAccountBalanceException(
+                AmountTransferResult.insufficientBalance(fromAccount.getAccountId()).getMessage());
+            }
+          } finally {
+            this.transferGate.exit(epoch);
+          }
+        });
+      }
+
+      return transfer.whenComplete((ignored, failure) -> {
+        if (failure instanceof AccountLockTimeoutException) {
+          this.transferMetrics.lockTimedOut();
+        }
+        this.transferMetrics.recordTransfer(System.nanoTime() - start);
+        if (failure == null) {
+          this.transactionHistory.recordTransfer(fromAccount.getAccountId(), toAccount.getAccountId(), amountToTransfer);
+          notifyAboutTransfer(amountToTransfer, fromAccount, toAccount);
+        }
+      });
+    } catch (RuntimeException e) {
+      CompletableFuture<Void> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+  }
+
+  /**
+   * Business rejections come back as results whichever path raised them; only the plain lock path
+   * and the lookups produce them without an exception.
+   */
+  private AmountTransferResult measuredTransfer(AmountTransferRequest amountTransferRequest) {
+    long start = System.nanoTime();
+    AmountTransferResult result;
     try {
-      boolean isFromAccountLocked = fromAccount.getLock().tryLock(Long.valueOf(connectionTimeout), TimeUnit.MILLISECONDS);
+      result = applyTransfer(amountTransferRequest);
+    } catch (AccountDoesNotExistsException accountDoesNotExistsException) {
+      result = new AmountTransferResult(TransferStatus.ACCOUNT_NOT_FOUND, accountDoesNotExistsException.getMessage());
+    } catch (InsufficientAccountBalanceException insufficientAccountBalanceException) {
+      result = new AmountTransferResult(TransferStatus.INSUFFICIENT_BALANCE, insufficientAccountBalanceException.getMessage());
+    } catch (AccountLockTimeoutException accountLockTimeoutException) {
+      result = new AmountTransferResult(TransferStatus.LOCK_TIMEOUT, accountLockTimeoutException.getMessage());
+    } finally {
+      this.transferMetrics.recordTransfer(System.nanoTime() - start);
+    }
+    if (result.getStatus() == TransferStatus.LOCK_TIMEOUT) {
+      this.transferMetrics.lockTimedOut();
+    }
+    return result;
+  }
+
+  private AmountTransferResult applyTransfer(AmountTransferRequest amountTransferRequest) throws InsufficientAccountBalanceException {
+
+    if (this.handleAccountsRepository != null) {
+      int fromHandle = this.handleAccountsRepository.findHandle(amountTransferRequest.getFromAccountId());
+      if (fromHandle < 0) {
+        return AmountTransferResult.accountNotFound(amountTransferRequest.getFromAccountId());
+      }
+      int toHandle = this.handleAccountsRepository.findHandle(amountTransferRequest.getToAccountId());
+      if (toHandle < 0) {
+        return AmountTransferResult.accountNotFound(amountTransferRequest.getToAccountId());
+      }
+      return applyTransfer(fromHandle, toHandle, amountTransferRequest.getAmountToTransfer());
+    }
 
-      if(isFromAccountLocked){//from account is locked
-        boolean isToAccountLocked = toAccount.getLock().tryLock(Long.valueOf(connectionTimeout), TimeUnit.MILLISECONDS);
+    if (isRemote(amountTransferRequest.getFromAccountId())) {
+      this.clusterClient.transfer(this.clusterTopology.ownerOf(amountTransferRequest.getFromAccountId()), amountTransferRequest);
+      return AmountTransferResult.accepted();
+    }
 
-        if(isToAccountLocked){//to account is also locked
+    AccountRuntime fromAccount = (AccountRuntime) this.accountsRepository
+                                  .findAccount(amountTransferRequest.getFromAccountId());
+    if (fromAccount == null) {
+      return AmountTransferResult.accountNotFound(amountTransferRequest.getFromAccountId());
+    }
 
-          transferAmount(amountTransferRequest, fromAccount, toAccount);
+    if (isRemote(amountTransferRequest.getToAccountId())) {
+      this.crossNodeTransfers.transfer(fromAccount, amountTransferRequest.getToAccountId(), amountTransferRequest.getAmountToTransfer());
+      this.transactionHistory.recordDebit(fromAccount.getAccountId(), amountTransferRequest.getToAccountId(),
+                                          amountTransferRequest.getAmountToTransfer());
+      notifyAboutDebit(amountTransferRequest.getAmountToTransfer(), fromAccount, amountTransferRequest.getToAccountId());
+      return AmountTransferResult.accepted();
+    }
 
-          toAccount.getLock().unlock();
+    AccountRuntime toAccount = (AccountRuntime) this.accountsRepository
+                                  .findAccount(amountTransferRequest.getToAccountId());
+    if (toAccount == null) {
+      return AmountTransferResult.accountNotFound(amountTransferRequest.getToAccountId());
+    }
+
+    if (this.shardedTransferEngine != null) {
+      this.shardedTransferEngine.transfer(fromAccount, toAccount, amountTransferRequest.getAmountToTransfer());
+    } else if (this.hotAccountCombiner.isHot(fromAccount, toAccount)) {
+      this.hotAccountCombiner.transfer(fromAccount, toAccount, amountTransferRequest.getAmountToTransfer());
+    } else {
+      long journalPosition = 0L;
+
+      int epoch = this.transferGate.enter();
+      try {
+        AccountRuntime timedOut = this.accountLockManager.lockWithTimeout(fromAccount, toAccount);
+        if (timedOut != null) {
+          return AmountTransferResult.lockTimeout(timedOut.getAccountId());
         }
+        try {
+          // the journal may have failed while this transfer waited for the locks
+          if (this.transferJournal != null) {
+            this.transferJournal.checkWritable();
+          }
+          if (!transferAmount(amountTransferRequest, fromAccount, toAccount)) {
+            return AmountTransferResult.insufficientBalance(fromAccount.getAccountId());
+          }
 
-        fromAccount.getLock().unlock();
+          if (this.transferJournal != null) {
+            journalPosition = this.transferJournal.append(JournalRecord.transferred(amountTransferRequest.getAmountToTransfer(),
+              fromAccount.getAccountId(), fromAccount.getBalance(), fromAccount.getVersion(),
+              toAccount.getAccountId(), toAccount.getBalance(), toAccount.getVersion()));
+          }
+        } finally {
+          this.accountLockManager.unlock(fromAccount, toAccount);
+        }
+      } finally {
+        this.transferGate.exit(epoch);
+      }
+
+      if (journalPosition > 0L) {
+        this.transferJournal.awaitDurable(journalPosition);
       }
-    } catch (InterruptedException e) {
-      throw new RuntimeException("Something went wrong. Server not able to process the request");
     }
+
+    this.transactionHistory.recordTransfer(fromAccount.getAccountId(), toAccount.getAccountId(),
+                                           amountTransferRequest.getAmountToTransfer());
+    notifyAboutTransfer(amountTransferRequest.getAmountToTransfer(), fromAccount, toAccount);
+    return AmountTransferResult.accepted();
+  }
+
+  /**
+   * Applies credits sent by another node for transfers from its accounts to accounts owned here.
+   */
+  public RemoteCreditBatchResult applyCredits(RemoteCreditBatch batch) {
+    if (this.crossNodeTransfers == null) {
+      throw new IllegalStateException("Cluster mode is not enabled");
+    }
+    return this.crossNodeTransfers.applyCredits(batch, credit -> {
+      AccountRuntime toAccount = (AccountRuntime) this.accountsRepository.getAccount(credit.getToAccountId());
+      this.transactionHistory.recordCredit(credit.getFromAccountId(), toAccount.getAccountId(), credit.getAmount());
+      notifyAboutCredit(credit.getAmount(), credit.getFromAccountId(), toAccount);
+    });
+  }
+
+  /**
+   * Resolves the handle of an account so that repeated transfers can skip the id lookup. Only
+   * available when the configured repository is a {@link HandleAccountsRepository}.
+   */
+  public int getAccountHandle(String accountId) {
+    return requireHandleRepository().getHandle(accountId);
+  }
+
+  public void amountTransfer(int fromHandle, int toHandle, BigDecimal amountToTransfer) throws InsufficientAccountBalanceException {
+    checkWritable();
+    long start = System.nanoTime();
+    try {
+      throwIfRejected(applyTransfer(fromHandle, toHandle, amountToTransfer));
+    } catch (AccountLockTimeoutException accountLockTimeoutException) {
+      this.transferMetrics.lockTimedOut();
+      throw accountLockTimeoutException;
+    } finally {
+      this.transferMetrics.recordTransfer(System.nanoTime() - start);
+    }
+  }
+
+  private AmountTransferResult applyTransfer(int fromHandle, int toHandle, BigDecimal amountToTransfer) {
+    HandleAccountsRepository repository = requireHandleRepository();
+    long units = FixedPointBalance.toUnits(amountToTransfer, repository.getScale());
+
+    long[] journalPosition = new long[1];
+    // called after the change, so the pre-images for a consistent cut are derived from the new state
+    TransferObserver observer = (fromAccountId, fromUnits, fromVersion, toAccountId, toUnits, toVersion) -> {
+      this.consistentCuts.beforeChange(fromAccountId,
+        FixedPointBalance.toBigDecimal(fromUnits + units, repository.getScale()), fromVersion - 1);
+      this.consistentCuts.beforeChange(toAccountId,
+        FixedPointBalance.toBigDecimal(toUnits - units, repository.getScale()), toVersion - 1);
+
+      if (this.accountAggregates.isEnabled()) {
+        this.accountAggregates.balanceChanged(fromAccountId, FixedPointBalance.toBigDecimal(fromUnits, repository.getScale()));
+        this.accountAggregates.balanceChanged(toAccountId, FixedPointBalance.toBigDecimal(toUnits, repository.getScale()));
+      }
+
+      if (this.transferJournal != null) {
+        journalPosition[0] = this.transferJournal.append(JournalRecord.transferred(amountToTransfer,
+          fromAccountId, FixedPointBalance.toBigDecimal(fromUnits, repository.getScale()), fromVersion,
+          toAccountId, FixedPointBalance.toBigDecimal(toUnits, repository.getScale()), toVersion));
+      }
+    };
+
+    boolean transferred;
+    int epoch = this.transferGate.enter();
+    try {
+      transferred = repository.transfer(fromHandle, toHandle, units, observer);
+    } finally {
+      this.transferGate.exit(epoch);
+    }
+
+    if (!transferred) {
+      return AmountTransferResult.insufficientBalance(repository.getAccountId(fromHandle));
+    }
+
+    if (journalPosition[0] > 0L) {
+      this.transferJournal.awaitDurable(journalPosition[0]);
+    }
+
+    String fromAccountId = repository.getAccountId(fromHandle);
+    String toAccountId = repository.getAccountId(toHandle);
+    this.transactionHistory.recordTransfer(fromAccountId, toAccountId, amountToTransfer);
+    notifyAboutTransfer(amountToTransfer, repository.getAccount(fromAccountId), repository.getAccount(toAccountId));
+    return AmountTransferResult.accepted();
+  }
+
+  public List<AmountTransferResult> amountTransferBatch(List<AmountTransferRequest> amountTransferRequests) {
+    checkWritable();
+    return this.batchTransferExecutor.execute(amountTransferRequests, this::amountTransferForResult);
+  }
+
+  /**
+   * Same as {@link #amountTransfer(AmountTransferRequest)}, but reports a rejection as a result
+   * instead of an exception.
+   */
+  public AmountTransferResult amountTransferForResult(AmountTransferRequest amountTransferRequest) {
+    return resultOf(() -> tryAmountTransfer(amountTransferRequest));
   }
 
-  private void transferAmount(AmountTransferRequest amountTransferRequest, AccountRuntime fromAccount, AccountRuntime toAccount) throws InsufficientAccountBalanceException {
+  private static AmountTransferResult resultOf(Transfer transfer) {
+    try {
+      return transfer.run();
+    } catch (AccountDoesNotExistsException accountDoesNotExistsException) {
+      return new AmountTransferResult(TransferStatus.ACCOUNT_NOT_FOUND, accountDoesNotExistsException.getMessage());
+    } catch (InsufficientAccountBalanceException insufficientAccountBalanceException) {
+      return new AmountTransferResult(TransferStatus.INSUFFICIENT_BALANCE, insufficientAccountBalanceException.getMessage());
+    } catch (AccountLockTimeoutException accountLockTimeoutException) {
+      return new AmountTransferResult(TransferStatus.LOCK_TIMEOUT, accountLockTimeoutException.getMessage());
+    } catch (IllegalArgumentException illegalArgumentException) {
+      return new AmountTransferResult(TransferStatus.INVALID_REQUEST, illegalArgumentException.getMessage());
+    } catch (RuntimeException exe) {
+      return new AmountTransferResult(TransferStatus.FAILED, exe.getMessage());
+    }
+  }
+
+  /**
+   * Turns a remembered outcome back into the exception the transfer originally ended with.
+   */
+  private static void throwIfRejected(AmountTransferResult result) throws InsufficientAccountBalanceException {
+    switch (result.getStatus()) {
+      case ACCEPTED:
+        return;
+      case ACCOUNT_NOT_FOUND:
+        throw new AccountDoesNotExistsException(result.getMessage());
+      case INSUFFICIENT_BALANCE:
+        throw new InsufficientAccountBalanceException(result.getMessage());
+      case LOCK_TIMEOUT:
+        throw new AccountLockTimeoutException(result.getMessage());
+      case INVALID_REQUEST:
+        throw new IllegalArgumentException(result.getMessage());
+      case OVERLOADED:
+        throw new TooManyPendingTransfersException(result.getMessage());
+      default:
+        throw new RuntimeException(result.getMessage());
+    }
+  }
+
+  /**
+   * @return false if the source balance does not cover the amount
+   */
+  private boolean transferAmount(AmountTransferRequest amountTransferRequest, AccountRuntime fromAccount, AccountRuntime toAccount) {
     BigDecimal amountToTransfer = amountTransferRequest.getAmountToTransfer();
+    this.consistentCuts.beforeChange(fromAccount, toAccount);
 
-    if ((fromAccount.getBalance().compareTo(amountToTransfer)) >= 0) {
-      fromAccount.setBalance(fromAccount.getBalance().subtract(amountToTransfer));
-      toAccount.setBalance(toAccount.getBalance().add(amountToTransfer));
+    if (!fromAccount.transferTo(toAccount, amountToTransfer)) {
+      return false;
+    }
+    this.accountAggregates.balanceChanged(fromAccount);
+    this.accountAggregates.balanceChanged(toAccount);
+    return true;
+  }
 
-      notificationService.notifyAboutTransfer(fromAccount, "Amount Debited: " + amountToTransfer + ". You have successfully transferred amount: " + amountToTransfer + " to AccountID: " + toAccount.getAccountId());
-      notificationService.notifyAboutTransfer(toAccount, "Amount Credited: " + amountToTransfer + ". You have received amount: " + amountToTransfer + " from AccountID: " + fromAccount.getAccountId());
-    } else {
-      throw new InsufficientAccountBalanceException("Insufficient account balance in accountId:" + fromAccount.getAccountId() + "to perform this transaction");
+  private HandleAccountsRepository requireHandleRepository() {
+    if (this.handleAccountsRepository == null) {
+      throw new UnsupportedOperationException("Account handles are not supported by the configured repository");
     }
+    return this.handleAccountsRepository;
+  }
+
+  private void notifyAboutTransfer(BigDecimal amountToTransfer, Account fromAccount, Account toAccount) {
+    NotificationService target = this.notificationService;
+    long start = System.nanoTime();
+
+    notificationDispatcher.dispatch(target, fromAccount, () -> "Amount Debited: " + amountToTransfer + ". You have successfully transferred amount: " + amountToTransfer + " to AccountID: " + toAccount.getAccountId());
+    notificationDispatcher.dispatch(target, toAccount, () -> "Amount Credited: " + amountToTransfer + ". You have received amount: " + amountToTransfer + " from AccountID: " + fromAccount.getAccountId());
+
+    this.transferMetrics.recordNotification(System.nanoTime() - start);
+  }
+
+  private void notifyAboutDebit(BigDecimal amountToTransfer, Account fromAccount, String toAccountId) {
+    NotificationService target = this.notificationService;
+    long start = System.nanoTime();
+
+    notificationDispatcher.dispatch(target, fromAccount, () -> "Amount Debited: " + amountToTransfer + ". You have successfully transferred amount: " + amountToTransfer + " to AccountID: " + toAccountId);
+
+    this.transferMetrics.recordNotification(System.nanoTime() - start);
+  }
+
+  private void notifyAboutCredit(BigDecimal amountToTransfer, String fromAccountId, Account toAccount) {
+    NotificationService target = this.notificationService;
+    long start = System.nanoTime();
+
+    notificationDispatcher.dispatch(target, toAccount, () -> "Amount Credited: " + amountToTransfer + ". You have received amount: " + amountToTransfer + " from AccountID: " + fromAccountId);
+
+    this.transferMetrics.recordNotification(System.nanoTime() - start);
+  }
+
+  private boolean isRemote(String accountId) {
+    return this.clusterTopology != null && !this.clusterTopology.isLocal(accountId);
+  }
+
+  @FunctionalInterface
+  private interface Transfer {
+
+    AmountTransferResult run() throws InsufficientAccountBalanceException;
   }
 }
@@ -0,0 +1,175 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AccountRuntime;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
+import com.db.awmd.challenge.exception.TooManyPendingTransfersException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs transfers for the asynchronous API without parking a thread while an account is locked.
+ *
+ * <p>{@link #whenLocked} tries to take both account locks without waiting. If either is held,
+ * the attempt is rescheduled after a short, growing back-off instead of blocking, so a burst of
+ * transfers on one hot account occupies scheduler queue entries rather than threads. The pool
+ * size ({@code accounts.async.threads}) therefore only has to cover the work done under the
+ * locks. At most {@code accounts.async.max-pending} transfers may be in progress; beyond that new
+ * ones are refused straight away.
+ */
+@Component
+public class AsyncTransferExecutor {
+
+  private static final long INITIAL_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+  private final ScheduledThreadPoolExecutor executor;
+
+  private final Semaphore pending;
+
+  private final int maxPending;
+
+  private final AccountLockManager accountLockManager;
+
+  @Autowired
+  public AsyncTransferExecutor(AccountLockManager accountLockManager,
+                               @Value("${accounts.async.threads:0}") int threads,
+                               @Value("${accounts.async.max-pending:10000}") int maxPending) {
+    this.accountLockManager = accountLockManager;
+    this.maxPending = maxPending;
+    this.pending = new Semaphore(maxPending);
+
+    AtomicInteger threadCount = new AtomicInteger();
+    this.executor = new ScheduledThreadPoolExecutor(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+      runnable -> {
+        Thread thread = new Thread(runnable, "async-transfer-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    this.executor.setRemoveOnCancelPolicy(true);
+  }
+
+  /**
+   * Runs the action once both accounts are locked, then unlocks them. The future fails with
+   * {@link AccountLockTimeoutException} if the locks could not be taken within the lock timeout.
+   *
+   * @throws TooManyPendingTransfersException if {@code accounts.async.max-pending} transfers are already in progress
+   */
+  public CompletableFuture<Void> whenLocked(AccountRuntime fromAccount, AccountRuntime toAccount, LockedAction action) {
+    CompletableFuture<Void> completion = admit();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(accountLockManager.getLockTimeoutMillis());
+    schedule(() -> attempt(fromAccount, toAccount, action, completion, deadline, INITIAL_BACKOFF_NANOS), 0L, completion);
+    return completion;
+  }
+
+  /**
+   * Runs a transfer that may block, for the cases the lock-free retry cannot cover.
+   *
+   * @throws TooManyPendingTransfersException if {@code accounts.async.max-pending} transfers are already in progress
+   */
+  public <T> CompletableFuture<T> submit(Callable<T> transfer) {
+    CompletableFuture<T> completion = admit();
+    schedule(() -> {
+      try {
+        completion.complete(transfer.call());
+      } catch (Exception e) {
+        completion.completeExceptionally(e);
+      }
+    }, 0L, completion);
+    return completion;
+  }
+
+  /**
+   * Counts a transfer that completes elsewhere, e.g. on a shard, against the pending limit.
+   *
+   * @throws TooManyPendingTransfersException if {@code accounts.async.max-pending} transfers are already in progress
+   */
+  public <T> CompletableFuture<T> track(Callable<CompletableFuture<T>> transfer) {
+    CompletableFuture<T> completion = admit();
+    try {
+      transfer.call().whenComplete((result, failure) -> {
+        if (failure != null) {
+          completion.completeExceptionally(failure);
+        } else {
+          completion.complete(result);
+        }
+      });
+    } catch (Exception e) {
+      completion.completeExceptionally(e);
+    }
+    return completion;
+  }
+
+  public int getPending() {
+    return maxPending - pending.availablePermits();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private <T> CompletableFuture<T> admit() {
+    if (!pending.tryAcquire()) {
+      throw new TooManyPendingTransfersException(
+        "Too many transfers in progress. Please retry the transfer");
+    }
+    CompletableFuture<T> completion = new CompletableFuture<>();
+    completion.whenComplete((result, failure) -> pending.release());
+    return completion;
+  }
+
+  private void attempt(AccountRuntime fromAccount, AccountRuntime toAccount, LockedAction action,
+                       CompletableFuture<Void> completion, long deadline, long backoffNanos) {
+    if (!accountLockManager.tryLock(fromAccount, toAccount)) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) {
+        completion.completeExceptionally(new AccountLockTimeoutException(
+          "Timed out waiting for account id " + fromAccount.getAccountId() + " or " + toAccount.getAccountId()
+            + ". Please retry the transfer"));
+        return;
+      }
+      long delay = Math.min(backoffNanos, remaining);
+      schedule(() -> attempt(fromAccount, toAccount, action, completion, deadline, Math.min(backoffNanos * 2, MAX_BACKOFF_NANOS)),
+        delay, completion);
+      return;
+    }
+
+    try {
+      action.run();
+    } catch (InsufficientAccountBalanceException | RuntimeException e) {
+      completion.completeExceptionally(e);
+      return;
+    } finally {
+      accountLockManager.unlock(fromAccount, toAccount);
+    }
+    completion.complete(null);
+  }
+
+  private void schedule(Runnable task, long delayNanos, CompletableFuture<?> completion) {
+    try {
+      executor.schedule(task, delayNanos, TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      completion.completeExceptionally(new IllegalStateException("The transfer executor is shut down"));
+    }
+  }
+
+  /**
+   * Work done while both account locks are held.
+   */
+  @FunctionalInterface
+  public interface LockedAction {
+
+    void run() throws InsufficientAccountBalanceException;
+  }
+}
@@ -0,0 +1,78 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.AmountTransferResult;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs a batch of transfers with as much parallelism as the accounts involved allow.
+ *
+ * <p>The batch is split into waves: a transfer goes into the wave after the last one that touched
+ * either of its accounts. Transfers inside a wave share no account, so a wave runs in parallel on
+ * the fork-join pool without any lock contention between its members, and every account still
+ * sees its transfers in the order they appear in the batch.
+ */
+@Component
+public class BatchTransferExecutor {
+
+  private final ForkJoinPool pool;
+
+  @Autowired
+  public BatchTransferExecutor(@Value("${accounts.batch.parallelism:0}") int parallelism) {
+    this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+  }
+
+  public List<AmountTransferResult> execute(List<AmountTransferRequest> requests,
+                                            Function<AmountTransferRequest, AmountTransferResult> transfer) {
+    AmountTransferResult[] results = new AmountTransferResult[requests.size()];
+
+    for (List<Integer> wave : waves(requests)) {
+      if (wave.size() == 1) {
+        int index = wave.get(0);
+        results[index] = transfer.apply(requests.get(index));
+      } else {
+        pool.submit(() -> wave.parallelStream()
+          .forEach(index -> results[index] = transfer.apply(requests.get(index))))
+          .join();
+      }
+    }
+
+    return Arrays.asList(results);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    pool.shutdown();
+  }
+
+  private List<List<Integer>> waves(List<AmountTransferRequest> requests) {
+    Map<String, Integer> lastWave = new HashMap<>();
+    List<List<Integer>> waves = new ArrayList<>();
+
+    for (int index = 0; index < requests.size(); index++) {
+      AmountTransferRequest request = requests.get(index);
+      int wave = Math.max(lastWave.getOrDefault(request.getFromAccountId(), -1),
+                          lastWave.getOrDefault(request.getToAccountId(), -1)) + 1;
+
+      if (wave == waves.size()) {
+        waves.add(new ArrayList<>());
+      }
+      waves.get(wave).add(index);
+
+      lastWave.put(request.getFromAccountId(), wave);
+      lastWave.put(request.getToAccountId(), wave);
+    }
+
+    return waves;
+  }
+}
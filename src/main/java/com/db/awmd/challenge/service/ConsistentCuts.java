@@ -0,0 +1,158 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AccountRuntime;
+import com.db.awmd.challenge.domain.AccountState;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consistent cuts of the account store, read while transfers keep running.
+ *
+ * <p>Opening a cut first stops new transfers from being split into a debit and a credit step
+ * (see {@link HotAccountCombiner}) and waits for split transfers already running, then publishes
+ * the cut and waits for every change that started before it. From then on each change records
+ * the state an account had before the first change after the cut, under the account's lock, so
+ * a reader takes an account's pre-image if there is one and its current state otherwise. Only
+ * accounts changed during the scan are copied; nothing is blocked besides the two short waits.
+ *
+ * <p>Changes must run inside a {@link TransferGate} bracket and call {@link #beforeChange} while
+ * holding the locks of every account they modify. Cuts are taken one at a time.
+ */
+@Component
+public class ConsistentCuts {
+
+  private final TransferGate transferGate;
+
+  private final Semaphore cuts = new Semaphore(1);
+
+  private volatile boolean inProgress;
+
+  private volatile Cut active;
+
+  @Autowired
+  public ConsistentCuts(TransferGate transferGate) {
+    this.transferGate = transferGate;
+  }
+
+  /**
+   * Waits for any other cut to be closed and opens a new one.
+   */
+  public Cut open() {
+    cuts.acquireUninterruptibly();
+    try {
+      inProgress = true;
+      transferGate.advance();
+
+      Cut cut = new Cut();
+      active = cut;
+      transferGate.advance();
+      return cut;
+    } catch (RuntimeException e) {
+      inProgress = false;
+      active = null;
+      cuts.release();
+      throw e;
+    }
+  }
+
+  public void close(Cut cut) {
+    if (active == cut) {
+      active = null;
+      inProgress = false;
+      cuts.release();
+    }
+  }
+
+  /**
+   * Whether a cut is being opened or read. Transfers must then change both accounts in one step.
+   */
+  public boolean isInProgress() {
+    return inProgress;
+  }
+
+  /**
+   * Records the accounts' pre-images for an open cut. The caller holds the locks of both accounts.
+   */
+  public void beforeChange(AccountRuntime fromAccount, AccountRuntime toAccount) {
+    Cut cut = active;
+    if (cut != null) {
+      cut.preImages.putIfAbsent(fromAccount.getAccountId(), fromAccount.getState());
+      cut.preImages.putIfAbsent(toAccount.getAccountId(), toAccount.getState());
+    }
+  }
+
+  /**
+   * Records an account's pre-image for an open cut. The caller holds the account's lock.
+   */
+  public void beforeChange(String accountId, BigDecimal balance, long version) {
+    Cut cut = active;
+    if (cut != null) {
+      cut.preImages.putIfAbsent(accountId, new AccountState(balance, version));
+    }
+  }
+
+  /**
+   * Marks an account about to be created so that an open cut leaves it out. Must be followed by
+   * {@link #afterCreate}.
+   *
+   * @return the open cut, if any
+   */
+  public Cut beforeCreate(String accountId) {
+    Cut cut = active;
+    if (cut != null) {
+      cut.creations.putIfAbsent(accountId, Boolean.FALSE);
+    }
+    return cut;
+  }
+
+  public void afterCreate(Cut cut, String accountId, boolean created) {
+    if (cut == null) {
+      return;
+    }
+    if (created) {
+      cut.creations.put(accountId, Boolean.TRUE);
+    } else {
+      // a failed duplicate must not hide the account that already exists
+      cut.creations.remove(accountId, Boolean.FALSE);
+    }
+  }
+
+  public static final class Cut {
+
+    private final Map<String, AccountState> preImages = new ConcurrentHashMap<>();
+
+    // FALSE while the creation is in progress, TRUE once the account exists
+    private final Map<String, Boolean> creations = new ConcurrentHashMap<>();
+
+    private Cut() {
+    }
+
+    /**
+     * The state the account had at the cut, given the state just read from the store, or null
+     * if the account was created after the cut.
+     */
+    public AccountState stateOf(String accountId, BigDecimal balance, long version) {
+      Boolean created;
+      while ((created = creations.get(accountId)) == Boolean.FALSE) {
+        Thread.yield();
+      }
+      if (created != null) {
+        return null;
+      }
+
+      AccountState preImage = preImages.get(accountId);
+      return preImage != null ? preImage : new AccountState(balance, version);
+    }
+
+    /**
+     * Number of accounts whose pre-image had to be kept.
+     */
+    public int getPreImageCount() {
+      return preImages.size();
+    }
+  }
+}
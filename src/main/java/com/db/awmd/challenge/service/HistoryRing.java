@@ -0,0 +1,193 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.TransactionEntry;
+import com.db.awmd.challenge.domain.TransactionPage;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The latest transactions of one account, kept in parallel primitive arrays used as a ring.
+ *
+ * <p>The arrays start small and double up to the retention, so quiet accounts stay cheap. Every
+ * entry recorded gets the next index of the account; entry {@code i} lives in slot
+ * {@code i % capacity} and indexes double as paging cursors. Writers take the write lock, which
+ * is rarely contended because transfers of the same account seldom finish at the same moment.
+ * Readers copy a page under an optimistic read and only take the read lock when a write
+ * interfered with it.
+ */
+final class HistoryRing {
+
+  private static final int INITIAL_CAPACITY = 8;
+
+  private final StampedLock lock = new StampedLock();
+
+  private Slots slots;
+
+  // entries ever recorded, the next entry's index
+  private long count;
+
+  private int retention;
+
+  HistoryRing(int retention) {
+    this.retention = retention;
+    this.slots = new Slots(Math.min(INITIAL_CAPACITY, retention), 0L);
+  }
+
+  void record(long transactionId, long timestamp, String counterpartyAccountId, long unscaledAmount, int scale) {
+    long stamp = lock.writeLock();
+    try {
+      if (retention == 0) {
+        return;
+      }
+      long index = count;
+      Slots current = slots;
+      if (index - current.validFrom(index) >= current.capacity && current.capacity < retention) {
+        current = resize(current, Math.min(retention, Math.max(INITIAL_CAPACITY, current.capacity * 2)), index);
+      }
+
+      int slot = (int) (index % current.capacity);
+      current.transactionIds[slot] = transactionId;
+      current.timestamps[slot] = timestamp;
+      current.counterparties[slot] = counterpartyAccountId;
+      current.amounts[slot] = unscaledAmount;
+      current.scales[slot] = (byte) scale;
+      count = index + 1;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  void setRetention(int retention) {
+    long stamp = lock.writeLock();
+    try {
+      this.retention = retention;
+      if (slots.capacity > retention) {
+        resize(slots, retention, count);
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  int getRetention() {
+    long stamp = lock.readLock();
+    try {
+      return retention;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Bytes held by the arrays, excluding their headers.
+   */
+  long retainedBytes() {
+    long stamp = lock.readLock();
+    try {
+      return (long) slots.transactionIds.length * Long.BYTES
+        + (long) slots.timestamps.length * Long.BYTES
+        + (long) slots.counterparties.length * TransactionHistory.REFERENCE_BYTES
+        + (long) slots.amounts.length * Long.BYTES
+        + slots.scales.length;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Up to {@code limit} entries with an index below {@code before}, newest first, copied straight
+   * from the arrays.
+   */
+  TransactionPage read(long before, int limit) {
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0L) {
+      TransactionPage page = readPage(before, limit);
+      if (lock.validate(stamp)) {
+        return page;
+      }
+    }
+
+    stamp = lock.readLock();
+    try {
+      return readPage(before, limit);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  // may run under an optimistic read, so it must not fail on fields changing underneath it
+  private TransactionPage readPage(long before, int limit) {
+    long recorded = count;
+    Slots current = slots;
+    long oldest = current.validFrom(recorded);
+    long end = Math.min(before, recorded);
+    long start = Math.max(end - limit, oldest);
+
+    List<TransactionEntry> entries = new ArrayList<>((int) Math.max(0L, end - start));
+    for (long i = end - 1; i >= start; i--) {
+      entries.add(current.entry(i));
+    }
+    String nextCursor = !entries.isEmpty() && start > oldest ? Long.toString(start) : null;
+    return new TransactionPage(entries, nextCursor);
+  }
+
+  private Slots resize(Slots current, int capacity, long recorded) {
+    long from = Math.max(current.validFrom(recorded), recorded - capacity);
+    Slots resized = new Slots(capacity, from);
+    for (long i = from; i < recorded; i++) {
+      resized.copy(i, current);
+    }
+    slots = resized;
+    return resized;
+  }
+
+  private static final class Slots {
+
+    private final int capacity;
+
+    // lowest index these arrays ever held, older entries were dropped when they were created
+    private final long first;
+
+    private final long[] transactionIds;
+
+    private final long[] timestamps;
+
+    private final String[] counterparties;
+
+    private final long[] amounts;
+
+    private final byte[] scales;
+
+    private Slots(int capacity, long first) {
+      this.capacity = capacity;
+      this.first = first;
+      this.transactionIds = new long[capacity];
+      this.timestamps = new long[capacity];
+      this.counterparties = new String[capacity];
+      this.amounts = new long[capacity];
+      this.scales = new byte[capacity];
+    }
+
+    private long validFrom(long recorded) {
+      return Math.max(first, recorded - capacity);
+    }
+
+    private TransactionEntry entry(long index) {
+      int slot = (int) (index % capacity);
+      return new TransactionEntry(transactionIds[slot], timestamps[slot], counterparties[slot],
+        BigDecimal.valueOf(amounts[slot], scales[slot]));
+    }
+
+    private void copy(long index, Slots from) {
+      int slot = (int) (index % capacity);
+      int fromSlot = (int) (index % from.capacity);
+      transactionIds[slot] = from.transactionIds[fromSlot];
+      timestamps[slot] = from.timestamps[fromSlot];
+      counterparties[slot] = from.counterparties[fromSlot];
+      amounts[slot] = from.amounts[fromSlot];
+      scales[slot] = from.scales[fromSlot];
+    }
+  }
+}
@@ -0,0 +1,357 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AccountRuntime;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
+import com.db.awmd.challenge.journal.TransferJournal;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Detects accounts whose locks are contended and applies their debits and credits by flat
+ * combining instead of one lock acquisition per transfer.
+ *
+ * <p>{@link AccountLockManager} reports every lock it finds already held. When one account (or
+ * rather its slot in a small hash-indexed counter table) sees {@code accounts.hot-accounts.threshold}
+ * contended acquisitions within one {@code accounts.hot-accounts.window}, it becomes hot. Transfers
+ * touching a hot account are applied in two steps like in the sharded engine: the source is
+ * debited, then the target credited, each step under that account's lock alone. A step on a hot
+ * account is queued on its combiner; whichever thread gets the lock applies every queued step in
+ * one pass and wakes their callers. When the passes over a window average fewer than two steps,
+ * contention is gone and the account goes back to normal locking.
+ *
+ * <p>Between the two steps the amount is in neither account, so a reader can briefly see the
+ * total short by in-flight transfers; nothing is lost. Because a transfer is then no longer
+ * one atomic change of both accounts, combining is off while the transfer journal is enabled,
+ * and while a {@link ConsistentCuts consistent cut} is in progress transfers are applied in one
+ * step under both locks instead.
+ */
+@Component
+@Slf4j
+public class HotAccountCombiner implements PublicMetrics {
+
+  private static final int CONTENTION_SLOTS = 4096;
+
+  private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+  private final AccountLockManager accountLockManager;
+
+  private final TransferGate transferGate;
+
+  private final ConsistentCuts consistentCuts;
+
+  private final AccountAggregates accountAggregates;
+
+  private final boolean enabled;
+
+  private final int threshold;
+
+  private final long windowNanos;
+
+  private final int maxBatchSize;
+
+  @Autowired(required = false)
+  private TransferJournal transferJournal;
+
+  private final Map<String, Combiner> hotAccounts = new ConcurrentHashMap<>();
+
+  private final AtomicIntegerArray contention = new AtomicIntegerArray(CONTENTION_SLOTS);
+
+  private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+  private final LongAdder promotions = new LongAdder();
+
+  private final LongAdder demotions = new LongAdder();
+
+  private final LongAdder combinedSteps = new LongAdder();
+
+  private final LongAdder combiningPasses = new LongAdder();
+
+  @Autowired
+  public HotAccountCombiner(AccountLockManager accountLockManager,
+                            TransferGate transferGate,
+                            ConsistentCuts consistentCuts,
+                            AccountAggregates accountAggregates,
+                            @Value("${accounts.hot-accounts.enabled:true}") boolean enabled,
+                            @Value("${accounts.hot-accounts.threshold:64}") int threshold,
+                            @Value("${accounts.hot-accounts.window:100}") long windowMillis,
+                            @Value("${accounts.hot-accounts.max-batch-size:1024}") int maxBatchSize) {
+    this.accountLockManager = accountLockManager;
+    this.transferGate = transferGate;
+    this.consistentCuts = consistentCuts;
+    this.accountAggregates = accountAggregates;
+    this.enabled = enabled;
+    this.threshold = threshold;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+    this.maxBatchSize = maxBatchSize;
+  }
+
+  @PostConstruct
+  public void registerWithLockManager() {
+    if (!enabled) {
+      return;
+    }
+    if (transferJournal != null) {
+      log.info("Hot account combining is off because the transfer journal is enabled");
+      return;
+    }
+    accountLockManager.setContentionListener(this::contended);
+  }
+
+  /**
+   * Whether a transfer between the accounts has to go through {@link #transfer}.
+   */
+  public boolean isHot(AccountRuntime fromAccount, AccountRuntime toAccount) {
+    return !hotAccounts.isEmpty() && !consistentCuts.isInProgress()
+      && (combinerFor(fromAccount) != null || combinerFor(toAccount) != null);
+  }
+
+  /**
+   * Debits the source, then credits the target, combining each step with others queued on the
+   * same account if it is hot.
+   */
+  public void transfer(AccountRuntime fromAccount, AccountRuntime toAccount, BigDecimal amountToTransfer)
+    throws InsufficientAccountBalanceException {
+    int epoch = transferGate.enter();
+    try {
+      if (consistentCuts.isInProgress()) {
+        transferInOneStep(fromAccount, toAccount, amountToTransfer);
+        return;
+      }
+
+      if (!apply(fromAccount, amountToTransfer, true, true)) {
+        throw insufficientBalance(fromAccount);
+      }
+
+      try {
+        apply(toAccount, amountToTransfer, false, true);
+      } catch (RuntimeException e) {
+        // the credit did not happen, so the debited amount must go back without any timeout
+        apply(fromAccount, amountToTransfer, false, false);
+        throw e;
+      }
+    } finally {
+      transferGate.exit(epoch);
+    }
+  }
+
+  public int getHotAccountCount() {
+    return hotAccounts.size();
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    metrics.add(new Metric<>("accounts.hot.count", hotAccounts.size()));
+    metrics.add(new Metric<>("accounts.hot.promotions", promotions.sum()));
+    metrics.add(new Metric<>("accounts.hot.demotions", demotions.sum()));
+    metrics.add(new Metric<>("accounts.hot.combined-steps", combinedSteps.sum()));
+    metrics.add(new Metric<>("accounts.hot.combining-passes", combiningPasses.sum()));
+    return metrics;
+  }
+
+  private void transferInOneStep(AccountRuntime fromAccount, AccountRuntime toAccount, BigDecimal amountToTransfer)
+    throws InsufficientAccountBalanceException {
+    accountLockManager.lock(fromAccount, toAccount);
+    try {
+      consistentCuts.beforeChange(fromAccount, toAccount);
+      if (!fromAccount.transferTo(toAccount, amountToTransfer)) {
+        throw insufficientBalance(fromAccount);
+      }
+      accountAggregates.balanceChanged(fromAccount);
+      accountAggregates.balanceChanged(toAccount);
+    } finally {
+      accountLockManager.unlock(fromAccount, toAccount);
+    }
+  }
+
+  private static InsufficientAccountBalanceException insufficientBalance(AccountRuntime fromAccount) {
+    return new InsufficientAccountBalanceException(
+      "Insufficient account balance in accountId:" + fromAccount.getAccountId() + "to perform this transaction");
+  }
+
+  void contended(AccountRuntime account) {
+    long now = System.nanoTime();
+    long start = windowStart.get();
+    if (now - start > windowNanos && windowStart.compareAndSet(start, now)) {
+      for (int i = 0; i < CONTENTION_SLOTS; i++) {
+        contention.set(i, 0);
+      }
+    }
+
+    int hash = account.getAccountId().hashCode();
+    hash ^= (hash >>> 16);
+    if (contention.incrementAndGet((hash & Integer.MAX_VALUE) % CONTENTION_SLOTS) == threshold
+        && hotAccounts.putIfAbsent(account.getAccountId(), new Combiner(account)) == null) {
+      promotions.increment();
+      log.info("Account id {} is contended, combining its transfers", account.getAccountId());
+    }
+  }
+
+  /**
+   * Applies one step to the account, through its combiner if it is hot.
+   *
+   * @return false if a debit was refused for insufficient balance
+   */
+  private boolean apply(AccountRuntime account, BigDecimal amount, boolean debit, boolean timed) {
+    long deadline = timed ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(accountLockManager.getLockTimeoutMillis()) : 0L;
+
+    Combiner combiner = combinerFor(account);
+    if (combiner != null) {
+      return combiner.apply(new Step(amount, debit), timed, deadline);
+    }
+
+    if (timed) {
+      accountLockManager.lock(account, account);
+    } else {
+      accountLockManager.lockFor(account).lock();
+    }
+    try {
+      return applyStep(account, amount, debit);
+    } finally {
+      accountLockManager.lockFor(account).unlock();
+    }
+  }
+
+  private Combiner combinerFor(AccountRuntime account) {
+    Combiner combiner = hotAccounts.get(account.getAccountId());
+    if (combiner != null && combiner.account != account) {
+      // the account was removed and created again since it became hot
+      hotAccounts.remove(account.getAccountId(), combiner);
+      return null;
+    }
+    return combiner;
+  }
+
+  private boolean applyStep(AccountRuntime account, BigDecimal amount, boolean debit) {
+    if (debit) {
+      if (!account.withdraw(amount)) {
+        return false;
+      }
+    } else {
+      account.deposit(amount);
+    }
+    accountAggregates.balanceChanged(account);
+    return true;
+  }
+
+  private static final class Step {
+
+    private final BigDecimal amount;
+
+    private final boolean debit;
+
+    private final Thread waiter = Thread.currentThread();
+
+    private boolean applied;
+
+    private RuntimeException failure;
+
+    // written last by the combining thread, publishes applied and failure
+    private volatile boolean done;
+
+    private Step(BigDecimal amount, boolean debit) {
+      this.amount = amount;
+      this.debit = debit;
+    }
+  }
+
+  private final class Combiner {
+
+    private final AccountRuntime account;
+
+    private final ReentrantLock lock;
+
+    private final ConcurrentLinkedQueue<Step> queue = new ConcurrentLinkedQueue<>();
+
+    // guarded by lock
+    private long passStart = System.nanoTime();
+
+    private long passes;
+
+    private long steps;
+
+    private Combiner(AccountRuntime account) {
+      this.account = account;
+      this.lock = accountLockManager.lockFor(account);
+    }
+
+    private boolean apply(Step step, boolean timed, long deadline) {
+      queue.add(step);
+
+      while (!step.done) {
+        if (lock.tryLock()) {
+          try {
+            combine();
+          } finally {
+            lock.unlock();
+          }
+          continue;
+        }
+
+        if (timed && System.nanoTime() - deadline >= 0 && queue.remove(step)) {
+          throw new AccountLockTimeoutException(
+            "Timed out waiting for account id " + account.getAccountId() + ". Please retry the transfer");
+        }
+        LockSupport.parkNanos(this, PARK_NANOS);
+      }
+
+      if (step.failure != null) {
+        throw step.failure;
+      }
+      return step.applied;
+    }
+
+    private void combine() {
+      int applied = 0;
+      Step step;
+      while (applied < maxBatchSize && (step = queue.poll()) != null) {
+        try {
+          step.applied = applyStep(account, step.amount, step.debit);
+        } catch (RuntimeException e) {
+          step.failure = e;
+        }
+        step.done = true;
+        LockSupport.unpark(step.waiter);
+        applied++;
+      }
+
+      if (applied == 0) {
+        return;
+      }
+      combinedSteps.add(applied);
+      combiningPasses.increment();
+      steps += applied;
+      passes++;
+
+      long now = System.nanoTime();
+      if (now - passStart > windowNanos) {
+        if (steps < passes * 2 && hotAccounts.remove(account.getAccountId(), this)) {
+          demotions.increment();
+          log.info("Account id {} is no longer contended", account.getAccountId());
+        }
+        passStart = now;
+        passes = 0;
+        steps = 0;
+      }
+    }
+  }
+}
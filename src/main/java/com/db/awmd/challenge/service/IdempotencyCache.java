@@ -0,0 +1,205 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.AmountTransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remembers the outcome of transfers carrying an idempotency key, so that a retried request gets
+ * the original outcome without taking any account lock.
+ *
+ * <p>Keys are hashed onto segments, each a small insertion-ordered map behind its own monitor.
+ * An entry is dropped once it is older than {@code accounts.idempotency.ttl} seconds, or when its
+ * segment is full and it is the oldest, so the cache never holds more than
+ * {@code accounts.idempotency.max-entries} keys. A retry arriving while the first attempt is
+ * still running waits for its outcome.
+ *
+ * <p>Only final outcomes are kept. A lock timeout or a refusal by {@link TransferAdmission}
+ * leaves no effect behind, so its key is released and the next retry transfers again. An
+ * unexpected failure is kept like a final outcome: it may come after the balances changed, as
+ * when the journal fails to write the transfer, so transferring again could apply it twice.
+ */
+@Component
+public class IdempotencyCache implements PublicMetrics {
+
+  private static final int MAX_SEGMENTS = 64;
+
+  private final Segment[] segments;
+
+  private final long ttlNanos;
+
+  private final LongAdder hits = new LongAdder();
+
+  private final LongAdder misses = new LongAdder();
+
+  private final LongAdder evictions = new LongAdder();
+
+  private final LongAdder expirations = new LongAdder();
+
+  @Autowired
+  public IdempotencyCache(@Value("${accounts.idempotency.max-entries:100000}") int maxEntries,
+                          @Value("${accounts.idempotency.ttl:600}") long ttlSeconds) {
+    int segmentCount = Math.max(1, Math.min(MAX_SEGMENTS, maxEntries));
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      this.segments[i] = new Segment(Math.max(1, maxEntries / segmentCount));
+    }
+    this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+  }
+
+  /**
+   * Runs the transfer unless a transfer with the same key already ran, in which case its outcome
+   * is returned.
+   *
+   * @throws IllegalArgumentException if the key was already used for a different transfer
+   */
+  public AmountTransferResult execute(AmountTransferRequest amountTransferRequest, Supplier<AmountTransferResult> transfer) {
+    String key = amountTransferRequest.getIdempotencyKey();
+    Segment segment = segmentFor(key);
+    Entry entry = new Entry(amountTransferRequest, System.nanoTime() + ttlNanos);
+
+    Entry existing = segment.putIfAbsent(key, entry);
+    if (existing != null) {
+      if (!sameTransfer(existing.request, amountTransferRequest)) {
+        throw new IllegalArgumentException("Idempotency key " + key + " was already used for a different transfer");
+      }
+      hits.increment();
+      return existing.await();
+    }
+    misses.increment();
+
+    AmountTransferResult result;
+    try {
+      result = transfer.get();
+    } catch (RuntimeException e) {
+      segment.remove(key, entry);
+      entry.outcome.completeExceptionally(e);
+      throw e;
+    }
+
+    if (result.getStatus() == TransferStatus.LOCK_TIMEOUT || result.getStatus() == TransferStatus.OVERLOADED) {
+      segment.remove(key, entry);
+    }
+    entry.outcome.complete(result);
+    return result;
+  }
+
+  public long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    metrics.add(new Metric<>("accounts.idempotency.hits", hits.sum()));
+    metrics.add(new Metric<>("accounts.idempotency.misses", misses.sum()));
+    metrics.add(new Metric<>("accounts.idempotency.evictions", evictions.sum()));
+    metrics.add(new Metric<>("accounts.idempotency.expirations", expirations.sum()));
+    metrics.add(new Metric<>("accounts.idempotency.size", size()));
+    return metrics;
+  }
+
+  /**
+   * Amounts are compared by value, so a retry sending 10.00 for 10 is the same transfer.
+   */
+  private static boolean sameTransfer(AmountTransferRequest first, AmountTransferRequest second) {
+    return Objects.equals(first.getFromAccountId(), second.getFromAccountId())
+      && Objects.equals(first.getToAccountId(), second.getToAccountId())
+      && (first.getAmountToTransfer() == null ? second.getAmountToTransfer() == null
+          : second.getAmountToTransfer() != null && first.getAmountToTransfer().compareTo(second.getAmountToTransfer()) == 0);
+  }
+
+  private Segment segmentFor(String key) {
+    int hash = key.hashCode();
+    hash ^= (hash >>> 16);
+    return segments[(hash & Integer.MAX_VALUE) % segments.length];
+  }
+
+  private static final class Entry {
+
+    private final AmountTransferRequest request;
+
+    private final long expiresAt;
+
+    private final CompletableFuture<AmountTransferResult> outcome = new CompletableFuture<>();
+
+    private Entry(AmountTransferRequest request, long expiresAt) {
+      this.request = request;
+      this.expiresAt = expiresAt;
+    }
+
+    private AmountTransferResult await() {
+      try {
+        return outcome.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+
+  private final class Segment {
+
+    private final int capacity;
+
+    // insertion order is also expiry order, as every entry lives for the same ttl
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    private Segment(int capacity) {
+      this.capacity = capacity;
+    }
+
+    private synchronized Entry putIfAbsent(String key, Entry entry) {
+      long now = System.nanoTime();
+      Iterator<Entry> oldest = entries.values().iterator();
+      while (oldest.hasNext() && oldest.next().expiresAt - now <= 0) {
+        oldest.remove();
+        expirations.increment();
+      }
+
+      Entry existing = entries.get(key);
+      if (existing != null) {
+        return existing;
+      }
+
+      entries.put(key, entry);
+      if (entries.size() > capacity) {
+        oldest = entries.values().iterator();
+        oldest.next();
+        oldest.remove();
+        evictions.increment();
+      }
+      return null;
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+      entries.remove(key, entry);
+    }
+
+    private synchronized int size() {
+      return entries.size();
+    }
+  }
+}
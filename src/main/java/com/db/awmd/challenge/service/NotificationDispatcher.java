@@ -0,0 +1,223 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.Account;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Moves transfer notifications off the caller's thread. Notifications are queued on a bounded
+ * queue and delivered by a small worker pool; everything queued for the same account within one
+ * batch window is coalesced into a single digest, one description per line.
+ *
+ * <p>The description is only rendered by the worker, so callers pay for an enqueue and nothing
+ * else. When the queue is full the configured {@link BackpressurePolicy} decides what happens.
+ */
+@Service
+@Slf4j
+public class NotificationDispatcher {
+
+  public enum BackpressurePolicy {
+    /** Wait for room in the queue. */
+    BLOCK,
+    /** Drop the notification and log it. */
+    DROP,
+    /** Deliver the notification on the calling thread. */
+    CALLER_RUNS
+  }
+
+  private final boolean async;
+
+  private final long batchWindowMillis;
+
+  private final int maxBatchSize;
+
+  private final BackpressurePolicy backpressurePolicy;
+
+  private final BlockingQueue<PendingNotification> queue;
+
+  private final ExecutorService workers;
+
+  private volatile boolean running = true;
+
+  @Autowired
+  public NotificationDispatcher(@Value("${accounts.notification.async:true}") boolean async,
+                                @Value("${accounts.notification.queue-capacity:10000}") int queueCapacity,
+                                @Value("${accounts.notification.workers:2}") int workerCount,
+                                @Value("${accounts.notification.batch-window:20}") long batchWindowMillis,
+                                @Value("${accounts.notification.max-batch-size:500}") int maxBatchSize,
+                                @Value("${accounts.notification.backpressure:BLOCK}") BackpressurePolicy backpressurePolicy) {
+    this.async = async;
+    this.batchWindowMillis = batchWindowMillis;
+    this.maxBatchSize = maxBatchSize;
+    this.backpressurePolicy = backpressurePolicy;
+
+    if (async) {
+      this.queue = new ArrayBlockingQueue<>(queueCapacity);
+      AtomicInteger threadCount = new AtomicInteger();
+      this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+        Thread thread = new Thread(runnable, "notification-dispatcher-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+      for (int i = 0; i < workerCount; i++) {
+        this.workers.execute(this::drain);
+      }
+    } else {
+      this.queue = null;
+      this.workers = null;
+    }
+  }
+
+  public void dispatch(NotificationService target, Account account, Supplier<String> description) {
+    if (!async) {
+      deliver(target, account, description.get());
+      return;
+    }
+
+    PendingNotification notification = new PendingNotification(target, account, description);
+
+    switch (backpressurePolicy) {
+      case BLOCK:
+        try {
+          queue.put(notification);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          deliver(target, account, description.get());
+        }
+        break;
+      case DROP:
+        if (!queue.offer(notification)) {
+          log.warn("Notification queue full, dropping notification for {}", account.getAccountId());
+        }
+        break;
+      case CALLER_RUNS:
+        if (!queue.offer(notification)) {
+          deliver(target, account, description.get());
+        }
+        break;
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() throws InterruptedException {
+    if (workers != null) {
+      running = false;
+      workers.shutdown();
+      workers.awaitTermination(5, TimeUnit.SECONDS);
+    }
+  }
+
+  private void drain() {
+    List<PendingNotification> batch = new ArrayList<>(maxBatchSize);
+
+    while (running || !queue.isEmpty()) {
+      try {
+        PendingNotification first = queue.poll(100, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchWindowMillis);
+        while (batch.size() < maxBatchSize) {
+          PendingNotification next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+        }
+
+        deliverBatch(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  private void deliverBatch(List<PendingNotification> batch) {
+    Map<DigestKey, StringBuilder> digests = new LinkedHashMap<>();
+    Map<DigestKey, PendingNotification> recipients = new LinkedHashMap<>();
+
+    for (PendingNotification notification : batch) {
+      DigestKey key = new DigestKey(notification.target, notification.account.getAccountId());
+      StringBuilder digest = digests.get(key);
+      if (digest == null) {
+        digests.put(key, new StringBuilder(notification.description.get()));
+        recipients.put(key, notification);
+      } else {
+        digest.append('\n').append(notification.description.get());
+      }
+    }
+
+    for (Map.Entry<DigestKey, StringBuilder> digest : digests.entrySet()) {
+      PendingNotification recipient = recipients.get(digest.getKey());
+      deliver(recipient.target, recipient.account, digest.getValue().toString());
+    }
+  }
+
+  private void deliver(NotificationService target, Account account, String description) {
+    try {
+      target.notifyAboutTransfer(account, description);
+    } catch (RuntimeException e) {
+      log.warn("Failed to send notification to owner of {}", account.getAccountId(), e);
+    }
+  }
+
+  private static final class PendingNotification {
+
+    private final NotificationService target;
+
+    private final Account account;
+
+    private final Supplier<String> description;
+
+    private PendingNotification(NotificationService target, Account account, Supplier<String> description) {
+      this.target = target;
+      this.account = account;
+      this.description = description;
+    }
+  }
+
+  private static final class DigestKey {
+
+    private final NotificationService target;
+
+    private final String accountId;
+
+    private DigestKey(NotificationService target, String accountId) {
+      this.target = target;
+      this.accountId = accountId;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof DigestKey)) {
+        return false;
+      }
+      DigestKey that = (DigestKey) other;
+      return target == that.target && accountId.equals(that.accountId);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(target) + accountId.hashCode();
+    }
+  }
+}
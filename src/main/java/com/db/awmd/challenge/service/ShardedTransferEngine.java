@@ -0,0 +1,200 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AccountRuntime;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
+import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lock-free transfer execution, enabled with {@code accounts.transfer.mode=sharded}.
+ *
+ * <p>Accounts are partitioned by id hash into shards, by default one per core. Each shard is
+ * drained by a single thread which is the only writer of its accounts' balances, so no locks are
+ * taken. A transfer is applied in two steps: the shard owning the source account checks and
+ * debits it, then hands a credit step to the shard owning the target account. Money debited is
+ * always credited, so the total is conserved; between the two steps it is briefly in flight.
+ *
+ * <p>New transfers need a permit from the source shard, which bounds its backlog. Credit steps
+ * never wait for a permit, so shards cannot block each other.
+ */
+@Component
+@ConditionalOnProperty(name = "accounts.transfer.mode", havingValue = "sharded")
+@Slf4j
+public class ShardedTransferEngine {
+
+  private final Shard[] shards;
+
+  private final long admissionTimeoutMillis;
+
+  private final AccountAggregates accountAggregates;
+
+  @Autowired
+  public ShardedTransferEngine(AccountAggregates accountAggregates,
+                               @Value("${accounts.transfer.shards:0}") int shardCount,
+                               @Value("${accounts.transfer.shard-queue-capacity:10000}") int queueCapacity,
+                               @Value("${accounts.lock.timeout:${server.connection-timeout}}") long admissionTimeoutMillis) {
+    int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+    this.admissionTimeoutMillis = admissionTimeoutMillis;
+    this.accountAggregates = accountAggregates;
+    this.shards = new Shard[count];
+    for (int i = 0; i < count; i++) {
+      this.shards[i] = new Shard(i, queueCapacity);
+      this.shards[i].start();
+    }
+  }
+
+  /**
+   * Applies the transfer and waits until both the debit and the credit have been applied.
+   */
+  public void transfer(AccountRuntime fromAccount, AccountRuntime toAccount, BigDecimal amountToTransfer)
+    throws InsufficientAccountBalanceException {
+    try {
+      submit(fromAccount, toAccount, amountToTransfer).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Something went wrong. Server not able to process the request");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof InsufficientAccountBalanceException) {
+        throw (InsufficientAccountBalanceException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Queues the transfer on the source account's shard. The returned future completes once the
+   * target account has been credited, or exceptionally if the source has insufficient balance.
+   */
+  public CompletableFuture<Void> submit(AccountRuntime fromAccount, AccountRuntime toAccount, BigDecimal amountToTransfer) {
+    Shard source = shardOf(fromAccount);
+
+    try {
+      if (!source.permits.tryAcquire(admissionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        throw new AccountLockTimeoutException(
+          "Timed out waiting for account id " + fromAccount.getAccountId() + ". Please retry the transfer");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Something went wrong. Server not able to process the request");
+    }
+
+    CompletableFuture<Void> completion = new CompletableFuture<>();
+    source.mailbox.add(() -> {
+      source.permits.release();
+      try {
+        debit(fromAccount, toAccount, amountToTransfer, completion);
+      } catch (RuntimeException e) {
+        completion.completeExceptionally(e);
+      }
+    });
+    return completion;
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    for (Shard shard : shards) {
+      shard.interrupt();
+    }
+  }
+
+  private void debit(AccountRuntime fromAccount, AccountRuntime toAccount, BigDecimal amountToTransfer,
+                     CompletableFuture<Void> completion) {
+    if (!fromAccount.withdraw(amountToTransfer)) {
+      completion.completeExceptionally(new InsufficientAccountBalanceException(
+        "Insufficient account balance in accountId:" + fromAccount.getAccountId() + "to perform this transaction"));
+      return;
+    }
+    accountAggregates.balanceChanged(fromAccount);
+
+    Shard target = shardOf(toAccount);
+    if (target == Thread.currentThread()) {
+      credit(fromAccount, toAccount, amountToTransfer, completion);
+    } else {
+      target.mailbox.add(() -> credit(fromAccount, toAccount, amountToTransfer, completion));
+    }
+  }
+
+  private void credit(AccountRuntime fromAccount, AccountRuntime toAccount, BigDecimal amountToTransfer,
+                      CompletableFuture<Void> completion) {
+    try {
+      toAccount.deposit(amountToTransfer);
+    } catch (RuntimeException e) {
+      // the credit was refused, hand the debited amount back to the source shard
+      Shard source = shardOf(fromAccount);
+      if (source == Thread.currentThread()) {
+        refund(fromAccount, amountToTransfer);
+      } else {
+        source.mailbox.add(() -> refund(fromAccount, amountToTransfer));
+      }
+      completion.completeExceptionally(e);
+      return;
+    }
+    accountAggregates.balanceChanged(toAccount);
+    completion.complete(null);
+  }
+
+  private void refund(AccountRuntime fromAccount, BigDecimal amountToTransfer) {
+    fromAccount.deposit(amountToTransfer);
+    accountAggregates.balanceChanged(fromAccount);
+  }
+
+  private Shard shardOf(AccountRuntime account) {
+    int hash = account.getAccountId().hashCode();
+    hash ^= (hash >>> 16);
+    return shards[(hash & Integer.MAX_VALUE) % shards.length];
+  }
+
+  private static final class Shard extends Thread {
+
+    private static final int DRAIN_BATCH_SIZE = 256;
+
+    private final LinkedBlockingQueue<Runnable> mailbox = new LinkedBlockingQueue<>();
+
+    private final Semaphore permits;
+
+    private Shard(int index, int queueCapacity) {
+      super("transfer-shard-" + index);
+      this.permits = new Semaphore(queueCapacity);
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      List<Runnable> steps = new ArrayList<>(DRAIN_BATCH_SIZE);
+
+      while (!isInterrupted()) {
+        try {
+          steps.add(mailbox.take());
+        } catch (InterruptedException e) {
+          return;
+        }
+        mailbox.drainTo(steps, DRAIN_BATCH_SIZE - 1);
+
+        for (Runnable step : steps) {
+          try {
+            step.run();
+          } catch (RuntimeException e) {
+            log.error("Transfer step failed on {}", getName(), e);
+          }
+        }
+        steps.clear();
+      }
+    }
+  }
+}
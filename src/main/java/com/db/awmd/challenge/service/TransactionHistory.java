@@ -0,0 +1,165 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.TransactionPage;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The latest transfers of every account, newest first, for paging through with a cursor.
+ *
+ * <p>Each side of a transfer is stored as a transaction id, a timestamp, the amount as an
+ * unscaled long, its scale as a byte and a reference to the counterparty's id, which is the
+ * string the repository already holds: {@value #BYTES_PER_ENTRY} bytes per entry with compressed
+ * references, four more without, so a transfer costs twice that. An account with history adds
+ * about 200 bytes for its ring, the array headers and its map entry.
+ *
+ * <p>Accounts keep {@code accounts.history.retention} entries unless given their own retention.
+ * Entries appear in the order transfers completed, which for concurrent transfers of an account
+ * can differ slightly from the order they were applied in.
+ */
+@Component
+@Slf4j
+public class TransactionHistory {
+
+  static final int REFERENCE_BYTES = 4;
+
+  public static final int BYTES_PER_ENTRY = 3 * Long.BYTES + REFERENCE_BYTES + Byte.BYTES;
+
+  // an unscaled amount with at most 18 digits always fits in a long
+  private static final MathContext LONG_PRECISION = new MathContext(18);
+
+  private final Map<String, HistoryRing> rings = new ConcurrentHashMap<>();
+
+  private final AtomicLong transactionIds = new AtomicLong();
+
+  private final int defaultRetention;
+
+  private final int maxRetention;
+
+  @Autowired
+  public TransactionHistory(@Value("${accounts.history.retention:100}") int defaultRetention,
+                            @Value("${accounts.history.max-retention:10000}") int maxRetention) {
+    this.defaultRetention = defaultRetention;
+    this.maxRetention = maxRetention;
+  }
+
+  /**
+   * Records a completed transfer on both accounts. The ids must be the ones held by the
+   * repository, so that entries do not keep copies of them alive.
+   */
+  public void recordTransfer(String fromAccountId, String toAccountId, BigDecimal amount) {
+    record(fromAccountId, toAccountId, amount, ring(fromAccountId), ring(toAccountId));
+  }
+
+  /**
+   * Records a transfer whose target account is owned by another node, on the source account only.
+   */
+  public void recordDebit(String fromAccountId, String toAccountId, BigDecimal amount) {
+    record(fromAccountId, toAccountId, amount, ring(fromAccountId), null);
+  }
+
+  /**
+   * Records a transfer from an account owned by another node, on the target account only.
+   */
+  public void recordCredit(String fromAccountId, String toAccountId, BigDecimal amount) {
+    record(fromAccountId, toAccountId, amount, null, ring(toAccountId));
+  }
+
+  private void record(String fromAccountId, String toAccountId, BigDecimal amount, HistoryRing from, HistoryRing to) {
+    if (from == null && to == null) {
+      return;
+    }
+
+    BigDecimal stored = amount;
+    if (stored.precision() > LONG_PRECISION.getPrecision() || stored.scale() != (byte) stored.scale()) {
+      stored = stored.round(LONG_PRECISION).stripTrailingZeros();
+      if (stored.scale() != (byte) stored.scale()) {
+        log.debug("Not recording a transfer of {}, the amount cannot be stored", amount);
+        return;
+      }
+    }
+    long unscaledAmount = stored.unscaledValue().longValue();
+    long transactionId = transactionIds.incrementAndGet();
+    long timestamp = System.currentTimeMillis();
+
+    if (from != null) {
+      from.record(transactionId, timestamp, toAccountId, -unscaledAmount, stored.scale());
+    }
+    if (to != null) {
+      to.record(transactionId, timestamp, fromAccountId, unscaledAmount, stored.scale());
+    }
+  }
+
+  /**
+   * Up to {@code limit} transactions of the account, newest first, starting after the given
+   * cursor or from the newest when it is null.
+   *
+   * @throws IllegalArgumentException if the cursor was not returned by an earlier page
+   */
+  public TransactionPage getTransactions(String accountId, String cursor, int limit) {
+    long before = Long.MAX_VALUE;
+    if (cursor != null) {
+      try {
+        before = Long.parseLong(cursor);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+      }
+    }
+
+    HistoryRing ring = rings.get(accountId);
+    if (ring == null) {
+      return new TransactionPage(Collections.emptyList(), null);
+    }
+    return ring.read(before, limit);
+  }
+
+  public int getRetention(String accountId) {
+    HistoryRing ring = rings.get(accountId);
+    return ring != null ? ring.getRetention() : defaultRetention;
+  }
+
+  /**
+   * Changes how many transactions the account keeps. Lowering it drops the oldest ones at once.
+   *
+   * @throws IllegalArgumentException if the retention is negative or above
+   *                                  {@code accounts.history.max-retention}
+   */
+  public void setRetention(String accountId, int retention) {
+    if (retention < 0 || retention > maxRetention) {
+      throw new IllegalArgumentException("Retention must be between 0 and " + maxRetention);
+    }
+    rings.computeIfAbsent(accountId, id -> new HistoryRing(retention)).setRetention(retention);
+  }
+
+  /**
+   * Bytes the account's entries occupy, see {@link #BYTES_PER_ENTRY}.
+   */
+  public long retainedBytes(String accountId) {
+    HistoryRing ring = rings.get(accountId);
+    return ring != null ? ring.retainedBytes() : 0L;
+  }
+
+  /**
+   * Forgets every account's history, for use together with
+   * {@link com.db.awmd.challenge.repository.AccountsRepository#clearAccounts()}.
+   */
+  public void clear() {
+    rings.clear();
+  }
+
+  private HistoryRing ring(String accountId) {
+    HistoryRing ring = rings.get(accountId);
+    if (ring == null && defaultRetention > 0) {
+      ring = rings.computeIfAbsent(accountId, id -> new HistoryRing(defaultRetention));
+    }
+    return ring;
+  }
+}
@@ -0,0 +1,187 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.domain.AmountTransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+/**
+ * Turns synchronous transfers away at once when more are in progress than the service finishes
+ * within {@code accounts.admission.latency-slo}, rather than letting them queue on account locks
+ * until they time out.
+ *
+ * <p>The limit on transfers in progress adapts the way AIMD congestion control does: a transfer
+ * finishing within the latency objective while at least half the limit is in use raises it by one,
+ * a slower one or a lock timeout multiplies it by {@code backoff-ratio}, always within
+ * {@code min-limit} and {@code max-limit}. Like TCP cuts its window once per round trip, only a
+ * transfer that started after the last cut can cut the limit again, so a burst of slow transfers
+ * admitted under the old limit lowers it once. Besides, no account may be party to more than
+ * {@code per-account-limit} transfers in progress, so a single hot account cannot use up the limit
+ * for everybody else.
+ */
+@Component
+public class TransferAdmission implements PublicMetrics {
+
+  @Getter
+  private final boolean enabled;
+
+  private final int minLimit;
+
+  private final int maxLimit;
+
+  private final long latencySloNanos;
+
+  private final double backoffRatio;
+
+  private final int perAccountLimit;
+
+  @Getter
+  private final int retryAfterSeconds;
+
+  private final AtomicInteger limit;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  // when the limit was last cut, initially long enough ago that any transfer may cut it
+  private final AtomicLong lastBackoff = new AtomicLong(System.nanoTime() - Long.MAX_VALUE / 2);
+
+  private final Map<String, Integer> accountsInFlight = new ConcurrentHashMap<>();
+
+  private final LongAdder admitted = new LongAdder();
+
+  private final LongAdder rejectedByLimit = new LongAdder();
+
+  private final LongAdder rejectedByAccount = new LongAdder();
+
+  private final LongAdder backoffs = new LongAdder();
+
+  @Autowired
+  public TransferAdmission(@Value("${accounts.admission.enabled:false}") boolean enabled,
+                           @Value("${accounts.admission.initial-limit:64}") int initialLimit,
+                           @Value("${accounts.admission.min-limit:8}") int minLimit,
+                           @Value("${accounts.admission.max-limit:1024}") int maxLimit,
+                           @Value("${accounts.admission.latency-slo:50}") long latencySloMillis,
+                           @Value("${accounts.admission.backoff-ratio:0.9}") double backoffRatio,
+                           @Value("${accounts.admission.per-account-limit:32}") int perAccountLimit,
+                           @Value("${accounts.admission.retry-after:1}") int retryAfterSeconds) {
+    if (minLimit < 1 || maxLimit < minLimit || backoffRatio <= 0 || backoffRatio >= 1 || perAccountLimit < 1) {
+      throw new IllegalArgumentException("Admission needs 1 <= min-limit <= max-limit, 0 < backoff-ratio < 1"
+        + " and a positive per-account-limit");
+    }
+    this.enabled = enabled;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.latencySloNanos = TimeUnit.MILLISECONDS.toNanos(latencySloMillis);
+    this.backoffRatio = backoffRatio;
+    this.perAccountLimit = perAccountLimit;
+    this.retryAfterSeconds = retryAfterSeconds;
+    this.limit = new AtomicInteger(Math.max(minLimit, Math.min(maxLimit, initialLimit)));
+  }
+
+  /**
+   * Every admitted transfer must be followed by exactly one {@link #complete} for the same accounts.
+   *
+   * @return null if the transfer may start, otherwise the overloaded result to answer it with
+   */
+  public AmountTransferResult admit(String fromAccountId, String toAccountId) {
+    if (!enabled) {
+      return null;
+    }
+
+    int current;
+    do {
+      current = inFlight.get();
+      if (current >= limit.get()) {
+        rejectedByLimit.increment();
+        return AmountTransferResult.overloaded();
+      }
+    } while (!inFlight.compareAndSet(current, current + 1));
+
+    if (!enterAccount(fromAccountId)) {
+      inFlight.decrementAndGet();
+      rejectedByAccount.increment();
+      return AmountTransferResult.accountOverloaded(fromAccountId);
+    }
+    if (!enterAccount(toAccountId)) {
+      exitAccount(fromAccountId);
+      inFlight.decrementAndGet();
+      rejectedByAccount.increment();
+      return AmountTransferResult.accountOverloaded(toAccountId);
+    }
+
+    admitted.increment();
+    return null;
+  }
+
+  /**
+   * Releases an admitted transfer and adjusts the limit by how long it took.
+   *
+   * @param startNanos {@link System#nanoTime()} when the transfer was admitted
+   */
+  public void complete(String fromAccountId, String toAccountId, long startNanos, TransferStatus status) {
+    if (!enabled) {
+      return;
+    }
+    exitAccount(toAccountId);
+    exitAccount(fromAccountId);
+    int wasInFlight = inFlight.getAndDecrement();
+
+    long now = System.nanoTime();
+    if (now - startNanos > latencySloNanos || status == TransferStatus.LOCK_TIMEOUT) {
+      long last = lastBackoff.get();
+      if (startNanos - last > 0 && lastBackoff.compareAndSet(last, now)) {
+        limit.updateAndGet(current -> Math.max(minLimit, (int) (current * backoffRatio)));
+        backoffs.increment();
+      }
+    } else if (wasInFlight * 2 >= limit.get()) {
+      // only grow while the limit is actually what holds transfers back
+      limit.updateAndGet(current -> Math.min(maxLimit, current + 1));
+    }
+  }
+
+  public int getLimit() {
+    return limit.get();
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  private boolean enterAccount(String accountId) {
+    if (accountsInFlight.merge(accountId, 1, Integer::sum) <= perAccountLimit) {
+      return true;
+    }
+    exitAccount(accountId);
+    return false;
+  }
+
+  private void exitAccount(String accountId) {
+    accountsInFlight.computeIfPresent(accountId, (id, count) -> count == 1 ? null : count - 1);
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    List<Metric<?>> metrics = new ArrayList<>();
+    metrics.add(new Metric<>("accounts.admission.limit", limit.get()));
+    metrics.add(new Metric<>("accounts.admission.in-flight", inFlight.get()));
+    metrics.add(new Metric<>("accounts.admission.busy-accounts", accountsInFlight.size()));
+    metrics.add(new Metric<>("accounts.admission.admitted", admitted.sum()));
+    metrics.add(new Metric<>("accounts.admission.rejected.limit", rejectedByLimit.sum()));
+    metrics.add(new Metric<>("accounts.admission.rejected.account", rejectedByAccount.sum()));
+    metrics.add(new Metric<>("accounts.admission.backoffs", backoffs.sum()));
+    return metrics;
+  }
+}
@@ -0,0 +1,85 @@
+package com.db.awmd.challenge.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lets a background reader wait until every balance change that was in progress at some moment
+ * has finished, without ever blocking the changes themselves.
+ *
+ * <p>Writers bracket each change with {@link #enter()} and {@link #exit(int)}, which only touch a
+ * per-thread counter slot of the current epoch. {@link #advance()} starts a new epoch and waits
+ * for the counters of the previous one to drain; changes entering after that use the new epoch
+ * and are not waited for.
+ */
+@Component
+public class TransferGate {
+
+  private static final int SLOTS = 64;
+
+  // one counter per 128 bytes so slots of different threads do not share a cache line
+  private static final int PADDING = 16;
+
+  private final AtomicLongArray[] inFlight = {
+    new AtomicLongArray(SLOTS * PADDING),
+    new AtomicLongArray(SLOTS * PADDING)
+  };
+
+  private final Object advanceLock = new Object();
+
+  private volatile int epoch;
+
+  /**
+   * Registers a change in progress and returns the epoch to pass to {@link #exit(int)}.
+   */
+  public int enter() {
+    int slot = slot();
+    while (true) {
+      int current = epoch;
+      inFlight[current & 1].incrementAndGet(slot);
+      if (epoch == current) {
+        return current;
+      }
+      inFlight[current & 1].decrementAndGet(slot);
+    }
+  }
+
+  public void exit(int enteredEpoch) {
+    inFlight[enteredEpoch & 1].decrementAndGet(slot());
+  }
+
+  /**
+   * Starts a new epoch and waits until every change that entered before it has exited.
+   *
+   * @return the new epoch
+   */
+  public int advance() {
+    synchronized (advanceLock) {
+      int previous = epoch;
+      epoch = previous + 1;
+
+      AtomicLongArray counters = inFlight[previous & 1];
+      while (inFlightCount(counters) != 0) {
+        LockSupport.parkNanos(10_000L);
+      }
+      return previous + 1;
+    }
+  }
+
+  public int getEpoch() {
+    return epoch;
+  }
+
+  private long inFlightCount(AtomicLongArray counters) {
+    long count = 0;
+    for (int i = 0; i < SLOTS; i++) {
+      count += counters.get(i * PADDING);
+    }
+    return count;
+  }
+
+  private static int slot() {
+    return ((int) Thread.currentThread().getId() & (SLOTS - 1)) * PADDING;
+  }
+}
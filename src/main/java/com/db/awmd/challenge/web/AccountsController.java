@@ -1,30 +1,77 @@
 package com.db.awmd.challenge.web;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountImportResult;
+import com.db.awmd.challenge.domain.AccountRuntime;
+import com.db.awmd.challenge.domain.AccountState;
+import com.db.awmd.challenge.domain.AmountTransferBatchRequest;
 import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.AmountTransferResult;
+import com.db.awmd.challenge.domain.HistoryRetention;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.AccountDoesNotExistsException;
+import com.db.awmd.challenge.exception.AccountLockTimeoutException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
+import com.db.awmd.challenge.exception.NodeUnavailableException;
+import com.db.awmd.challenge.exception.ReadOnlyReplicaException;
+import com.db.awmd.challenge.exception.TooManyPendingTransfersException;
+import com.db.awmd.challenge.service.AccountAggregates;
+import com.db.awmd.challenge.service.AccountImporter;
+import com.db.awmd.challenge.service.AccountsExporter;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransactionHistory;
+import com.db.awmd.challenge.service.TransferAdmission;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletionException;
 import javax.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
-import org.graalvm.compiler.nodes.calc.ObjectEqualsNode;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
 public class AccountsController {
 
+  private static final int MAX_SUMMARY_TOP = 1000;
+
+  private static final int MAX_TRANSACTIONS_LIMIT = 500;
+
   private final AccountsService accountsService;
 
+  private final AccountImporter accountImporter;
+
+  private final AccountsExporter accountsExporter;
+
+  private final AccountAggregates accountAggregates;
+
+  private final TransactionHistory transactionHistory;
+
+  private final TransferAdmission transferAdmission;
+
   @Autowired
-  public AccountsController(AccountsService accountsService) {
+  public AccountsController(AccountsService accountsService,
+                            AccountImporter accountImporter,
+                            AccountsExporter accountsExporter,
+                            AccountAggregates accountAggregates,
+                            TransactionHistory transactionHistory,
+                            TransferAdmission transferAdmission) {
     this.accountsService = accountsService;
+    this.accountImporter = accountImporter;
+    this.accountsExporter = accountsExporter;
+    this.accountAggregates = accountAggregates;
+    this.transactionHistory = transactionHistory;
+    this.transferAdmission = transferAdmission;
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -35,22 +82,129 @@ public class AccountsController {
     this.accountsService.createAccount(account);
     } catch (DuplicateAccountIdException daie) {
       return new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (IllegalArgumentException iae) {
+      return new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (NodeUnavailableException nue) {
+      return new ResponseEntity<>(nue.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    } catch (ReadOnlyReplicaException rore) {
+      return new ResponseEntity<>(rore.getMessage(), HttpStatus.CONFLICT);
     }
 
     return new ResponseEntity<>(HttpStatus.CREATED);
   }
 
+  @PostMapping(path = "/import", consumes = {AccountImporter.NDJSON_VALUE, AccountImporter.CSV_VALUE})
+  public ResponseEntity<Object> importAccounts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                               InputStream body) throws IOException {
+    try {
+      this.accountsService.checkWritable();
+    } catch (ReadOnlyReplicaException rore) {
+      return new ResponseEntity<>(rore.getMessage(), HttpStatus.CONFLICT);
+    }
+    AccountImportResult result = this.accountImporter.importAccounts(body, MediaType.parseMediaType(contentType));
+
+    log.info("Imported {} accounts, rejected {}", result.getImported(), result.getRejected());
+    return new ResponseEntity<>(result, HttpStatus.OK);
+  }
+
+  @GetMapping(path = "/export", produces = AccountImporter.NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> exportAccounts() {
+    log.info("Exporting all accounts");
+    try {
+      this.accountsExporter.checkAvailable();
+    } catch (IllegalStateException ise) {
+      return new ResponseEntity<>(out -> out.write(ise.getMessage().getBytes(StandardCharsets.UTF_8)), HttpStatus.CONFLICT);
+    }
+
+    return ResponseEntity.ok()
+      .contentType(MediaType.valueOf(AccountImporter.NDJSON_VALUE))
+      .body(this.accountsExporter::exportAccounts);
+  }
+
+  /**
+   * Total balance, number of accounts and the {@code top} largest balances, from the
+   * incrementally maintained aggregates.
+   */
+  @GetMapping(path = "/summary")
+  public ResponseEntity<Object> summary(@RequestParam(name = "top", defaultValue = "10") int top) {
+    if (!this.accountAggregates.isEnabled()) {
+      return new ResponseEntity<>("Account aggregates are disabled", HttpStatus.CONFLICT);
+    }
+    if (top < 0 || top > MAX_SUMMARY_TOP) {
+      return new ResponseEntity<>("top must be between 0 and " + MAX_SUMMARY_TOP, HttpStatus.BAD_REQUEST);
+    }
+    return new ResponseEntity<>(this.accountAggregates.summary(top), HttpStatus.OK);
+  }
+
+  /**
+   * The same figures as {@link #summary(int)}, recomputed by a parallel scan of every account.
+   */
+  @GetMapping(path = "/summary/recompute")
+  public ResponseEntity<Object> recomputeSummary(@RequestParam(name = "top", defaultValue = "10") int top) {
+    if (top < 0 || top > MAX_SUMMARY_TOP) {
+      return new ResponseEntity<>("top must be between 0 and " + MAX_SUMMARY_TOP, HttpStatus.BAD_REQUEST);
+    }
+    log.info("Recomputing account summary");
+    return new ResponseEntity<>(this.accountAggregates.recompute(top), HttpStatus.OK);
+  }
+
   @GetMapping(path = "/{accountId}")
   public ResponseEntity<Object> getAccount(@PathVariable String accountId) {
     log.info("Retrieving account for id {}", accountId);
     try {
-      Account account = this.accountsService.getAccount(accountId);
+      Account account = this.accountsService.findAccount(accountId);
+      if (account == null) {
+        return accountNotFound(accountId);
+      }
+      if (account instanceof AccountRuntime) {
+        // one read of the published state, so balance and version always belong together
+        AccountState state = ((AccountRuntime) account).getState();
+        return ResponseEntity.ok()
+          .eTag(Long.toString(state.getVersion()))
+          .body(new Account(account.getAccountId(), state.getBalance()));
+      }
       return new ResponseEntity<Object>(account, HttpStatus.OK);
-    }catch (AccountDoesNotExistsException accountDoesNotExistsException){
-      return new ResponseEntity<Object>(accountDoesNotExistsException.getMessage(), HttpStatus.NOT_FOUND);
+    } catch (NodeUnavailableException nodeUnavailableException) {
+      return new ResponseEntity<Object>(nodeUnavailableException.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
     }
   }
 
+  /**
+   * The account's latest transactions, newest first. Pass the returned {@code nextCursor} as
+   * {@code cursor} to get the next older page.
+   */
+  @GetMapping(path = "/{accountId}/transactions")
+  public ResponseEntity<Object> getTransactions(@PathVariable String accountId,
+                                                @RequestParam(name = "cursor", required = false) String cursor,
+                                                @RequestParam(name = "limit", defaultValue = "20") int limit) {
+    if (limit < 1 || limit > MAX_TRANSACTIONS_LIMIT) {
+      return new ResponseEntity<>("limit must be between 1 and " + MAX_TRANSACTIONS_LIMIT, HttpStatus.BAD_REQUEST);
+    }
+    if (this.accountsService.findAccount(accountId) == null) {
+      return accountNotFound(accountId);
+    }
+    try {
+      return new ResponseEntity<>(this.transactionHistory.getTransactions(accountId, cursor, limit), HttpStatus.OK);
+    } catch (IllegalArgumentException iae) {
+      return new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  @PutMapping(path = "/{accountId}/transactions/retention", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> setTransactionRetention(@PathVariable String accountId,
+                                                        @RequestBody @Valid HistoryRetention historyRetention) {
+    log.info("Keeping {} transactions for account id {}", historyRetention.getRetention(), accountId);
+    if (this.accountsService.findAccount(accountId) == null) {
+      return accountNotFound(accountId);
+    }
+    try {
+      this.transactionHistory.setRetention(accountId, historyRetention.getRetention());
+    } catch (IllegalArgumentException iae) {
+      return new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+    return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+  }
+
   @PutMapping(path = "/amounttransfer")
   public ResponseEntity<Object> amountTransfer(@RequestBody @Valid AmountTransferRequest amountTransferRequest){
 
@@ -59,20 +213,101 @@ public class AccountsController {
             amountTransferRequest.getFromAccountId(),
             amountTransferRequest.getToAccountId());
 
+    AmountTransferResult result;
     try {
-      this.accountsService.amountTransfer(amountTransferRequest);
+      result = this.accountsService.tryAmountTransfer(amountTransferRequest);
     }
-    catch (AccountDoesNotExistsException accountDoesNotExistsException){
-      return new ResponseEntity<>(accountDoesNotExistsException.getMessage(), HttpStatus.NOT_FOUND);
+    catch (RuntimeException exe) {
+      return transferFailure(exe);
     }
-    catch (InsufficientAccountBalanceException insufficientAccountBalanceException) {
-      return new ResponseEntity<>(insufficientAccountBalanceException.getMessage(),HttpStatus.FORBIDDEN);
+
+    if (result.getStatus() != TransferStatus.ACCEPTED) {
+      return transferRejection(result);
     }
-    catch (RuntimeException exe){
-      return new ResponseEntity<>(exe.getMessage(),HttpStatus.INTERNAL_SERVER_ERROR);
+    return new ResponseEntity<>(HttpStatus.ACCEPTED);
+  }
+
+  /**
+   * Same as {@link #amountTransfer(AmountTransferRequest)}, but the servlet thread is released
+   * while the transfer waits for its accounts.
+   */
+  @PutMapping(path = "/amounttransfer/async")
+  public DeferredResult<ResponseEntity<Object>> amountTransferAsync(@RequestBody @Valid AmountTransferRequest amountTransferRequest){
+
+    log.info("Transferring amount asynchronously: {} from account id {} to account id {} ",
+            amountTransferRequest.getAmountToTransfer(),
+            amountTransferRequest.getFromAccountId(),
+            amountTransferRequest.getToAccountId());
+
+    DeferredResult<ResponseEntity<Object>> response = new DeferredResult<>();
+    this.accountsService.amountTransferAsync(amountTransferRequest).whenComplete((ignored, failure) ->
+      response.setResult(failure == null ? new ResponseEntity<>(HttpStatus.ACCEPTED) : transferFailure(failure)));
+    return response;
+  }
+
+  @PutMapping(path = "/amounttransfer/batch")
+  public ResponseEntity<Object> amountTransferBatch(@RequestBody @Valid AmountTransferBatchRequest amountTransferBatchRequest){
+
+    log.info("Transferring batch of {} amounts", amountTransferBatchRequest.getTransfers().size());
+
+    List<AmountTransferResult> results;
+    try {
+      results = this.accountsService.amountTransferBatch(amountTransferBatchRequest.getTransfers());
+    } catch (ReadOnlyReplicaException rore) {
+      return new ResponseEntity<>(rore.getMessage(), HttpStatus.CONFLICT);
     }
 
-    return new ResponseEntity<>(HttpStatus.ACCEPTED);
+    return new ResponseEntity<>(results, HttpStatus.OK);
+  }
+
+  private static ResponseEntity<Object> accountNotFound(String accountId) {
+    return new ResponseEntity<>(AmountTransferResult.accountNotFound(accountId).getMessage(), HttpStatus.NOT_FOUND);
   }
 
+  /**
+   * The same responses as {@link #transferFailure(Throwable)} gives for the exceptions the
+   * statuses stand for, and an overloaded service tells the client when to retry.
+   */
+  private ResponseEntity<Object> transferRejection(AmountTransferResult result) {
+    switch (result.getStatus()) {
+      case ACCOUNT_NOT_FOUND:
+        return new ResponseEntity<>(result.getMessage(), HttpStatus.NOT_FOUND);
+      case INSUFFICIENT_BALANCE:
+        return new ResponseEntity<>(result.getMessage(), HttpStatus.FORBIDDEN);
+      case INVALID_REQUEST:
+        return new ResponseEntity<>(result.getMessage(), HttpStatus.BAD_REQUEST);
+      case LOCK_TIMEOUT:
+        return new ResponseEntity<>(result.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+      case OVERLOADED:
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Integer.toString(this.transferAdmission.getRetryAfterSeconds()));
+        return new ResponseEntity<>(result.getMessage(), headers, HttpStatus.SERVICE_UNAVAILABLE);
+      default:
+        return new ResponseEntity<>(result.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  private ResponseEntity<Object> transferFailure(Throwable failure) {
+    if (failure instanceof CompletionException && failure.getCause() != null) {
+      failure = failure.getCause();
+    }
+
+    if (failure instanceof AccountDoesNotExistsException) {
+      return new ResponseEntity<>(failure.getMessage(), HttpStatus.NOT_FOUND);
+    }
+    if (failure instanceof InsufficientAccountBalanceException) {
+      return new ResponseEntity<>(failure.getMessage(), HttpStatus.FORBIDDEN);
+    }
+    if (failure instanceof IllegalArgumentException) {
+      return new ResponseEntity<>(failure.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+    if (failure instanceof ReadOnlyReplicaException) {
+      return new ResponseEntity<>(failure.getMessage(), HttpStatus.CONFLICT);
+    }
+    if (failure instanceof AccountLockTimeoutException || failure instanceof TooManyPendingTransfersException
+        || failure instanceof NodeUnavailableException) {
+      return new ResponseEntity<>(failure.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    return new ResponseEntity<>(failure.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+  }
 }
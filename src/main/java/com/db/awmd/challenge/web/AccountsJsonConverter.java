@@ -0,0 +1,196 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+/**
+ * Reads {@link Account} and {@link AmountTransferRequest} bodies and writes {@link Account}
+ * bodies with Jackson's streaming API, instead of data binding through bean introspection.
+ *
+ * <p>Accepts what the {@code ObjectMapper} accepts for these types: unknown properties are
+ * skipped, the last of duplicate properties wins, scalars are taken as strings and numeric strings
+ * as amounts. Written accounts are byte for byte what the {@code ObjectMapper} writes.
+ */
+public class AccountsJsonConverter extends AbstractHttpMessageConverter<Object> {
+
+  private final JsonFactory jsonFactory;
+
+  private final boolean indentOutput;
+
+  public AccountsJsonConverter(ObjectMapper objectMapper) {
+    super(StandardCharsets.UTF_8, MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+    this.jsonFactory = objectMapper.getFactory();
+    this.indentOutput = objectMapper.isEnabled(SerializationFeature.INDENT_OUTPUT);
+  }
+
+  @Override
+  protected boolean supports(Class<?> clazz) {
+    return clazz == Account.class || clazz == AmountTransferRequest.class;
+  }
+
+  @Override
+  public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+    return clazz == Account.class && canWrite(mediaType);
+  }
+
+  @Override
+  protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+    try {
+      return clazz == Account.class ? readAccount(inputMessage.getBody()) : readAmountTransferRequest(inputMessage.getBody());
+    } catch (JsonProcessingException e) {
+      throw new HttpMessageNotReadableException("JSON parse error: " + e.getMessage(), e);
+    }
+  }
+
+  @Override
+  protected void writeInternal(Object value, HttpOutputMessage outputMessage) throws IOException {
+    writeAccount((Account) value, outputMessage.getBody());
+  }
+
+  /**
+   * @return the account, or null for a JSON {@code null}
+   */
+  public Account readAccount(InputStream in) throws IOException {
+    try (JsonParser parser = jsonFactory.createParser(in)) {
+      if (!startObject(parser, Account.class)) {
+        return null;
+      }
+      String accountId = null;
+      BigDecimal balance = null;
+      for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+        parser.nextToken();
+        switch (field) {
+          case "accountId":
+            accountId = readString(parser);
+            break;
+          case "balance":
+            balance = readDecimal(parser);
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+      return new Account(accountId, balance);
+    }
+  }
+
+  /**
+   * @return the request, or null for a JSON {@code null}
+   */
+  public AmountTransferRequest readAmountTransferRequest(InputStream in) throws IOException {
+    try (JsonParser parser = jsonFactory.createParser(in)) {
+      if (!startObject(parser, AmountTransferRequest.class)) {
+        return null;
+      }
+      String fromAccountId = null;
+      String toAccountId = null;
+      BigDecimal amountToTransfer = null;
+      String idempotencyKey = null;
+      for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+        parser.nextToken();
+        switch (field) {
+          case "fromAccountId":
+            fromAccountId = readString(parser);
+            break;
+          case "toAccountId":
+            toAccountId = readString(parser);
+            break;
+          case "amountToTransfer":
+            amountToTransfer = readDecimal(parser);
+            break;
+          case "idempotencyKey":
+            idempotencyKey = readString(parser);
+            break;
+          default:
+            parser.skipChildren();
+        }
+      }
+      return new AmountTransferRequest(fromAccountId, toAccountId, amountToTransfer, idempotencyKey);
+    }
+  }
+
+  public void writeAccount(Account account, OutputStream out) throws IOException {
+    // not closed, the container owns the stream
+    JsonGenerator generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+    if (indentOutput) {
+      generator.useDefaultPrettyPrinter();
+    }
+    generator.writeStartObject();
+    generator.writeStringField("accountId", account.getAccountId());
+    generator.writeFieldName("balance");
+    if (account.getBalance() == null) {
+      generator.writeNull();
+    } else {
+      generator.writeNumber(account.getBalance());
+    }
+    generator.writeEndObject();
+    generator.flush();
+  }
+
+  /**
+   * @return false if the document is a JSON {@code null}
+   */
+  private static boolean startObject(JsonParser parser, Class<?> type) throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token == null) {
+      throw JsonMappingException.from(parser, "No content to map due to end-of-input");
+    }
+    if (token == JsonToken.VALUE_NULL) {
+      return false;
+    }
+    if (token != JsonToken.START_OBJECT) {
+      throw JsonMappingException.from(parser, "Can not deserialize instance of " + type.getName() + " out of " + token + " token");
+    }
+    return true;
+  }
+
+  private static String readString(JsonParser parser) throws IOException {
+    if (!parser.getCurrentToken().isScalarValue()) {
+      throw JsonMappingException.from(parser, "Can not deserialize instance of java.lang.String out of " + parser.getCurrentToken() + " token");
+    }
+    return parser.getValueAsString();
+  }
+
+  private static BigDecimal readDecimal(JsonParser parser) throws IOException {
+    switch (parser.getCurrentToken()) {
+      case VALUE_NUMBER_INT:
+      case VALUE_NUMBER_FLOAT:
+        return parser.getDecimalValue();
+      case VALUE_NULL:
+        return null;
+      case VALUE_STRING:
+        String text = parser.getText().trim();
+        if (text.isEmpty()) {
+          return null;
+        }
+        try {
+          return new BigDecimal(text);
+        } catch (NumberFormatException e) {
+          throw JsonMappingException.from(parser, "Can not deserialize value of type java.math.BigDecimal from String \""
+            + text + "\": not a valid representation");
+        }
+      default:
+        throw JsonMappingException.from(parser, "Can not deserialize instance of java.math.BigDecimal out of "
+          + parser.getCurrentToken() + " token");
+    }
+  }
+}
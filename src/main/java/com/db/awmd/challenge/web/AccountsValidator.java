@@ -0,0 +1,71 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import java.math.BigDecimal;
+import org.springframework.validation.Errors;
+import org.springframework.validation.SmartValidator;
+
+/**
+ * Checks the constraints of {@link Account} and {@link AmountTransferRequest} in plain code and
+ * hands everything else, and any body that breaks a constraint, to the bean validator. Valid
+ * bodies therefore skip reflective validation, while rejected ones get exactly the errors and
+ * messages the bean validator reports.
+ */
+public class AccountsValidator implements SmartValidator {
+
+  private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
+
+  private final SmartValidator beanValidator;
+
+  public AccountsValidator(SmartValidator beanValidator) {
+    this.beanValidator = beanValidator;
+  }
+
+  @Override
+  public boolean supports(Class<?> clazz) {
+    return beanValidator.supports(clazz);
+  }
+
+  @Override
+  public void validate(Object target, Errors errors) {
+    validate(target, errors, new Object[0]);
+  }
+
+  @Override
+  public void validate(Object target, Errors errors, Object... validationHints) {
+    if (validationHints.length == 0 && isValid(target)) {
+      return;
+    }
+    beanValidator.validate(target, errors, validationHints);
+  }
+
+  /**
+   * @return true if the target is an account or transfer request meeting all its constraints
+   */
+  static boolean isValid(Object target) {
+    if (target == null) {
+      return false;
+    }
+    if (target.getClass() == Account.class) {
+      Account account = (Account) target;
+      return notEmpty(account.getAccountId()) && atLeast(account.getBalance(), BigDecimal.ZERO);
+    }
+    if (target.getClass() == AmountTransferRequest.class) {
+      AmountTransferRequest request = (AmountTransferRequest) target;
+      String idempotencyKey = request.getIdempotencyKey();
+      return notEmpty(request.getFromAccountId()) && notEmpty(request.getToAccountId())
+        && atLeast(request.getAmountToTransfer(), BigDecimal.ONE)
+        && (idempotencyKey == null || !idempotencyKey.isEmpty() && idempotencyKey.length() <= MAX_IDEMPOTENCY_KEY_LENGTH);
+    }
+    return false;
+  }
+
+  private static boolean notEmpty(String value) {
+    return value != null && !value.isEmpty();
+  }
+
+  private static boolean atLeast(BigDecimal value, BigDecimal min) {
+    return value != null && value.compareTo(min) >= 0;
+  }
+}
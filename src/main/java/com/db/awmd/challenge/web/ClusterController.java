@@ -0,0 +1,79 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.cluster.ClusterClient;
+import com.db.awmd.challenge.cluster.ClusterTopology;
+import com.db.awmd.challenge.cluster.CrossNodeTransfers;
+import com.db.awmd.challenge.domain.ClusterStatus;
+import com.db.awmd.challenge.domain.RemoteCreditBatch;
+import com.db.awmd.challenge.service.AccountsService;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import javax.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Endpoints the nodes of a cluster call on each other. They share the API port, so posting credits
+ * requires {@code accounts.cluster.secret}, which every node must be configured with.
+ */
+@RestController
+@RequestMapping("/v1/cluster")
+@ConditionalOnProperty(name = "accounts.cluster.enabled", havingValue = "true")
+@Slf4j
+public class ClusterController {
+
+  private final AccountsService accountsService;
+
+  private final ClusterTopology clusterTopology;
+
+  private final CrossNodeTransfers crossNodeTransfers;
+
+  private final byte[] secret;
+
+  @Autowired
+  public ClusterController(AccountsService accountsService,
+                           ClusterTopology clusterTopology,
+                           CrossNodeTransfers crossNodeTransfers,
+                           @Value("${accounts.cluster.secret:}") String secret) {
+    if (secret.isEmpty()) {
+      throw new IllegalStateException("accounts.cluster.secret must be set to run in a cluster");
+    }
+    this.accountsService = accountsService;
+    this.clusterTopology = clusterTopology;
+    this.crossNodeTransfers = crossNodeTransfers;
+    this.secret = secret.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @PostMapping(path = "/credits", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<Object> applyCredits(@RequestHeader(name = ClusterClient.SECRET_HEADER, required = false) String secret,
+                                             @RequestBody @Valid RemoteCreditBatch batch) {
+    // compared in constant time, so the answer time does not reveal how much of it matched
+    if (secret == null || !MessageDigest.isEqual(this.secret, secret.getBytes(StandardCharsets.UTF_8))) {
+      log.warn("Refused credits claiming to come from node {} without the cluster secret", batch.getSourceNode());
+      return new ResponseEntity<>("Credits are only accepted from nodes of the cluster", HttpStatus.FORBIDDEN);
+    }
+    log.debug("Applying {} credits from node {}", batch.getCredits().size(), batch.getSourceNode());
+    try {
+      return new ResponseEntity<>(this.accountsService.applyCredits(batch), HttpStatus.OK);
+    } catch (IllegalArgumentException iae) {
+      return new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+  }
+
+  @GetMapping(path = "/status")
+  public ClusterStatus status() {
+    return new ClusterStatus(this.clusterTopology.getNodeIndex(), this.clusterTopology.getNodes(),
+      this.crossNodeTransfers.pendingCredits());
+  }
+}
@@ -0,0 +1,49 @@
+package com.db.awmd.challenge.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * Puts {@link AccountsJsonConverter} ahead of the Jackson converter and {@link AccountsValidator}
+ * in front of the bean validator for the MVC endpoints. Turned off with
+ * {@code accounts.json-codec.enabled=false} to compare against plain data binding.
+ */
+@Configuration
+@ConditionalOnProperty(name = "accounts.json-codec.enabled", havingValue = "true", matchIfMissing = true)
+public class JsonCodecConfiguration extends WebMvcConfigurerAdapter {
+
+  private final ObjectMapper objectMapper;
+
+  private final ObjectProvider<javax.validation.Validator> beanValidator;
+
+  @Autowired
+  public JsonCodecConfiguration(ObjectMapper objectMapper, ObjectProvider<javax.validation.Validator> beanValidator) {
+    this.objectMapper = objectMapper;
+    this.beanValidator = beanValidator;
+  }
+
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.add(0, new AccountsJsonConverter(objectMapper));
+  }
+
+  @Override
+  public Validator getValidator() {
+    javax.validation.Validator validator = beanValidator.getIfAvailable();
+    if (validator == null) {
+      LocalValidatorFactoryBean validatorFactory = new LocalValidatorFactoryBean();
+      validatorFactory.afterPropertiesSet();
+      validator = validatorFactory;
+    }
+    return new AccountsValidator(new SpringValidatorAdapter(validator));
+  }
+}
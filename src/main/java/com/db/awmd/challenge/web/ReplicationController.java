@@ -0,0 +1,34 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.ReplicationStatus;
+import com.db.awmd.challenge.replication.ReplicationFollower;
+import com.db.awmd.challenge.replication.ReplicationPrimary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/v1/replication")
+public class ReplicationController {
+
+  @Autowired(required = false)
+  private ReplicationPrimary replicationPrimary;
+
+  @Autowired(required = false)
+  private ReplicationFollower replicationFollower;
+
+  @GetMapping(path = "/status")
+  public ReplicationStatus status() {
+    if (this.replicationFollower != null) {
+      ReplicationFollower follower = this.replicationFollower;
+      return new ReplicationStatus("FOLLOWER", follower.getAppliedPosition(), follower.getPrimaryPosition(),
+        follower.isConnected(), follower.getLagBytes(), follower.getLagMillis(), null);
+    }
+    if (this.replicationPrimary != null) {
+      return new ReplicationStatus("PRIMARY", this.replicationPrimary.getPosition(), null, null, null, null,
+        this.replicationPrimary.followers());
+    }
+    return new ReplicationStatus("NONE", 0L, null, null, null, null, null);
+  }
+}
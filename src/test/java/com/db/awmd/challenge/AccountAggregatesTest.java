@@ -0,0 +1,98 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountsSummary;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
+import com.db.awmd.challenge.service.AccountAggregates;
+import com.db.awmd.challenge.service.AccountsService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"accounts.hot-accounts.threshold=1", "accounts.notification.backpressure=DROP"})
+public class AccountAggregatesTest {
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private AccountAggregates accountAggregates;
+
+  @Before
+  public void clearAccountsData() {
+    accountsService.getAccountsRepository().clearAccounts();
+    accountAggregates.clear();
+  }
+
+  @Test
+  public void summaryFollowsCreationsAndTransfers() throws Exception {
+    this.accountsService.createAccount(new Account("Id-1", new BigDecimal("100")));
+    this.accountsService.createAccount(new Account("Id-2", new BigDecimal("50")));
+    this.accountsService.createAccount(new Account("Id-3", new BigDecimal("75")));
+
+    this.accountsService.amountTransfer(new AmountTransferRequest("Id-1", "Id-2", new BigDecimal("60")));
+
+    AccountsSummary summary = this.accountAggregates.summary(2);
+    assertThat(summary.getTotal()).isEqualByComparingTo("225");
+    assertThat(summary.getAccounts()).isEqualTo(3);
+    assertThat(summary.getTop()).extracting(Account::getAccountId).containsExactly("Id-2", "Id-3");
+    assertThat(summary.getTop().get(0).getBalance()).isEqualByComparingTo("110");
+  }
+
+  @Test
+  public void summaryMatchesRecomputationAfterConcurrentTransfers() throws Exception {
+    int accounts = 100;
+    for (int i = 0; i < accounts; i++) {
+      this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    List<Future<?>> transfers = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      transfers.add(executorService.submit(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int n = 0; n < 2000; n++) {
+          int from = random.nextInt(accounts);
+          int to = random.nextBoolean() ? 0 : random.nextInt(accounts);
+          if (from == to) {
+            continue;
+          }
+          try {
+            this.accountsService.amountTransfer(new AmountTransferRequest("Id-" + from, "Id-" + to,
+              new BigDecimal(random.nextInt(1, 50))));
+          } catch (InsufficientAccountBalanceException ignored) {
+            // the source ran dry, which does not matter here
+          }
+        }
+        return null;
+      }));
+    }
+    for (Future<?> transfer : transfers) {
+      transfer.get();
+    }
+    executorService.shutdown();
+
+    AccountsSummary incremental = this.accountAggregates.summary(10);
+    AccountsSummary recomputed = this.accountAggregates.recompute(10);
+    assertThat(incremental.getTotal()).isEqualByComparingTo(recomputed.getTotal());
+    assertThat(incremental.getAccounts()).isEqualTo(recomputed.getAccounts());
+    List<String> recomputedTop = recomputed.getTop().stream().map(Account::getAccountId).collect(Collectors.toList());
+    assertThat(incremental.getTop()).extracting(Account::getAccountId).containsExactlyElementsOf(recomputedTop);
+  }
+}
@@ -1,15 +1,20 @@
 package com.db.awmd.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.service.AccountsService;
+import com.jayway.jsonpath.JsonPath;
 import java.math.BigDecimal;
 import org.junit.Before;
 import org.junit.Test;
@@ -17,9 +22,11 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 @RunWith(SpringRunner.class)
@@ -112,6 +119,85 @@ public class AccountsControllerTest {
             .andExpect(status().isNotFound());
   }
 
+  @Test
+  public void importAccountsAsNdjson() throws Exception {
+    this.accountsService.createAccount(new Account("Id-existing", new BigDecimal("10")));
+
+    this.mockMvc.perform(post("/v1/accounts/import").contentType("application/x-ndjson")
+      .content("{\"accountId\":\"Id-imported-1\",\"balance\":100.50}\n"
+        + "\n"
+        + "{\"accountId\":\"Id-existing\",\"balance\":1}\n"
+        + "{\"accountId\":\"Id-imported-2\",\"balance\":-1}\n"
+        + "not json\n"
+        + "{\"accountId\":\"Id-imported-3\",\"balance\":\"7\"}"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.imported").value(2))
+      .andExpect(jsonPath("$.rejected").value(3))
+      .andExpect(jsonPath("$.errors[0].line").value(3))
+      .andExpect(jsonPath("$.errors[0].accountId").value("Id-existing"))
+      .andExpect(jsonPath("$.errors[1].line").value(4))
+      .andExpect(jsonPath("$.errors[1].message").value("Initial balance must be positive."))
+      .andExpect(jsonPath("$.errors[2].line").value(5));
+
+    assertThat(accountsService.getAccount("Id-imported-1").getBalance()).isEqualByComparingTo("100.50");
+    assertThat(accountsService.getAccount("Id-imported-3").getBalance()).isEqualByComparingTo("7");
+  }
+
+  @Test
+  public void importAccountsAsCsv() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts/import").contentType("text/csv")
+      .content("accountId,balance\n\"Id-csv,1\",12.5\nId-csv-2,abc\n"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.imported").value(1))
+      .andExpect(jsonPath("$.rejected").value(1))
+      .andExpect(jsonPath("$.errors[0].line").value(3));
+
+    assertThat(accountsService.getAccount("Id-csv,1").getBalance()).isEqualByComparingTo("12.5");
+  }
+
+  @Test
+  public void exportAccounts() throws Exception {
+    this.accountsService.createAccount(new Account("Id-export-1", new BigDecimal("10.5")));
+    this.accountsService.createAccount(new Account("Id-export-2", new BigDecimal("20")));
+
+    MvcResult result = this.mockMvc.perform(get("/v1/accounts/export"))
+      .andExpect(request().asyncStarted())
+      .andReturn();
+
+    // the body is streamed into the original response, while an async dispatch gets a new one
+    result.getAsyncResult();
+    MockHttpServletResponse response = result.getResponse();
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getContentType()).isEqualTo("application/x-ndjson");
+    String body = response.getContentAsString();
+
+    assertThat(body.split("\n")).containsOnly(
+      "{\"accountId\":\"Id-export-1\",\"balance\":10.5,\"version\":0}",
+      "{\"accountId\":\"Id-export-2\",\"balance\":20,\"version\":0}");
+  }
+
+  @Test
+  public void getAccountReturnsVersionAsETag() throws Exception {
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-versioned\",\"balance\":100}")).andExpect(status().isCreated());
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"accountId\":\"Id-other\",\"balance\":100}")).andExpect(status().isCreated());
+
+    this.mockMvc.perform(get("/v1/accounts/Id-versioned"))
+      .andExpect(status().isOk())
+      .andExpect(header().string("ETag", "\"0\""));
+
+    this.mockMvc.perform(put("/v1/accounts/amounttransfer")
+      .contentType(MediaType.APPLICATION_JSON)
+      .content("{\"fromAccountId\":\"Id-versioned\",\"toAccountId\":\"Id-other\",\"amountToTransfer\":40}"))
+      .andExpect(status().isAccepted());
+
+    this.mockMvc.perform(get("/v1/accounts/Id-versioned"))
+      .andExpect(status().isOk())
+      .andExpect(header().string("ETag", "\"1\""))
+      .andExpect(content().string("{\"accountId\":\"Id-versioned\",\"balance\":60}"));
+  }
+
 
   @Test
   public void transferAmount() throws Exception{
@@ -456,4 +542,112 @@ public class AccountsControllerTest {
 
 
   }
+
+
+  @Test
+  public void transferAmountBatch() throws Exception{
+
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-first\",\"balance\":100}")).andExpect(status().isCreated());
+
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-second\",\"balance\":100}")).andExpect(status().isCreated());
+
+    this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+            .content("{\"accountId\":\"Id-third\",\"balance\":100}")).andExpect(status().isCreated());
+
+    this.mockMvc.perform(put("/v1/accounts/amounttransfer/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"transfers\":["
+                    + "{\"fromAccountId\":\"Id-first\",\"toAccountId\":\"Id-second\",\"amountToTransfer\":60},"
+                    + "{\"fromAccountId\":\"Id-first\",\"toAccountId\":\"Id-third\",\"amountToTransfer\":60},"
+                    + "{\"fromAccountId\":\"Id-second\",\"toAccountId\":\"Id-third\",\"amountToTransfer\":160},"
+                    + "{\"fromAccountId\":\"Id-missing\",\"toAccountId\":\"Id-third\",\"amountToTransfer\":10}]}"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].status").value("ACCEPTED"))
+            .andExpect(jsonPath("$[1].status").value("INSUFFICIENT_BALANCE"))
+            .andExpect(jsonPath("$[2].status").value("ACCEPTED"))
+            .andExpect(jsonPath("$[3].status").value("ACCOUNT_NOT_FOUND"));
+
+    assertThat(accountsService.getAccount("Id-first").getBalance()).isEqualByComparingTo("40");
+    assertThat(accountsService.getAccount("Id-second").getBalance()).isEqualByComparingTo("0");
+    assertThat(accountsService.getAccount("Id-third").getBalance()).isEqualByComparingTo("260");
+  }
+
+
+  @Test
+  public void transferAmountBatchEmpty() throws Exception{
+
+    this.mockMvc.perform(put("/v1/accounts/amounttransfer/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"transfers\":[]}"))
+            .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void transferAmountBatchWithNullTransfer() throws Exception{
+
+    this.mockMvc.perform(put("/v1/accounts/amounttransfer/batch")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("{\"transfers\":[{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-2\",\"amountToTransfer\":1},null]}"))
+            .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void getTransactions() throws Exception {
+    this.accountsService.createAccount(new Account("Id-history-1", new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account("Id-history-2", new BigDecimal(1000)));
+    for (int n = 1; n <= 3; n++) {
+      this.mockMvc.perform(put("/v1/accounts/amounttransfer").contentType(MediaType.APPLICATION_JSON)
+        .content("{\"fromAccountId\":\"Id-history-1\",\"toAccountId\":\"Id-history-2\",\"amountToTransfer\":" + n + "}"))
+        .andExpect(status().isAccepted());
+    }
+
+    MvcResult firstPage = this.mockMvc.perform(get("/v1/accounts/Id-history-1/transactions?limit=2"))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.transactions.length()").value(2))
+      .andExpect(jsonPath("$.transactions[0].amount").value(-3))
+      .andExpect(jsonPath("$.transactions[0].counterpartyAccountId").value("Id-history-2"))
+      .andReturn();
+    String cursor = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.nextCursor");
+
+    this.mockMvc.perform(get("/v1/accounts/Id-history-1/transactions?limit=2&cursor=" + cursor))
+      .andExpect(status().isOk())
+      .andExpect(jsonPath("$.transactions.length()").value(1))
+      .andExpect(jsonPath("$.transactions[0].amount").value(-1))
+      .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+    this.mockMvc.perform(get("/v1/accounts/Id-history-2/transactions?limit=1"))
+      .andExpect(jsonPath("$.transactions[0].amount").value(3));
+    this.mockMvc.perform(get("/v1/accounts/Id-history-9/transactions")).andExpect(status().isNotFound());
+    this.mockMvc.perform(get("/v1/accounts/Id-history-1/transactions?limit=0")).andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void transferAmountAsync() throws Exception{
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal(1000)));
+
+    MvcResult mvcResult = this.mockMvc.perform(put("/v1/accounts/amounttransfer/async").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amountToTransfer\":100}"))
+      .andExpect(request().asyncStarted()).andReturn();
+    this.mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isAccepted());
+
+    assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("900");
+    assertThat(accountsService.getAccount("Id-456").getBalance()).isEqualByComparingTo("1100");
+  }
+
+  @Test
+  public void transferAmountAsyncMoreThanAccountBalance() throws Exception{
+    this.accountsService.createAccount(new Account("Id-123", new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account("Id-456", new BigDecimal(1000)));
+
+    MvcResult mvcResult = this.mockMvc.perform(put("/v1/accounts/amounttransfer/async").contentType(MediaType.APPLICATION_JSON)
+      .content("{\"fromAccountId\":\"Id-123\",\"toAccountId\":\"Id-456\",\"amountToTransfer\":10000}"))
+      .andExpect(request().asyncStarted()).andReturn();
+    this.mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isForbidden());
+
+    assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("1000");
+  }
+
 }
@@ -0,0 +1,108 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
+import com.db.awmd.challenge.service.AccountsExporter;
+import com.db.awmd.challenge.service.AccountsService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"accounts.hot-accounts.threshold=1", "accounts.notification.backpressure=DROP"})
+public class AccountsExporterTest {
+
+  private static final int ACCOUNTS = 200;
+
+  private static final int TRANSFER_THREADS = 4;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private AccountsExporter accountsExporter;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Before
+  public void clearAccountsData() {
+    accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  public void exportIsConsistentWhileTransfersRun() throws Exception {
+    for (int i = 0; i < ACCOUNTS; i++) {
+      this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(100)));
+    }
+    BigDecimal total = new BigDecimal(100 * ACCOUNTS);
+
+    AtomicBoolean running = new AtomicBoolean(true);
+    ExecutorService executorService = Executors.newFixedThreadPool(TRANSFER_THREADS);
+    List<Future<?>> transfers = new ArrayList<>();
+    for (int t = 0; t < TRANSFER_THREADS; t++) {
+      transfers.add(executorService.submit(() -> {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running.get()) {
+          int from = random.nextInt(ACCOUNTS);
+          // half of the transfers go to one account so that it becomes hot
+          int to = random.nextBoolean() ? 0 : random.nextInt(ACCOUNTS);
+          if (from == to) {
+            continue;
+          }
+          try {
+            this.accountsService.amountTransfer(new AmountTransferRequest("Id-" + from, "Id-" + to, new BigDecimal("0.01")));
+          } catch (InsufficientAccountBalanceException ignored) {
+            // the source ran dry, which does not matter here
+          }
+        }
+        return null;
+      }));
+    }
+
+    try {
+      for (int export = 0; export < 20; export++) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long exported = this.accountsExporter.exportAccounts(out);
+
+        BigDecimal sum = BigDecimal.ZERO;
+        Set<String> accountIds = new HashSet<>();
+        for (String line : new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n")) {
+          JsonNode account = this.objectMapper.readTree(line);
+          accountIds.add(account.get("accountId").asText());
+          sum = sum.add(account.get("balance").decimalValue());
+        }
+
+        assertThat(exported).isEqualTo(ACCOUNTS);
+        assertThat(accountIds).hasSize(ACCOUNTS);
+        assertThat(sum).isEqualByComparingTo(total);
+      }
+    } finally {
+      running.set(false);
+      for (Future<?> transfer : transfers) {
+        transfer.get();
+      }
+      executorService.shutdown();
+    }
+  }
+}
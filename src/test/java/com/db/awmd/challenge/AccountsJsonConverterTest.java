@@ -0,0 +1,99 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.web.AccountsJsonConverter;
+import com.db.awmd.challenge.web.AccountsValidator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.SmartValidator;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import javax.validation.Validation;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AccountsJsonConverterTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper()
+    // as configured by Spring Boot
+    .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  private final AccountsJsonConverter converter = new AccountsJsonConverter(objectMapper);
+
+  private final SmartValidator beanValidator = new SpringValidatorAdapter(Validation.buildDefaultValidatorFactory().getValidator());
+
+  private final AccountsValidator accountsValidator = new AccountsValidator(beanValidator);
+
+  @Test
+  public void readsAccountsLikeDataBinding() throws Exception {
+    List<String> bodies = Arrays.asList(
+      "{\"accountId\":\"Id-123\",\"balance\":1000}",
+      "{\"balance\":\"12.50\",\"accountId\":\"Id-123\",\"unknown\":{\"nested\":[1,2]}}",
+      "{\"accountId\":123,\"balance\":1e3}",
+      "{\"accountId\":\"Id-1\",\"accountId\":\"Id-2\",\"balance\":\"\"}",
+      "{\"accountId\":null,\"balance\":-1}",
+      "{\"accountId\":\"\"}",
+      "{}");
+    for (String body : bodies) {
+      Account expected = objectMapper.readValue(body, Account.class);
+      assertThat((Account) read(Account.class, body)).as(body).isEqualTo(expected);
+      assertThat(errorCount(accountsValidator, expected, "account")).as(body)
+        .isEqualTo(errorCount(beanValidator, expected, "account"));
+    }
+  }
+
+  @Test
+  public void readsTransferRequestsLikeDataBinding() throws Exception {
+    List<String> bodies = Arrays.asList(
+      "{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-2\",\"amountToTransfer\":50}",
+      "{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-2\",\"amountToTransfer\":\"0.99\",\"idempotencyKey\":\"key\"}",
+      "{\"fromAccountId\":\"Id-1\",\"toAccountId\":\"Id-2\",\"amountToTransfer\":1,\"idempotencyKey\":\"\"}",
+      "{\"fromAccountId\":\"\",\"toAccountId\":true,\"amountToTransfer\":null}",
+      "{\"toAccountId\":\"Id-2\",\"amountToTransfer\":50,\"extra\":[{}]}");
+    for (String body : bodies) {
+      AmountTransferRequest expected = objectMapper.readValue(body, AmountTransferRequest.class);
+      assertThat((AmountTransferRequest) read(AmountTransferRequest.class, body)).as(body).isEqualTo(expected);
+      assertThat(errorCount(accountsValidator, expected, "amountTransferRequest")).as(body)
+        .isEqualTo(errorCount(beanValidator, expected, "amountTransferRequest"));
+    }
+  }
+
+  @Test
+  public void rejectsBodiesDataBindingRejects() {
+    for (String body : Arrays.asList("[]", "{\"accountId\":{}}", "{\"accountId\":\"Id-1\",\"balance\":\"lots\"}",
+      "{\"accountId\":\"Id-1\",\"balance\":true}", "{\"accountId\":", "   ")) {
+      assertThatThrownBy(() -> read(Account.class, body)).as(body).isInstanceOf(HttpMessageNotReadableException.class);
+    }
+  }
+
+  @Test
+  public void writesAccountsLikeDataBinding() throws Exception {
+    for (Account account : Arrays.asList(new Account("Id-123", new BigDecimal("123.45")),
+      new Account("Id-\"quoted\"\u00e9", new BigDecimal("1E+3")), new Account("Id-null", null))) {
+      MockHttpOutputMessage outputMessage = new MockHttpOutputMessage();
+      converter.write(account, null, outputMessage);
+      assertThat(outputMessage.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo(objectMapper.writeValueAsString(account));
+    }
+  }
+
+  private Object read(Class<?> type, String body) throws Exception {
+    return converter.read(type, new MockHttpInputMessage(body.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static int errorCount(SmartValidator validator, Object target, String objectName) {
+    BeanPropertyBindingResult errors = new BeanPropertyBindingResult(target, objectName);
+    validator.validate(target, errors);
+    return errors.getErrorCount();
+  }
+}
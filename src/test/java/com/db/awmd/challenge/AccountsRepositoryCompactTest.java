@@ -0,0 +1,85 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.exception.AccountDoesNotExistsException;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.repository.AccountsRepositoryCompact;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class AccountsRepositoryCompactTest {
+
+  private final AccountsRepositoryCompact accountsRepository = new AccountsRepositoryCompact(2, false, 16, false, 1000);
+
+  @Test
+  public void createAndGetAccount() {
+    accountsRepository.createAccount(new Account("Id-123", new BigDecimal("123.45")));
+
+    Account account = accountsRepository.getAccount("Id-123");
+    assertThat(account.getAccountId()).isEqualTo("Id-123");
+    assertThat(account.getBalance()).isEqualByComparingTo("123.45");
+  }
+
+  @Test
+  public void createDuplicateAccount() {
+    accountsRepository.createAccount(new Account("Id-123", BigDecimal.ONE));
+    try {
+      accountsRepository.createAccount(new Account("Id-123", BigDecimal.ONE));
+      fail("Should have failed when adding duplicate account");
+    } catch (DuplicateAccountIdException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id Id-123 already exists!");
+    }
+  }
+
+  @Test
+  public void getAccountDoesNotExist() {
+    try {
+      accountsRepository.getAccount("Id-missing");
+      fail("Should have failed for a missing account");
+    } catch (AccountDoesNotExistsException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Account id Id-missing does not exists!");
+    }
+  }
+
+  @Test
+  public void transferByHandle() {
+    accountsRepository.createAccount(new Account("Id-from", new BigDecimal("10")));
+    accountsRepository.createAccount(new Account("Id-to", new BigDecimal("5")));
+    int fromHandle = accountsRepository.getHandle("Id-from");
+    int toHandle = accountsRepository.getHandle("Id-to");
+
+    assertThat(accountsRepository.transfer(fromHandle, toHandle, 250, null)).isTrue();
+    assertThat(accountsRepository.transfer(fromHandle, toHandle, 751, null)).isFalse();
+
+    assertThat(accountsRepository.getAccount("Id-from").getBalance()).isEqualByComparingTo("7.50");
+    assertThat(accountsRepository.getAccount("Id-to").getBalance()).isEqualByComparingTo("7.50");
+  }
+
+  @Test
+  public void transferToSameHandleKeepsBalance() {
+    accountsRepository.createAccount(new Account("Id-123", new BigDecimal("100")));
+    int handle = accountsRepository.getHandle("Id-123");
+
+    assertThat(accountsRepository.transfer(handle, handle, 1000, (fromAccountId, fromUnits, fromVersion, toAccountId, toUnits, toVersion) ->
+      fail("Should not report a change for a transfer to the same account"))).isTrue();
+    assertThat(accountsRepository.transfer(handle, handle, 10001, null)).isFalse();
+
+    assertThat(accountsRepository.getAccount("Id-123").getBalance()).isEqualByComparingTo("100");
+  }
+
+  @Test
+  public void accountsSpanningSeveralSegments() {
+    AccountsRepositoryCompact offHeapRepository = new AccountsRepositoryCompact(0, true, 16, false, 1000);
+    int accountCount = 70000;
+    for (int i = 0; i < accountCount; i++) {
+      offHeapRepository.createAccount(new Account("Id-" + i, BigDecimal.valueOf(i)));
+    }
+
+    assertThat(offHeapRepository.getAccountId(accountCount - 1)).isEqualTo("Id-" + (accountCount - 1));
+    assertThat(offHeapRepository.getAccount("Id-" + (accountCount - 1)).getBalance()).isEqualByComparingTo(String.valueOf(accountCount - 1));
+  }
+}
@@ -2,6 +2,8 @@ package com.db.awmd.challenge;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.AmountTransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.AccountDoesNotExistsException;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
@@ -16,9 +18,14 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -156,8 +163,92 @@ public class AccountsServiceTest {
     fromAccount.setBalance(new BigDecimal(900));
     toAccount.setBalance(new BigDecimal(1100));
 
-    verify(notificationService, times(1)).notifyAboutTransfer(fromAccount,"Amount Debited: " + amountToTransfer + ". You have successfully transferred amount: " + amountToTransfer + " to AccountID: "+ toAccount.getAccountId());
-    verify(notificationService, times(1)).notifyAboutTransfer(toAccount,"Amount Credited: " + amountToTransfer + ". You have received amount: " + amountToTransfer + " from AccountID: " + fromAccount.getAccountId());
+    verify(notificationService, timeout(1000).times(1)).notifyAboutTransfer(fromAccount,"Amount Debited: " + amountToTransfer + ". You have successfully transferred amount: " + amountToTransfer + " to AccountID: "+ toAccount.getAccountId());
+    verify(notificationService, timeout(1000).times(1)).notifyAboutTransfer(toAccount,"Amount Credited: " + amountToTransfer + ". You have received amount: " + amountToTransfer + " from AccountID: " + fromAccount.getAccountId());
   }
 
+
+  @Test
+  public void transferAmountSymmetricConcurrentTransfers() throws Exception{
+    String firstAccountId = "Id-first";
+    String secondAccountId = "Id-second";
+
+    this.accountsService.createAccount(new Account(firstAccountId, new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account(secondAccountId, new BigDecimal(1000)));
+
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    CountDownLatch startLatch = new CountDownLatch(1);
+
+    Future<?> forward = executorService.submit(() -> {
+      startLatch.await();
+      for (int n = 0; n < 500; n++) {
+        this.accountsService.amountTransfer(new AmountTransferRequest(firstAccountId, secondAccountId, BigDecimal.ONE));
+      }
+      return null;
+    });
+    Future<?> backward = executorService.submit(() -> {
+      startLatch.await();
+      for (int n = 0; n < 500; n++) {
+        this.accountsService.amountTransfer(new AmountTransferRequest(secondAccountId, firstAccountId, BigDecimal.ONE));
+      }
+      return null;
+    });
+
+    startLatch.countDown();
+    forward.get();
+    backward.get();
+    executorService.shutdown();
+
+    assertThat(this.accountsService.getAccount(firstAccountId).getBalance()).isEqualByComparingTo("1000");
+    assertThat(this.accountsService.getAccount(secondAccountId).getBalance()).isEqualByComparingTo("1000");
+  }
+
+  @Test
+  public void transferAmountRetriedWithIdempotencyKey() throws Exception{
+    String fromAccountId = "Id-fromAccount";
+    String toAccountId = "Id-toAccount";
+    String idempotencyKey = "transfer-" + System.nanoTime();
+
+    this.accountsService.createAccount(new Account(fromAccountId, new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account(toAccountId, new BigDecimal(1000)));
+
+    AmountTransferRequest amountTransferRequest = new AmountTransferRequest(fromAccountId, toAccountId, new BigDecimal(100), idempotencyKey);
+    this.accountsService.amountTransfer(amountTransferRequest);
+    this.accountsService.amountTransfer(amountTransferRequest);
+
+    assertThat(this.accountsService.getAccount(fromAccountId).getBalance()).isEqualByComparingTo("900");
+    assertThat(this.accountsService.getAccount(toAccountId).getBalance()).isEqualByComparingTo("1100");
+
+    try {
+      this.accountsService.amountTransfer(new AmountTransferRequest(fromAccountId, toAccountId, new BigDecimal(200), idempotencyKey));
+      fail("Should have failed when reusing an idempotency key for a different transfer");
+    } catch (IllegalArgumentException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Idempotency key " + idempotencyKey + " was already used for a different transfer");
+    }
+    assertThat(this.accountsService.getAccount(fromAccountId).getBalance()).isEqualByComparingTo("900");
+  }
+
+  @Test
+  public void tryTransferReportsRejectionsAsResults() throws Exception{
+    String fromAccountId = "Id-fromAccount";
+    String toAccountId = "Id-toAccount";
+
+    this.accountsService.createAccount(new Account(fromAccountId, new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account(toAccountId, new BigDecimal(1000)));
+
+    AmountTransferResult insufficient = this.accountsService.tryAmountTransfer(
+      new AmountTransferRequest(fromAccountId, toAccountId, new BigDecimal(10000)));
+    assertThat(insufficient.getStatus()).isEqualTo(TransferStatus.INSUFFICIENT_BALANCE);
+    assertThat(insufficient.getMessage()).isEqualTo("Insufficient account balance in accountId:"+fromAccountId+"to perform this transaction");
+
+    AmountTransferResult notFound = this.accountsService.tryAmountTransfer(
+      new AmountTransferRequest(fromAccountId, "Id-missing", BigDecimal.TEN));
+    assertThat(notFound.getStatus()).isEqualTo(TransferStatus.ACCOUNT_NOT_FOUND);
+    assertThat(notFound.getMessage()).isEqualTo("Account id Id-missing does not exists!");
+    assertThat(this.accountsService.findAccount("Id-missing")).isNull();
+
+    assertThat(this.accountsService.tryAmountTransfer(new AmountTransferRequest(fromAccountId, toAccountId, BigDecimal.TEN)))
+      .isEqualTo(AmountTransferResult.accepted());
+    assertThat(this.accountsService.getAccount(fromAccountId).getBalance()).isEqualByComparingTo("990");
+  }
 }
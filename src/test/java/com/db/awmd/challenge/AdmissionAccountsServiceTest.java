@@ -0,0 +1,76 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AccountRuntime;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.AmountTransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.service.AccountLockManager;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferAdmission;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"accounts.admission.enabled=true", "accounts.admission.initial-limit=1",
+  "accounts.admission.min-limit=1", "accounts.admission.max-limit=1"})
+public class AdmissionAccountsServiceTest {
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private AccountLockManager accountLockManager;
+
+  @Autowired
+  private TransferAdmission transferAdmission;
+
+  @Before
+  public void clearAccountsData() {
+    accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  public void rememberedOutcomeIsAnsweredWhileOverloaded() throws Exception {
+    for (String accountId : new String[] {"Id-1", "Id-2", "Id-3", "Id-4"}) {
+      this.accountsService.createAccount(new Account(accountId, new BigDecimal(1000)));
+    }
+    AmountTransferRequest keyed = new AmountTransferRequest("Id-1", "Id-2", BigDecimal.TEN, "key-1");
+    assertThat(this.accountsService.tryAmountTransfer(keyed).getStatus()).isEqualTo(TransferStatus.ACCEPTED);
+
+    // a transfer waiting for held locks takes the only slot
+    AccountRuntime account3 = (AccountRuntime) this.accountsService.getAccount("Id-3");
+    AccountRuntime account4 = (AccountRuntime) this.accountsService.getAccount("Id-4");
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    this.accountLockManager.lock(account3, account4);
+    Future<AmountTransferResult> waiting;
+    try {
+      waiting = executorService.submit(() ->
+        this.accountsService.tryAmountTransfer(new AmountTransferRequest("Id-3", "Id-4", BigDecimal.ONE)));
+      while (this.transferAdmission.getInFlight() == 0) {
+        Thread.sleep(1);
+      }
+
+      assertThat(this.accountsService.tryAmountTransfer(keyed).getStatus()).isEqualTo(TransferStatus.ACCEPTED);
+      assertThat(this.accountsService.tryAmountTransfer(new AmountTransferRequest("Id-2", "Id-1", BigDecimal.ONE))
+        .getStatus()).isEqualTo(TransferStatus.OVERLOADED);
+    } finally {
+      this.accountLockManager.unlock(account3, account4);
+    }
+
+    assertThat(waiting.get().getStatus()).isEqualTo(TransferStatus.ACCEPTED);
+    executorService.shutdown();
+    assertThat(this.accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("990");
+  }
+}
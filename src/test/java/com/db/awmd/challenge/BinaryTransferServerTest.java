@@ -0,0 +1,77 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.binary.BinaryProtocol;
+import com.db.awmd.challenge.binary.BinaryTransferClient;
+import com.db.awmd.challenge.binary.BinaryTransferServer;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.AccountsService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"accounts.binary.enabled=true", "accounts.binary.port=0", "accounts.binary.io-threads=2"})
+public class BinaryTransferServerTest {
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Autowired
+  private BinaryTransferServer binaryTransferServer;
+
+  @Before
+  public void clearAccountsData() {
+    accountsService.getAccountsRepository().clearAccounts();
+    accountsService.createAccount(new Account("Id-1", new BigDecimal(1000)));
+    accountsService.createAccount(new Account("Id-2", new BigDecimal(1000)));
+  }
+
+  @Test
+  public void transfer() throws Exception {
+    try (BinaryTransferClient client = client()) {
+      assertThat(client.transfer("Id-1", "Id-2", new BigDecimal("100.50"))).isEqualTo(BinaryProtocol.STATUS_ACCEPTED);
+    }
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("899.50");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("1100.50");
+  }
+
+  @Test
+  public void rejectedTransfers() throws Exception {
+    try (BinaryTransferClient client = client()) {
+      assertThat(client.transfer("Id-1", "Id-2", new BigDecimal(5000))).isEqualTo(BinaryProtocol.STATUS_INSUFFICIENT_BALANCE);
+      assertThat(client.transfer("Id-1", "Id-unknown", BigDecimal.TEN)).isEqualTo(BinaryProtocol.STATUS_ACCOUNT_NOT_FOUND);
+      assertThat(client.transfer("Id-1", "Id-2", new BigDecimal("0.5"))).isEqualTo(BinaryProtocol.STATUS_INVALID_REQUEST);
+      assertThat(client.transfer("", "Id-2", BigDecimal.TEN)).isEqualTo(BinaryProtocol.STATUS_INVALID_REQUEST);
+      // the connection is still usable after rejections
+      assertThat(client.transfer("Id-1", "Id-2", BigDecimal.TEN)).isEqualTo(BinaryProtocol.STATUS_ACCEPTED);
+    }
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("990");
+  }
+
+  @Test
+  public void pipelinedResponsesComeBackInOrder() throws Exception {
+    int requests = 2_000;
+    try (BinaryTransferClient client = client()) {
+      for (int i = 0; i < requests; i++) {
+        client.send(i, i % 2 == 0 ? "Id-1" : "Id-2", i % 2 == 0 ? "Id-2" : "Id-1", BigDecimal.ONE);
+      }
+      for (int i = 0; i < requests; i++) {
+        assertThat(client.receive()).isEqualTo(BinaryProtocol.STATUS_ACCEPTED);
+        assertThat(client.getLastRequestId()).isEqualTo(i);
+      }
+    }
+    assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("1000");
+    assertThat(accountsService.getAccount("Id-2").getBalance()).isEqualByComparingTo("1000");
+  }
+
+  private BinaryTransferClient client() throws Exception {
+    return new BinaryTransferClient("localhost", binaryTransferServer.getPort());
+  }
+}
@@ -0,0 +1,272 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.cluster.ClusterClient;
+import com.db.awmd.challenge.cluster.ClusterLedger;
+import com.db.awmd.challenge.cluster.ClusterTopology;
+import com.db.awmd.challenge.cluster.CrossNodeTransfers;
+import com.db.awmd.challenge.domain.RemoteCredit;
+import com.db.awmd.challenge.domain.RemoteCreditBatch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClusterTest {
+
+  private static final int NODES = 2;
+
+  private static final String SECRET = "cluster-test-secret";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final RestTemplate restTemplate = new RestTemplate();
+
+  private final int[] ports = new int[NODES];
+
+  private final ConfigurableApplicationContext[] nodes = new ConfigurableApplicationContext[NODES];
+
+  public ClusterTest() throws IOException {
+    restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+      @Override
+      public boolean hasError(ClientHttpResponse response) {
+        return false;
+      }
+    });
+    for (int node = 0; node < NODES; node++) {
+      try (ServerSocket socket = new ServerSocket(0)) {
+        ports[node] = socket.getLocalPort();
+      }
+    }
+  }
+
+  @After
+  public void stopNodes() {
+    for (int node = 0; node < NODES; node++) {
+      stop(node);
+    }
+  }
+
+  @Test
+  public void transfersThroughAnyNodeConserveMoney() throws Exception {
+    for (int node = 0; node < NODES; node++) {
+      start(node, false);
+    }
+
+    int accounts = 20;
+    int[] owned = new int[NODES];
+    for (int i = 0; i < accounts; i++) {
+      assertThat(createAccount(0, "Id-" + i, 1000)).isEqualTo(201);
+      owned[topology().ownerOf("Id-" + i)]++;
+    }
+    assertThat(owned).doesNotContain(0);
+
+    ExecutorService clients = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Integer>> transfers = new ArrayList<>();
+      for (int i = 0; i < 400; i++) {
+        transfers.add(clients.submit(() -> {
+          ThreadLocalRandom random = ThreadLocalRandom.current();
+          int from = random.nextInt(accounts);
+          int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+          return transfer(random.nextInt(NODES), "Id-" + from, "Id-" + to, 1 + random.nextInt(100));
+        }));
+      }
+      for (Future<Integer> transfer : transfers) {
+        assertThat(transfer.get()).isIn(202, 403);
+      }
+    } finally {
+      clients.shutdown();
+    }
+
+    awaitSettled();
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < accounts; i++) {
+      total = total.add(balance(1, "Id-" + i));
+    }
+    assertThat(total).isEqualByComparingTo(new BigDecimal(1000 * accounts));
+  }
+
+  @Test
+  public void pendingCreditIsDeliveredExactlyOnceAfterRestarts() throws Exception {
+    start(0, true);
+    start(1, true);
+    String fromAccountId = accountOwnedBy(0);
+    String toAccountId = accountOwnedBy(1);
+    assertThat(createAccount(0, fromAccountId, 1000)).isEqualTo(201);
+    assertThat(createAccount(0, toAccountId, 1000)).isEqualTo(201);
+
+    stop(1);
+    // the credit cannot be confirmed, but the debit is durable and the transfer accepted
+    assertThat(transfer(0, fromAccountId, toAccountId, 100)).isEqualTo(202);
+    assertThat(nodes[0].getBean(CrossNodeTransfers.class).pendingCredits()[1]).isEqualTo(1L);
+
+    stop(0);
+    start(0, true);
+    start(1, true);
+    awaitSettled();
+    assertThat(balance(0, fromAccountId)).isEqualByComparingTo("900");
+    assertThat(balance(0, toAccountId)).isEqualByComparingTo("1100");
+
+    // a late copy of the same credit is recognised as a duplicate
+    RemoteCreditBatch duplicate = new RemoteCreditBatch(0, nodes[0].getBean(ClusterLedger.class).getIncarnation(),
+      Collections.singletonList(new RemoteCredit(1L, fromAccountId, toAccountId, new BigDecimal(100))));
+    assertThat(sendCredits(1, SECRET, duplicate).getStatusCodeValue()).isEqualTo(200);
+
+    stop(1);
+    start(1, true);
+    assertThat(balance(1, toAccountId)).isEqualByComparingTo("1100");
+  }
+
+  @Test
+  public void creditsWithoutTheClusterSecretAreRefused() throws Exception {
+    start(0, false);
+    start(1, false);
+    String toAccountId = accountOwnedBy(1);
+    assertThat(createAccount(0, toAccountId, 1000)).isEqualTo(201);
+
+    RemoteCreditBatch forged = new RemoteCreditBatch(0, nodes[0].getBean(ClusterLedger.class).getIncarnation(),
+      Collections.singletonList(new RemoteCredit(1_000_000L, accountOwnedBy(0), toAccountId, new BigDecimal(500))));
+    assertThat(sendCredits(1, null, forged).getStatusCodeValue()).isEqualTo(403);
+    assertThat(sendCredits(1, "guessed", forged).getStatusCodeValue()).isEqualTo(403);
+    assertThat(balance(1, toAccountId)).isEqualByComparingTo("1000");
+
+    // the genuine credits from node 0 are still applied
+    String fromAccountId = accountOwnedBy(0);
+    assertThat(createAccount(0, fromAccountId, 1000)).isEqualTo(201);
+    assertThat(transfer(0, fromAccountId, toAccountId, 100)).isEqualTo(202);
+    awaitSettled();
+    assertThat(balance(1, toAccountId)).isEqualByComparingTo("1100");
+  }
+
+  @Test
+  public void creditThatCannotBeAppliedIsRefundedWithoutHoldingUpLaterOnes() throws Exception {
+    for (int node = 0; node < NODES; node++) {
+      start(node, false, "--accounts.balance.fixed-point=true");
+    }
+    String fromAccountId = accountOwnedBy(0);
+    String fullAccountId = accountOwnedBy(1);
+    String toAccountId = accountOwnedBy(1, fullAccountId);
+    assertThat(createAccount(0, fromAccountId, 1000)).isEqualTo(201);
+    assertThat(createAccount(0, fullAccountId, Long.MAX_VALUE / 100)).isEqualTo(201);
+    assertThat(createAccount(0, toAccountId, 1000)).isEqualTo(201);
+
+    // the deposit would overflow the fixed-point balance
+    assertThat(transfer(0, fromAccountId, fullAccountId, 100)).isEqualTo(500);
+    assertThat(balance(0, fromAccountId)).isEqualByComparingTo("1000");
+
+    assertThat(transfer(0, fromAccountId, toAccountId, 100)).isEqualTo(202);
+    awaitSettled();
+    assertThat(balance(0, fromAccountId)).isEqualByComparingTo("900");
+    assertThat(balance(0, toAccountId)).isEqualByComparingTo("1100");
+  }
+
+  private void start(int node, boolean journal, String... extraArgs) {
+    List<String> args = new ArrayList<>();
+    args.add("--server.port=" + ports[node]);
+    args.add("--spring.jmx.enabled=false");
+    args.add("--logging.level.com.db.awmd.challenge=WARN");
+    args.add("--accounts.cluster.enabled=true");
+    args.add("--accounts.cluster.nodes=http://localhost:" + ports[0] + ",http://localhost:" + ports[1]);
+    args.add("--accounts.cluster.node-index=" + node);
+    args.add("--accounts.cluster.secret=" + SECRET);
+    args.add("--accounts.cluster.credit-timeout=500");
+    args.add("--accounts.cluster.retry-interval=100");
+    if (journal) {
+      args.add("--accounts.journal.enabled=true");
+      args.add("--accounts.journal.durability=SYNC");
+      args.add("--accounts.journal.directory=" + temporaryFolder.getRoot().toPath().resolve("node-" + node));
+    }
+    args.addAll(Arrays.asList(extraArgs));
+    nodes[node] = SpringApplication.run(DevChallengeApplication.class, args.toArray(new String[0]));
+  }
+
+  private void stop(int node) {
+    if (nodes[node] != null) {
+      nodes[node].close();
+      nodes[node] = null;
+    }
+  }
+
+  private ClusterTopology topology() {
+    return nodes[0].getBean(ClusterTopology.class);
+  }
+
+  private String accountOwnedBy(int node, String... besides) {
+    for (int i = 0; ; i++) {
+      if (topology().ownerOf("Id-" + i) == node && !Arrays.asList(besides).contains("Id-" + i)) {
+        return "Id-" + i;
+      }
+    }
+  }
+
+  private void awaitSettled() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10_000L;
+    for (int node = 0; node < NODES; node++) {
+      CrossNodeTransfers crossNodeTransfers = nodes[node].getBean(CrossNodeTransfers.class);
+      while (Arrays.stream(crossNodeTransfers.pendingCredits()).sum() > 0L) {
+        assertThat(System.currentTimeMillis()).as("credits settled in time").isLessThan(deadline);
+        Thread.sleep(20L);
+      }
+    }
+  }
+
+  private int createAccount(int node, String accountId, long balance) {
+    return send(node, HttpMethod.POST, "/v1/accounts",
+      "{\"accountId\":\"" + accountId + "\",\"balance\":" + balance + "}").getStatusCodeValue();
+  }
+
+  private int transfer(int node, String fromAccountId, String toAccountId, long amount) {
+    return send(node, HttpMethod.PUT, "/v1/accounts/amounttransfer",
+      "{\"fromAccountId\":\"" + fromAccountId + "\",\"toAccountId\":\"" + toAccountId
+        + "\",\"amountToTransfer\":" + amount + "}").getStatusCodeValue();
+  }
+
+  private BigDecimal balance(int node, String accountId) throws IOException {
+    String body = send(node, HttpMethod.GET, "/v1/accounts/" + accountId, null).getBody();
+    return objectMapper.readTree(body).get("balance").decimalValue();
+  }
+
+  private ResponseEntity<String> sendCredits(int node, String secret, RemoteCreditBatch batch) throws IOException {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    if (secret != null) {
+      headers.set(ClusterClient.SECRET_HEADER, secret);
+    }
+    return restTemplate.exchange("http://localhost:" + ports[node] + "/v1/cluster/credits", HttpMethod.POST,
+      new HttpEntity<>(objectMapper.writeValueAsString(batch), headers), String.class);
+  }
+
+  private ResponseEntity<String> send(int node, HttpMethod method, String path, String body) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    return restTemplate.exchange("http://localhost:" + ports[node] + path, method, new HttpEntity<>(body, headers), String.class);
+  }
+}
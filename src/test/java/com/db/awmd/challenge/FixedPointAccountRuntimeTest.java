@@ -0,0 +1,72 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.FixedPointAccountRuntime;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class FixedPointAccountRuntimeTest {
+
+  @Test
+  public void transferTo() {
+    FixedPointAccountRuntime fromAccount = new FixedPointAccountRuntime("Id-from", new BigDecimal("100.50"), true, 2);
+    FixedPointAccountRuntime toAccount = new FixedPointAccountRuntime("Id-to", new BigDecimal("10"), true, 2);
+
+    assertThat(fromAccount.transferTo(toAccount, new BigDecimal("0.25"))).isTrue();
+
+    assertThat(fromAccount.getBalanceUnits()).isEqualTo(10025L);
+    assertThat(toAccount.getBalanceUnits()).isEqualTo(1025L);
+    assertThat(fromAccount.getBalance()).isEqualByComparingTo("100.25");
+    assertThat(toAccount.getBalance()).isEqualByComparingTo("10.25");
+  }
+
+  @Test
+  public void transferToSameAccountKeepsBalance() {
+    FixedPointAccountRuntime account = new FixedPointAccountRuntime("Id-123", new BigDecimal("100"), true, 2);
+
+    assertThat(account.transferTo(account, new BigDecimal("10"))).isTrue();
+    assertThat(account.transferTo(account, new BigDecimal("100.01"))).isFalse();
+
+    assertThat(account.getBalanceUnits()).isEqualTo(10000L);
+  }
+
+  @Test
+  public void transferToInsufficientBalance() {
+    FixedPointAccountRuntime fromAccount = new FixedPointAccountRuntime("Id-from", new BigDecimal("1"), true, 2);
+    FixedPointAccountRuntime toAccount = new FixedPointAccountRuntime("Id-to", new BigDecimal("1"), true, 2);
+
+    assertThat(fromAccount.transferTo(toAccount, new BigDecimal("1.01"))).isFalse();
+
+    assertThat(fromAccount.getBalanceUnits()).isEqualTo(100L);
+    assertThat(toAccount.getBalanceUnits()).isEqualTo(100L);
+  }
+
+  @Test
+  public void transferToOverflowLeavesBalancesUnchanged() {
+    FixedPointAccountRuntime fromAccount = new FixedPointAccountRuntime("Id-from", new BigDecimal("10"), true, 0);
+    FixedPointAccountRuntime toAccount = new FixedPointAccountRuntime("Id-to", BigDecimal.valueOf(Long.MAX_VALUE), true, 0);
+
+    try {
+      fromAccount.transferTo(toAccount, BigDecimal.ONE);
+      fail("Should have failed when the credit overflows");
+    } catch (ArithmeticException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Balance of account id Id-to would overflow");
+    }
+
+    assertThat(fromAccount.getBalanceUnits()).isEqualTo(10L);
+    assertThat(toAccount.getBalanceUnits()).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void amountWithTooManyDecimalPlacesIsRejected() {
+    try {
+      new FixedPointAccountRuntime("Id-123", new BigDecimal("1.001"), true, 2);
+      fail("Should have failed for an amount with more decimal places than the scale");
+    } catch (IllegalArgumentException ex) {
+      assertThat(ex.getMessage()).isEqualTo("Amount 1.001 cannot be represented with 2 decimal places");
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
+import com.db.awmd.challenge.service.AccountsService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"accounts.hot-accounts.threshold=1", "accounts.notification.backpressure=DROP"})
+public class HotAccountsServiceTest {
+
+  private static final int SOURCES = 8;
+
+  private static final int TRANSFERS_PER_SOURCE = 500;
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Before
+  public void clearAccountsData() {
+    accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  public void transferAmountToContendedAccount() throws Exception {
+    this.accountsService.createAccount(new Account("Id-sink", new BigDecimal(1000)));
+    for (int i = 0; i < SOURCES; i++) {
+      this.accountsService.createAccount(new Account("Id-source-" + i, new BigDecimal(TRANSFERS_PER_SOURCE)));
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(SOURCES);
+    CountDownLatch startLatch = new CountDownLatch(1);
+    List<Future<?>> sources = new ArrayList<>();
+    for (int i = 0; i < SOURCES; i++) {
+      String sourceAccountId = "Id-source-" + i;
+      sources.add(executorService.submit(() -> {
+        startLatch.await();
+        for (int n = 0; n < TRANSFERS_PER_SOURCE; n++) {
+          this.accountsService.amountTransfer(new AmountTransferRequest(sourceAccountId, "Id-sink", BigDecimal.ONE));
+          if (n % 2 == 1) {
+            this.accountsService.amountTransfer(new AmountTransferRequest("Id-sink", sourceAccountId, BigDecimal.ONE));
+          }
+        }
+        return null;
+      }));
+    }
+
+    startLatch.countDown();
+    for (Future<?> source : sources) {
+      source.get();
+    }
+    executorService.shutdown();
+
+    int returned = TRANSFERS_PER_SOURCE / 2;
+    assertThat(this.accountsService.getAccount("Id-sink").getBalance())
+      .isEqualByComparingTo(new BigDecimal(1000 + SOURCES * (TRANSFERS_PER_SOURCE - returned)));
+    for (int i = 0; i < SOURCES; i++) {
+      assertThat(this.accountsService.getAccount("Id-source-" + i).getBalance())
+        .isEqualByComparingTo(new BigDecimal(returned));
+    }
+  }
+
+  @Test
+  public void transferAmountFromContendedAccountMoreThanBalance() throws Exception {
+    this.accountsService.createAccount(new Account("Id-sink", new BigDecimal(10)));
+    this.accountsService.createAccount(new Account("Id-other", new BigDecimal(0)));
+
+    try {
+      this.accountsService.amountTransfer(new AmountTransferRequest("Id-sink", "Id-other", new BigDecimal(100)));
+      fail("Should have failed for insufficient balance");
+    } catch (InsufficientAccountBalanceException ex) {
+      assertThat(this.accountsService.getAccount("Id-sink").getBalance()).isEqualByComparingTo("10");
+      assertThat(this.accountsService.getAccount("Id-other").getBalance()).isEqualByComparingTo("0");
+    }
+  }
+}
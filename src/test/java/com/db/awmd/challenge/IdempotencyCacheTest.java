@@ -0,0 +1,101 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.AmountTransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.service.IdempotencyCache;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IdempotencyCacheTest {
+
+  @Test
+  public void executeRunsTransferOncePerKey() {
+    IdempotencyCache idempotencyCache = new IdempotencyCache(100, 600);
+    AtomicInteger transfers = new AtomicInteger();
+
+    for (int n = 0; n < 3; n++) {
+      AmountTransferResult result = idempotencyCache.execute(request("key-1"), () -> {
+        transfers.incrementAndGet();
+        return AmountTransferResult.accepted();
+      });
+      assertThat(result.getStatus()).isEqualTo(TransferStatus.ACCEPTED);
+    }
+
+    assertThat(transfers.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void executeRetriesTransientFailures() {
+    IdempotencyCache idempotencyCache = new IdempotencyCache(100, 600);
+
+    idempotencyCache.execute(request("key-1"), () -> new AmountTransferResult(TransferStatus.LOCK_TIMEOUT, "Timed out"));
+    AmountTransferResult result = idempotencyCache.execute(request("key-1"), AmountTransferResult::accepted);
+
+    assertThat(result.getStatus()).isEqualTo(TransferStatus.ACCEPTED);
+  }
+
+  @Test
+  public void executeRemembersUnexpectedFailures() {
+    IdempotencyCache idempotencyCache = new IdempotencyCache(100, 600);
+
+    idempotencyCache.execute(request("key-1"), () -> new AmountTransferResult(TransferStatus.FAILED, "Journal failed"));
+    AmountTransferResult result = idempotencyCache.execute(request("key-1"), AmountTransferResult::accepted);
+
+    assertThat(result.getStatus()).isEqualTo(TransferStatus.FAILED);
+  }
+
+  @Test
+  public void retryWithAmountInAnotherScaleIsTheSameTransfer() {
+    IdempotencyCache idempotencyCache = new IdempotencyCache(100, 600);
+    AtomicInteger transfers = new AtomicInteger();
+
+    for (String amount : new String[] {"10", "10.00", "1E+1"}) {
+      idempotencyCache.execute(new AmountTransferRequest("Id-from", "Id-to", new BigDecimal(amount), "key-1"), () -> {
+        transfers.incrementAndGet();
+        return AmountTransferResult.accepted();
+      });
+    }
+
+    assertThat(transfers.get()).isEqualTo(1);
+    assertThatThrownBy(() -> idempotencyCache.execute(
+      new AmountTransferRequest("Id-from", "Id-to", new BigDecimal("10.01"), "key-1"), AmountTransferResult::accepted))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Idempotency key key-1 was already used for a different transfer");
+  }
+
+  @Test
+  public void cacheStaysWithinMaxEntries() {
+    IdempotencyCache idempotencyCache = new IdempotencyCache(64, 600);
+
+    for (int n = 0; n < 10000; n++) {
+      idempotencyCache.execute(request("key-" + n), AmountTransferResult::accepted);
+    }
+
+    assertThat(idempotencyCache.size()).isLessThanOrEqualTo(64);
+  }
+
+  @Test
+  public void expiredKeysTransferAgain() {
+    IdempotencyCache idempotencyCache = new IdempotencyCache(100, 0);
+    AtomicInteger transfers = new AtomicInteger();
+
+    for (int n = 0; n < 2; n++) {
+      idempotencyCache.execute(request("key-1"), () -> {
+        transfers.incrementAndGet();
+        return AmountTransferResult.accepted();
+      });
+    }
+
+    assertThat(transfers.get()).isEqualTo(2);
+  }
+
+  private static AmountTransferRequest request(String idempotencyKey) {
+    return new AmountTransferRequest("Id-from", "Id-to", new BigDecimal(100), idempotencyKey);
+  }
+}
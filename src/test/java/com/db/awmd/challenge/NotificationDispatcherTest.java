@@ -0,0 +1,50 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.NotificationDispatcher.BackpressurePolicy;
+import com.db.awmd.challenge.service.NotificationService;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+public class NotificationDispatcherTest {
+
+  private NotificationDispatcher notificationDispatcher;
+
+  @After
+  public void shutdownDispatcher() throws Exception {
+    notificationDispatcher.shutdown();
+  }
+
+  @Test
+  public void dispatchCoalescesNotificationsForSameAccount() throws Exception {
+    notificationDispatcher = new NotificationDispatcher(true, 100, 1, 200, 100, BackpressurePolicy.BLOCK);
+    NotificationService notificationService = Mockito.mock(NotificationService.class);
+    Account account = new Account("Id-123");
+    Account otherAccount = new Account("Id-456");
+
+    notificationDispatcher.dispatch(notificationService, account, () -> "first");
+    notificationDispatcher.dispatch(notificationService, otherAccount, () -> "other");
+    notificationDispatcher.dispatch(notificationService, account, () -> "second");
+
+    verify(notificationService, timeout(2000)).notifyAboutTransfer(account, "first\nsecond");
+    verify(notificationService, timeout(2000)).notifyAboutTransfer(otherAccount, "other");
+    verify(notificationService, never()).notifyAboutTransfer(account, "first");
+  }
+
+  @Test
+  public void dispatchDeliversInlineWhenSynchronous() throws Exception {
+    notificationDispatcher = new NotificationDispatcher(false, 100, 1, 200, 100, BackpressurePolicy.BLOCK);
+    NotificationService notificationService = Mockito.mock(NotificationService.class);
+    Account account = new Account("Id-123");
+
+    notificationDispatcher.dispatch(notificationService, account, () -> "description");
+
+    verify(notificationService).notifyAboutTransfer(account, "description");
+  }
+}
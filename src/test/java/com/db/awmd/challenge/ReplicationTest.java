@@ -0,0 +1,151 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.replication.ReplicationFollower;
+import com.db.awmd.challenge.replication.ReplicationPrimary;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReplicationTest {
+
+  private static final int FOLLOWERS = 2;
+
+  private static final int ACCOUNTS = 20;
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final RestTemplate restTemplate = new RestTemplate();
+
+  private final List<ConfigurableApplicationContext> instances = new ArrayList<>();
+
+  public ReplicationTest() {
+    restTemplate.setErrorHandler(new DefaultResponseErrorHandler() {
+      @Override
+      public boolean hasError(ClientHttpResponse response) {
+        return false;
+      }
+    });
+  }
+
+  @After
+  public void stopInstances() {
+    for (int i = instances.size() - 1; i >= 0; i--) {
+      instances.get(i).close();
+    }
+  }
+
+  @Test
+  public void followersServeTheBalancesOfThePrimary() throws Exception {
+    ConfigurableApplicationContext primary = start(
+      "--accounts.replication.role=PRIMARY",
+      "--accounts.replication.port=0",
+      "--accounts.journal.enabled=true",
+      "--accounts.journal.directory=" + temporaryFolder.getRoot().getPath());
+    int replicationPort = primary.getBean(ReplicationPrimary.class).getPort();
+
+    long[] balances = new long[ACCOUNTS];
+    for (int i = 0; i < ACCOUNTS; i++) {
+      balances[i] = 1000;
+      assertThat(send(primary, HttpMethod.POST, "/v1/accounts",
+        "{\"accountId\":\"Id-" + i + "\",\"balance\":1000}").getStatusCodeValue()).isEqualTo(201);
+    }
+
+    List<ConfigurableApplicationContext> followers = new ArrayList<>();
+    for (int f = 0; f < FOLLOWERS; f++) {
+      followers.add(start(
+        "--accounts.replication.role=FOLLOWER",
+        "--accounts.replication.primary=localhost:" + replicationPort));
+    }
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < 200; i++) {
+      int from = random.nextInt(ACCOUNTS);
+      int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+      assertThat(send(primary, HttpMethod.PUT, "/v1/accounts/amounttransfer",
+        "{\"fromAccountId\":\"Id-" + from + "\",\"toAccountId\":\"Id-" + to + "\",\"amountToTransfer\":7}").getStatusCodeValue())
+        .isEqualTo(202);
+      balances[from] -= 7;
+      balances[to] += 7;
+    }
+
+    for (ConfigurableApplicationContext follower : followers) {
+      awaitCaughtUp(primary, follower);
+      for (int i = 0; i < ACCOUNTS; i++) {
+        JsonNode account = read(send(follower, HttpMethod.GET, "/v1/accounts/Id-" + i, null));
+        assertThat(account.get("balance").decimalValue()).isEqualByComparingTo(new BigDecimal(balances[i]));
+      }
+      assertThat(read(send(follower, HttpMethod.GET, "/v1/accounts/summary", null)).get("total").decimalValue())
+        .isEqualByComparingTo(new BigDecimal(1000 * ACCOUNTS));
+      assertThat(read(send(follower, HttpMethod.GET, "/v1/replication/status", null)).get("lagBytes").asLong())
+        .isEqualTo(0L);
+
+      assertThat(send(follower, HttpMethod.PUT, "/v1/accounts/amounttransfer",
+        "{\"fromAccountId\":\"Id-0\",\"toAccountId\":\"Id-1\",\"amountToTransfer\":1}").getStatusCodeValue())
+        .isEqualTo(409);
+    }
+
+    JsonNode status = read(send(primary, HttpMethod.GET, "/v1/replication/status", null));
+    assertThat(status.get("role").asText()).isEqualTo("PRIMARY");
+    assertThat(status.get("followers")).hasSize(FOLLOWERS);
+  }
+
+  private ConfigurableApplicationContext start(String... properties) {
+    List<String> args = new ArrayList<>();
+    args.add("--server.port=0");
+    args.add("--spring.jmx.enabled=false");
+    args.add("--logging.level.com.db.awmd.challenge=WARN");
+    args.add("--accounts.replication.heartbeat-interval=20");
+    for (String property : properties) {
+      args.add(property);
+    }
+    ConfigurableApplicationContext instance = SpringApplication.run(DevChallengeApplication.class, args.toArray(new String[0]));
+    instances.add(instance);
+    return instance;
+  }
+
+  private void awaitCaughtUp(ConfigurableApplicationContext primary, ConfigurableApplicationContext follower) throws InterruptedException {
+    long position = primary.getBean(ReplicationPrimary.class).getPosition();
+    ReplicationFollower replicationFollower = follower.getBean(ReplicationFollower.class);
+    long deadline = System.currentTimeMillis() + 10_000L;
+    while (replicationFollower.getAppliedPosition() < position) {
+      assertThat(System.currentTimeMillis()).as("follower caught up in time").isLessThan(deadline);
+      Thread.sleep(10L);
+    }
+  }
+
+  private JsonNode read(ResponseEntity<String> response) throws IOException {
+    assertThat(response.getStatusCodeValue()).isEqualTo(200);
+    return objectMapper.readTree(response.getBody());
+  }
+
+  private ResponseEntity<String> send(ConfigurableApplicationContext instance, HttpMethod method, String path, String body) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    String port = instance.getEnvironment().getProperty("local.server.port");
+    return restTemplate.exchange("http://localhost:" + port + path, method, new HttpEntity<>(body, headers), String.class);
+  }
+}
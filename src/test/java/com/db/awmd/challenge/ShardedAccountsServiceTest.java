@@ -0,0 +1,94 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.exception.InsufficientAccountBalanceException;
+import com.db.awmd.challenge.service.AccountsService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"accounts.transfer.mode=sharded", "accounts.transfer.shards=4"})
+public class ShardedAccountsServiceTest {
+
+  @Autowired
+  private AccountsService accountsService;
+
+  @Before
+  public void clearAccountsData() {
+    accountsService.getAccountsRepository().clearAccounts();
+  }
+
+  @Test
+  public void transferAmount() throws Exception{
+    this.accountsService.createAccount(new Account("Id-fromAccount", new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account("Id-toAccount", new BigDecimal(1000)));
+
+    this.accountsService.amountTransfer(new AmountTransferRequest("Id-fromAccount", "Id-toAccount", new BigDecimal(100)));
+
+    assertThat(this.accountsService.getAccount("Id-fromAccount").getBalance()).isEqualByComparingTo("900");
+    assertThat(this.accountsService.getAccount("Id-toAccount").getBalance()).isEqualByComparingTo("1100");
+  }
+
+  @Test
+  public void transferAmountAmountMoreThanBalance() throws Exception{
+    this.accountsService.createAccount(new Account("Id-fromAccount", new BigDecimal(1000)));
+    this.accountsService.createAccount(new Account("Id-toAccount", new BigDecimal(1000)));
+
+    try {
+      this.accountsService.amountTransfer(new AmountTransferRequest("Id-fromAccount", "Id-toAccount", new BigDecimal(10000)));
+      fail("Should have failed when transferring more than the balance");
+    } catch (InsufficientAccountBalanceException insufficientAccountBalanceException) {
+      assertThat(insufficientAccountBalanceException.getMessage()).isEqualTo("Insufficient account balance in accountId:Id-fromAccountto perform this transaction");
+    }
+  }
+
+  @Test
+  public void transferAmountConcurrentTransfersConserveMoney() throws Exception{
+    int accountCount = 20;
+    for (int i = 0; i < accountCount; i++) {
+      this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(100)));
+    }
+
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      futures.add(executorService.submit(() -> {
+        for (int n = 0; n < 1000; n++) {
+          int from = ThreadLocalRandom.current().nextInt(accountCount);
+          int to = ThreadLocalRandom.current().nextInt(accountCount);
+          try {
+            this.accountsService.amountTransfer(new AmountTransferRequest("Id-" + from, "Id-" + to, new BigDecimal(7)));
+          } catch (InsufficientAccountBalanceException ignored) {
+          }
+        }
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executorService.shutdown();
+
+    BigDecimal total = BigDecimal.ZERO;
+    for (int i = 0; i < accountCount; i++) {
+      total = total.add(this.accountsService.getAccount("Id-" + i).getBalance());
+    }
+    assertThat(total).isEqualByComparingTo("2000");
+  }
+}
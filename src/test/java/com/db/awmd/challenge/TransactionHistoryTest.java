@@ -0,0 +1,119 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.TransactionEntry;
+import com.db.awmd.challenge.domain.TransactionPage;
+import com.db.awmd.challenge.service.TransactionHistory;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransactionHistoryTest {
+
+  @Test
+  public void pagesThroughRetainedTransactionsNewestFirst() {
+    TransactionHistory transactionHistory = new TransactionHistory(100, 10000);
+    for (int n = 1; n <= 250; n++) {
+      transactionHistory.recordTransfer("Id-1", "Id-2", BigDecimal.valueOf(n));
+    }
+
+    List<TransactionEntry> entries = new ArrayList<>();
+    String cursor = null;
+    do {
+      TransactionPage page = transactionHistory.getTransactions("Id-1", cursor, 30);
+      assertThat(page.getTransactions().size()).isLessThanOrEqualTo(30);
+      entries.addAll(page.getTransactions());
+      cursor = page.getNextCursor();
+    } while (cursor != null);
+
+    assertThat(entries).hasSize(100);
+    assertThat(entries.get(0).getAmount()).isEqualByComparingTo("-250");
+    assertThat(entries.get(0).getCounterpartyAccountId()).isEqualTo("Id-2");
+    assertThat(entries.get(99).getAmount()).isEqualByComparingTo("-151");
+
+    TransactionEntry credit = transactionHistory.getTransactions("Id-2", null, 1).getTransactions().get(0);
+    assertThat(credit.getAmount()).isEqualByComparingTo("250");
+    assertThat(credit.getTransactionId()).isEqualTo(entries.get(0).getTransactionId());
+  }
+
+  @Test
+  public void keepsAmountsExactly() {
+    TransactionHistory transactionHistory = new TransactionHistory(100, 10000);
+    transactionHistory.recordTransfer("Id-1", "Id-2", new BigDecimal("12.345"));
+
+    assertThat(transactionHistory.getTransactions("Id-2", null, 10).getTransactions().get(0).getAmount())
+      .isEqualTo(new BigDecimal("12.345"));
+  }
+
+  @Test
+  public void memoryGrowsWithEntriesUpToRetention() {
+    TransactionHistory transactionHistory = new TransactionHistory(100, 10000);
+    assertThat(TransactionHistory.BYTES_PER_ENTRY).isEqualTo(29);
+
+    for (int n = 1; n <= 3; n++) {
+      transactionHistory.recordTransfer("Id-1", "Id-2", BigDecimal.ONE);
+    }
+    // arrays start at 8 entries
+    assertThat(transactionHistory.retainedBytes("Id-1")).isEqualTo(8 * TransactionHistory.BYTES_PER_ENTRY);
+
+    for (int n = 1; n <= 1000; n++) {
+      transactionHistory.recordTransfer("Id-1", "Id-2", BigDecimal.ONE);
+    }
+    assertThat(transactionHistory.retainedBytes("Id-1")).isEqualTo(100 * TransactionHistory.BYTES_PER_ENTRY);
+    assertThat(transactionHistory.retainedBytes("Id-3")).isZero();
+  }
+
+  @Test
+  public void retentionCanBeSetPerAccount() {
+    TransactionHistory transactionHistory = new TransactionHistory(100, 10000);
+    transactionHistory.setRetention("Id-1", 10);
+    transactionHistory.setRetention("Id-3", 0);
+    for (int n = 1; n <= 50; n++) {
+      transactionHistory.recordTransfer("Id-1", "Id-2", BigDecimal.valueOf(n));
+      transactionHistory.recordTransfer("Id-3", "Id-2", BigDecimal.valueOf(n));
+    }
+
+    TransactionPage page = transactionHistory.getTransactions("Id-1", null, 100);
+    assertThat(page.getTransactions()).hasSize(10);
+    assertThat(page.getNextCursor()).isNull();
+    assertThat(transactionHistory.retainedBytes("Id-1")).isEqualTo(10 * TransactionHistory.BYTES_PER_ENTRY);
+    assertThat(transactionHistory.getTransactions("Id-2", null, 500).getTransactions()).hasSize(100);
+    assertThat(transactionHistory.getTransactions("Id-3", null, 100).getTransactions()).isEmpty();
+
+    transactionHistory.setRetention("Id-2", 5);
+    assertThat(transactionHistory.getTransactions("Id-2", null, 100).getTransactions())
+      .extracting(TransactionEntry::getAmount)
+      .containsExactly(new BigDecimal(50), new BigDecimal(50), new BigDecimal(49), new BigDecimal(49), new BigDecimal(48));
+  }
+
+  @Test
+  public void readersNeverSeeTornEntries() throws Exception {
+    TransactionHistory transactionHistory = new TransactionHistory(16, 10000);
+    AtomicBoolean running = new AtomicBoolean(true);
+
+    // the only writer, so each credit's amount equals its transaction id
+    Thread writer = new Thread(() -> {
+      for (long n = 1; running.get(); n++) {
+        transactionHistory.recordTransfer("Id-1", "Id-2", BigDecimal.valueOf(n));
+      }
+    });
+    writer.start();
+    try {
+      for (int n = 0; n < 20000; n++) {
+        long previous = Long.MAX_VALUE;
+        for (TransactionEntry entry : transactionHistory.getTransactions("Id-2", null, 16).getTransactions()) {
+          assertThat(entry.getAmount().longValueExact()).isEqualTo(entry.getTransactionId());
+          assertThat(entry.getTransactionId()).isLessThan(previous);
+          previous = entry.getTransactionId();
+        }
+      }
+    } finally {
+      running.set(false);
+      writer.join();
+    }
+  }
+}
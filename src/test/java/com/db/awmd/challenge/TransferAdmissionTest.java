@@ -0,0 +1,93 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.AmountTransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.service.TransferAdmission;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferAdmissionTest {
+
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+  private static long startedAgo(long nanos) {
+    return System.nanoTime() - nanos;
+  }
+
+  @Test
+  public void limitGrowsWhileTransfersMeetTheObjectiveAndBacksOffOtherwise() {
+    TransferAdmission transferAdmission = new TransferAdmission(true, 10, 4, 12, 50, 0.5, 100, 1);
+
+    for (int n = 0; n < 10; n++) {
+      assertThat(transferAdmission.admit("Id-" + n, "Id-sink-" + n)).isNull();
+    }
+    assertThat(transferAdmission.admit("Id-10", "Id-sink-10").getStatus()).isEqualTo(TransferStatus.OVERLOADED);
+
+    for (int n = 0; n < 5; n++) {
+      transferAdmission.complete("Id-" + n, "Id-sink-" + n, startedAgo(FAST), TransferStatus.ACCEPTED);
+    }
+    assertThat(transferAdmission.getLimit()).isEqualTo(12);
+
+    transferAdmission.complete("Id-5", "Id-sink-5", startedAgo(SLOW), TransferStatus.ACCEPTED);
+    assertThat(transferAdmission.getLimit()).isEqualTo(6);
+    // started before the cut, so it does not cut again
+    transferAdmission.complete("Id-6", "Id-sink-6", startedAgo(FAST), TransferStatus.LOCK_TIMEOUT);
+    assertThat(transferAdmission.getLimit()).isEqualTo(6);
+
+    long start = System.nanoTime();
+    assertThat(transferAdmission.admit("Id-11", "Id-sink-11")).isNull();
+    transferAdmission.complete("Id-11", "Id-sink-11", start, TransferStatus.LOCK_TIMEOUT);
+    assertThat(transferAdmission.getLimit()).isEqualTo(4);
+
+    for (int n = 7; n < 10; n++) {
+      transferAdmission.complete("Id-" + n, "Id-sink-" + n, startedAgo(FAST), TransferStatus.ACCEPTED);
+    }
+    assertThat(transferAdmission.getInFlight()).isZero();
+  }
+
+  @Test
+  public void burstOfSlowTransfersCutsLimitOnce() {
+    TransferAdmission transferAdmission = new TransferAdmission(true, 100, 8, 1000, 50, 0.9, 100, 1);
+
+    long start = System.nanoTime();
+    for (int n = 0; n < 50; n++) {
+      assertThat(transferAdmission.admit("Id-" + n, "Id-sink")).isNull();
+    }
+    for (int n = 0; n < 50; n++) {
+      transferAdmission.complete("Id-" + n, "Id-sink", start - SLOW, TransferStatus.ACCEPTED);
+    }
+
+    assertThat(transferAdmission.getLimit()).isEqualTo(90);
+  }
+
+  @Test
+  public void accountCannotTakeMoreThanItsShare() {
+    TransferAdmission transferAdmission = new TransferAdmission(true, 100, 8, 100, 50, 0.9, 2, 1);
+
+    assertThat(transferAdmission.admit("Id-1", "Id-hot")).isNull();
+    assertThat(transferAdmission.admit("Id-hot", "Id-2")).isNull();
+    AmountTransferResult rejection = transferAdmission.admit("Id-3", "Id-hot");
+    assertThat(rejection.getStatus()).isEqualTo(TransferStatus.OVERLOADED);
+    assertThat(rejection.getMessage()).contains("Id-hot");
+    assertThat(transferAdmission.admit("Id-3", "Id-4")).isNull();
+    assertThat(transferAdmission.getInFlight()).isEqualTo(3);
+
+    transferAdmission.complete("Id-1", "Id-hot", startedAgo(FAST), TransferStatus.ACCEPTED);
+    assertThat(transferAdmission.admit("Id-3", "Id-hot")).isNull();
+  }
+
+  @Test
+  public void disabledAdmissionAdmitsEverything() {
+    TransferAdmission transferAdmission = new TransferAdmission(false, 8, 8, 8, 50, 0.9, 1, 1);
+
+    for (int n = 0; n < 100; n++) {
+      assertThat(transferAdmission.admit("Id-hot", "Id-" + n)).isNull();
+    }
+    assertThat(transferAdmission.getInFlight()).isZero();
+  }
+}
@@ -0,0 +1,149 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.AmountTransferRequest;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.journal.AccountsSnapshotter;
+import com.db.awmd.challenge.journal.Durability;
+import com.db.awmd.challenge.journal.JournalRecord;
+import com.db.awmd.challenge.journal.TransferJournal;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferGate;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TransferJournalTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void replayRestoresAccountsAfterRestart() throws Exception {
+    String directory = temporaryFolder.getRoot().getPath();
+
+    TransferJournal transferJournal = new TransferJournal(new AccountsRepositoryInMemory(), directory, Durability.SYNC, 2);
+    transferJournal.open();
+    transferJournal.append(JournalRecord.created("Id-from", new BigDecimal(1000), 0L));
+    transferJournal.append(JournalRecord.created("Id-to", new BigDecimal(1000), 0L));
+    transferJournal.awaitDurable(transferJournal.append(JournalRecord.transferred(new BigDecimal(100),
+      "Id-from", new BigDecimal(900), 1L, "Id-to", new BigDecimal(1100), 1L)));
+    transferJournal.close();
+
+    AccountsRepositoryInMemory recoveredRepository = new AccountsRepositoryInMemory();
+    TransferJournal recoveredJournal = new TransferJournal(recoveredRepository, directory, Durability.GROUP, 2);
+    recoveredJournal.open();
+    recoveredJournal.close();
+
+    assertThat(recoveredRepository.getAccount("Id-from").getBalance()).isEqualByComparingTo("900");
+    assertThat(recoveredRepository.getAccount("Id-to").getBalance()).isEqualByComparingTo("1100");
+  }
+
+  @Test
+  public void replayDiscardsTornTail() throws Exception {
+    String directory = temporaryFolder.getRoot().getPath();
+
+    TransferJournal transferJournal = new TransferJournal(new AccountsRepositoryInMemory(), directory, Durability.SYNC, 2);
+    transferJournal.open();
+    transferJournal.append(JournalRecord.created("Id-from", new BigDecimal(1000), 0L));
+    transferJournal.append(JournalRecord.created("Id-to", new BigDecimal(1000), 0L));
+    long position = transferJournal.append(JournalRecord.transferred(new BigDecimal(100),
+      "Id-from", new BigDecimal(900), 1L, "Id-to", new BigDecimal(1100), 1L));
+    transferJournal.awaitDurable(position);
+    transferJournal.close();
+
+    Path file = temporaryFolder.getRoot().toPath().resolve("transfers.journal");
+    try (RandomAccessFile journalFile = new RandomAccessFile(file.toFile(), "rw")) {
+      journalFile.setLength(position - 3);
+    }
+
+    AccountsRepositoryInMemory recoveredRepository = new AccountsRepositoryInMemory();
+    TransferJournal recoveredJournal = new TransferJournal(recoveredRepository, directory, Durability.SYNC, 2);
+    recoveredJournal.open();
+    recoveredJournal.close();
+
+    assertThat(recoveredRepository.getAccount("Id-from").getBalance()).isEqualByComparingTo("1000");
+    assertThat(recoveredRepository.getAccount("Id-to").getBalance()).isEqualByComparingTo("1000");
+  }
+
+  @Test
+  public void recoveryLoadsSnapshotAndReplaysTail() throws Exception {
+    String directory = temporaryFolder.getRoot().getPath();
+
+    AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+    TransferJournal transferJournal = new TransferJournal(repository, directory, Durability.SYNC, 2);
+    transferJournal.open();
+    repository.restoreAccount("Id-from", new BigDecimal(1000), 0L);
+    repository.restoreAccount("Id-to", new BigDecimal(1000), 0L);
+    transferJournal.append(JournalRecord.created("Id-from", new BigDecimal(1000), 0L));
+    transferJournal.append(JournalRecord.created("Id-to", new BigDecimal(1000), 0L));
+
+    long snapshotPosition = new AccountsSnapshotter(repository, transferJournal, new TransferGate(), 0, 2).takeSnapshot();
+    assertThat(snapshotPosition).isEqualTo(transferJournal.getDurablePosition());
+
+    transferJournal.awaitDurable(transferJournal.append(JournalRecord.transferred(new BigDecimal(100),
+      "Id-from", new BigDecimal(900), 1L, "Id-to", new BigDecimal(1100), 1L)));
+    transferJournal.close();
+
+    AccountsRepositoryInMemory recoveredRepository = new AccountsRepositoryInMemory();
+    TransferJournal recoveredJournal = new TransferJournal(recoveredRepository, directory, Durability.SYNC, 2);
+    recoveredJournal.open();
+    recoveredJournal.close();
+
+    assertThat(recoveredRepository.getAccount("Id-from").getBalance()).isEqualByComparingTo("900");
+    assertThat(recoveredRepository.getAccount("Id-to").getBalance()).isEqualByComparingTo("1100");
+  }
+
+  @Test
+  public void failedWriteStopsTheJournalTakingRecords() throws Exception {
+    TransferJournal transferJournal = new TransferJournal(new AccountsRepositoryInMemory(),
+      temporaryFolder.getRoot().getPath(), Durability.SYNC, 2);
+    transferJournal.open();
+    transferJournal.checkWritable();
+    // writing to the closed file fails
+    transferJournal.close();
+
+    long position = transferJournal.append(JournalRecord.created("Id-1", new BigDecimal(1000), 0L));
+    assertThatThrownBy(() -> transferJournal.awaitDurable(position)).isInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(transferJournal::checkWritable).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  public void transfersAreRefusedOnceTheJournalFailed() throws Exception {
+    ConfigurableApplicationContext context = SpringApplication.run(DevChallengeApplication.class,
+      "--spring.main.web-environment=false", "--spring.jmx.enabled=false", "--logging.level.com.db.awmd.challenge=OFF",
+      "--accounts.journal.enabled=true", "--accounts.journal.durability=SYNC",
+      "--accounts.journal.directory=" + temporaryFolder.getRoot().getPath());
+    try {
+      AccountsService accountsService = context.getBean(AccountsService.class);
+      accountsService.createAccount(new Account("Id-1", new BigDecimal(1000)));
+      accountsService.createAccount(new Account("Id-2", new BigDecimal(1000)));
+      context.getBean(TransferJournal.class).close();
+
+      // the transfer whose write fails has changed the balances already
+      AmountTransferRequest keyed = new AmountTransferRequest("Id-1", "Id-2", BigDecimal.TEN, "key-1");
+      assertThat(accountsService.tryAmountTransfer(keyed).getStatus()).isEqualTo(TransferStatus.FAILED);
+      assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("990");
+
+      assertThatThrownBy(() -> accountsService.tryAmountTransfer(keyed)).isInstanceOf(IllegalStateException.class);
+      assertThatThrownBy(() -> accountsService.tryAmountTransfer(new AmountTransferRequest("Id-1", "Id-2", BigDecimal.TEN)))
+        .isInstanceOf(IllegalStateException.class);
+      assertThatThrownBy(() -> accountsService.createAccount(new Account("Id-3", new BigDecimal(1000))))
+        .isInstanceOf(IllegalStateException.class);
+      assertThat(accountsService.getAccount("Id-1").getBalance()).isEqualByComparingTo("990");
+      assertThat(accountsService.findAccount("Id-3")).isNull();
+    } finally {
+      context.close();
+    }
+  }
+}
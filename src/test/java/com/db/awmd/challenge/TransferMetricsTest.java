@@ -0,0 +1,46 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.metrics.TransferMetrics;
+import org.junit.Test;
+import org.springframework.boot.actuate.metrics.Metric;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferMetricsTest {
+
+  @Test
+  public void metricsReportRecordedLatencies() {
+    TransferMetrics transferMetrics = new TransferMetrics(true);
+    transferMetrics.recordTransfer(TimeUnit.MILLISECONDS.toNanos(1));
+    transferMetrics.recordTransfer(TimeUnit.MILLISECONDS.toNanos(3));
+    transferMetrics.recordLockWait(TimeUnit.MICROSECONDS.toNanos(10));
+    transferMetrics.lockTimedOut();
+
+    Map<String, Number> metrics = byName(transferMetrics.metrics());
+    assertThat(metrics.get("accounts.transfer.latency.count").longValue()).isEqualTo(2L);
+    assertThat(metrics.get("accounts.transfer.latency.max.micros").longValue()).isBetween(2900L, 3100L);
+    assertThat(metrics.get("accounts.lock.wait.count").longValue()).isEqualTo(1L);
+    assertThat(metrics.get("accounts.lock.timeouts").longValue()).isEqualTo(1L);
+
+    // values are kept across reads
+    transferMetrics.recordTransfer(TimeUnit.MILLISECONDS.toNanos(2));
+    assertThat(byName(transferMetrics.metrics()).get("accounts.transfer.latency.count").longValue()).isEqualTo(3L);
+  }
+
+  @Test
+  public void disabledMetricsRecordNothing() {
+    TransferMetrics transferMetrics = new TransferMetrics(false);
+    transferMetrics.recordTransfer(TimeUnit.MILLISECONDS.toNanos(1));
+
+    assertThat(byName(transferMetrics.metrics()).get("accounts.transfer.latency.count").longValue()).isEqualTo(0L);
+  }
+
+  private static Map<String, Number> byName(Collection<Metric<?>> metrics) {
+    return metrics.stream().collect(Collectors.toMap(Metric::getName, metric -> (Number) metric.getValue()));
+  }
+}